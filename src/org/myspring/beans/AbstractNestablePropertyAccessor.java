@@ -144,12 +144,15 @@ public abstract class AbstractNestablePropertyAccessor extends AbstractPropertyA
     /**
      * Switch the target object, replacing the cached introspection results only
      * if the class of the new object is different to that of the replaced object.
+     * <p>Cached nested accessors are kept for an object of the same class,
+     * getting switched to the corresponding nested objects on next access.
      * @param object the new target object
      * @param nestedPath the nested path of the object
      * @param rootObject the root object at the top of the path
      */
     public void setWrappedInstance(Object object, String nestedPath, Object rootObject) {
         Assert.notNull(object, "Target object must not be null");
+        Class<?> previousClass = (this.wrappedObject != null ? this.wrappedObject.getClass() : null);
         if (object.getClass() == javaUtilOptionalClass) {
             this.wrappedObject = OptionalUnwrapper.unwrap(object);
         }
@@ -158,7 +161,9 @@ public abstract class AbstractNestablePropertyAccessor extends AbstractPropertyA
         }
         this.nestedPath = (nestedPath != null ? nestedPath : "");
         this.rootObject = (!"".equals(this.nestedPath) ? rootObject : this.wrappedObject);
-        this.nestedPropertyAccessors = null;
+        if (this.wrappedObject.getClass() != previousClass) {
+            this.nestedPropertyAccessors = null;
+        }
         this.typeConverterDelegate = new TypeConverterDelegate(this, this.wrappedObject);
     }
 
@@ -195,32 +200,29 @@ public abstract class AbstractNestablePropertyAccessor extends AbstractPropertyA
 
     @Override
     public void setPropertyValue(String propertyName, Object value) throws BeansException {
-        AbstractNestablePropertyAccessor nestedPa;
-        try {
-            nestedPa = getPropertyAccessorForPropertyPath(propertyName);
-        }
-        catch (NotReadablePropertyException ex) {
-            throw new NotWritablePropertyException(getRootClass(), this.nestedPath + propertyName,
-                    "Nested property in path '" + propertyName + "' does not exist", ex);
-        }
-        PropertyTokenHolder tokens = getPropertyNameTokens(getFinalPath(nestedPa, propertyName));
-        nestedPa.setPropertyValue(tokens, new PropertyValue(propertyName, value));
+        setPropertyValue(CompiledPropertyPath.compile(propertyName), value);
+    }
+
+    /**
+     * Set the specified value as current property value, navigating through
+     * the given pre-parsed property path.
+     * @param propertyPath the compiled path to the property
+     * @param value the new value
+     * @throws BeansException if the property could not be set
+     * @see CompiledPropertyPath#compile
+     */
+    public void setPropertyValue(CompiledPropertyPath propertyPath, Object value) throws BeansException {
+        AbstractNestablePropertyAccessor nestedPa = getPropertyAccessorForWrite(propertyPath);
+        nestedPa.setPropertyValue(propertyPath.getFinalTokens(), new PropertyValue(propertyPath.getPath(), value));
     }
 
     @Override
     public void setPropertyValue(PropertyValue pv) throws BeansException {
         PropertyTokenHolder tokens = (PropertyTokenHolder) pv.resolvedTokens;
         if (tokens == null) {
-            String propertyName = pv.getName();
-            AbstractNestablePropertyAccessor nestedPa;
-            try {
-                nestedPa = getPropertyAccessorForPropertyPath(propertyName);
-            }
-            catch (NotReadablePropertyException ex) {
-                throw new NotWritablePropertyException(getRootClass(), this.nestedPath + propertyName,
-                        "Nested property in path '" + propertyName + "' does not exist", ex);
-            }
-            tokens = getPropertyNameTokens(getFinalPath(nestedPa, propertyName));
+            CompiledPropertyPath propertyPath = CompiledPropertyPath.compile(pv.getName());
+            AbstractNestablePropertyAccessor nestedPa = getPropertyAccessorForWrite(propertyPath);
+            tokens = propertyPath.getFinalTokens();
             if (nestedPa == this) {
                 pv.getOriginalPropertyValue().resolvedTokens = tokens;
             }
@@ -231,6 +233,16 @@ public abstract class AbstractNestablePropertyAccessor extends AbstractPropertyA
         }
     }
 
+    private AbstractNestablePropertyAccessor getPropertyAccessorForWrite(CompiledPropertyPath propertyPath) {
+        try {
+            return getPropertyAccessorForPropertyPath(propertyPath);
+        }
+        catch (NotReadablePropertyException ex) {
+            throw new NotWritablePropertyException(getRootClass(), this.nestedPath + propertyPath.getPath(),
+                    "Nested property in path '" + propertyPath.getPath() + "' does not exist", ex);
+        }
+    }
+
     protected void setPropertyValue(PropertyTokenHolder tokens, PropertyValue pv) throws BeansException {
         if (tokens.keys != null) {
             processKeyedProperty(tokens, pv);
@@ -566,9 +578,20 @@ public abstract class AbstractNestablePropertyAccessor extends AbstractPropertyA
 
     @Override
     public Object getPropertyValue(String propertyName) throws BeansException {
-        AbstractNestablePropertyAccessor nestedPa = getPropertyAccessorForPropertyPath(propertyName);
-        PropertyTokenHolder tokens = getPropertyNameTokens(getFinalPath(nestedPa, propertyName));
-        return nestedPa.getPropertyValue(tokens);
+        return getPropertyValue(CompiledPropertyPath.compile(propertyName));
+    }
+
+    /**
+     * Get the current value of the specified property, navigating through
+     * the given pre-parsed property path.
+     * @param propertyPath the compiled path to the property
+     * @return the value of the property
+     * @throws BeansException if the property could not be read
+     * @see CompiledPropertyPath#compile
+     */
+    public Object getPropertyValue(CompiledPropertyPath propertyPath) throws BeansException {
+        AbstractNestablePropertyAccessor nestedPa = getPropertyAccessorForPropertyPath(propertyPath);
+        return nestedPa.getPropertyValue(propertyPath.getFinalTokens());
     }
 
     @SuppressWarnings("unchecked")
@@ -756,19 +779,16 @@ public abstract class AbstractNestablePropertyAccessor extends AbstractPropertyA
      * @param propertyPath property path, which may be nested
      * @return a property accessor for the target bean
      */
-    @SuppressWarnings("unchecked")  // avoid nested generic
     protected AbstractNestablePropertyAccessor getPropertyAccessorForPropertyPath(String propertyPath) {
-        int pos = PropertyAccessorUtils.getFirstNestedPropertySeparatorIndex(propertyPath);
-        // Handle nested properties recursively.
-        if (pos > -1) {
-            String nestedProperty = propertyPath.substring(0, pos);
-            String nestedPath = propertyPath.substring(pos + 1);
-            AbstractNestablePropertyAccessor nestedPa = getNestedPropertyAccessor(nestedProperty);
-            return nestedPa.getPropertyAccessorForPropertyPath(nestedPath);
-        }
-        else {
-            return this;
+        return getPropertyAccessorForPropertyPath(CompiledPropertyPath.compile(propertyPath));
+    }
+
+    private AbstractNestablePropertyAccessor getPropertyAccessorForPropertyPath(CompiledPropertyPath propertyPath) {
+        AbstractNestablePropertyAccessor nestedPa = this;
+        for (PropertyTokenHolder nestedTokens : propertyPath.getNestedTokens()) {
+            nestedPa = nestedPa.getNestedPropertyAccessor(nestedTokens);
         }
+        return nestedPa;
     }
 
     /**
@@ -776,15 +796,17 @@ public abstract class AbstractNestablePropertyAccessor extends AbstractPropertyA
      * Create a new one if not found in the cache.
      * <p>Note: Caching nested PropertyAccessors is necessary now,
      * to keep registered custom editors for nested properties.
-     * @param nestedProperty property to create the PropertyAccessor for
+     * <p>A cached accessor for a different object of the same class (e.g. for
+     * another root object) gets switched to the current object, keeping its
+     * editors as well as its own nested accessors.
+     * @param tokens the parsed property to create the PropertyAccessor for
      * @return the PropertyAccessor instance, either cached or newly created
      */
-    private AbstractNestablePropertyAccessor getNestedPropertyAccessor(String nestedProperty) {
+    private AbstractNestablePropertyAccessor getNestedPropertyAccessor(PropertyTokenHolder tokens) {
         if (this.nestedPropertyAccessors == null) {
             this.nestedPropertyAccessors = new HashMap<String, AbstractNestablePropertyAccessor>();
         }
         // Get value of bean property.
-        PropertyTokenHolder tokens = getPropertyNameTokens(nestedProperty);
         String canonicalName = tokens.canonicalName;
         Object value = getPropertyValue(tokens);
         if (value == null || (value.getClass() == javaUtilOptionalClass && OptionalUnwrapper.isEmpty(value))) {
@@ -798,8 +820,15 @@ public abstract class AbstractNestablePropertyAccessor extends AbstractPropertyA
 
         // Lookup cached sub-PropertyAccessor, create new one if not found.
         AbstractNestablePropertyAccessor nestedPa = this.nestedPropertyAccessors.get(canonicalName);
-        if (nestedPa == null || nestedPa.getWrappedInstance() !=
-                (value.getClass() == javaUtilOptionalClass ? OptionalUnwrapper.unwrap(value) : value)) {
+        Object nestedObject = (value.getClass() == javaUtilOptionalClass ? OptionalUnwrapper.unwrap(value) : value);
+        if (nestedPa != null && nestedPa.getWrappedInstance() != nestedObject &&
+                nestedPa.getWrappedClass() == nestedObject.getClass()) {
+            if (logger.isTraceEnabled()) {
+                logger.trace("Switching cached nested property accessor for property '" + canonicalName + "'");
+            }
+            nestedPa.setWrappedInstance(nestedObject, nestedPa.getNestedPath(), getWrappedInstance());
+        }
+        else if (nestedPa == null || nestedPa.getWrappedInstance() != nestedObject) {
             if (logger.isTraceEnabled()) {
                 logger.trace("Creating new nested " + getClass().getSimpleName() + " for property '" + canonicalName + "'");
             }
@@ -878,7 +907,7 @@ public abstract class AbstractNestablePropertyAccessor extends AbstractPropertyA
      * @param propertyName the property name to parse
      * @return representation of the parsed property tokens
      */
-    private PropertyTokenHolder getPropertyNameTokens(String propertyName) {
+    static PropertyTokenHolder getPropertyNameTokens(String propertyName) {
         PropertyTokenHolder tokens = new PropertyTokenHolder();
         String actualName = null;
         List<String> keys = new ArrayList<String>(2);
@@ -229,6 +229,13 @@ public class BeanWrapperImpl  extends AbstractNestablePropertyAccessor implement
 
         @Override
         public Object getValue() throws Exception {
+            BytecodePropertyAccessors accessors = getCachedIntrospectionResults().getPropertyAccessors();
+            if (accessors != null && System.getSecurityManager() == null) {
+                int index = accessors.getReadIndex(this.pd);
+                if (index >= 0) {
+                    return accessors.getValue(getWrappedInstance(), index);
+                }
+            }
             final Method readMethod = this.pd.getReadMethod();
             if (!Modifier.isPublic(readMethod.getDeclaringClass().getModifiers()) && !readMethod.isAccessible()) {
                 if (System.getSecurityManager() != null) {
@@ -267,6 +274,16 @@ public class BeanWrapperImpl  extends AbstractNestablePropertyAccessor implement
             final Method writeMethod = (this.pd instanceof GenericTypeAwarePropertyDescriptor ?
                     ((GenericTypeAwarePropertyDescriptor) this.pd).getWriteMethodForActualAccess() :
                     this.pd.getWriteMethod());
+            BytecodePropertyAccessors accessors = getCachedIntrospectionResults().getPropertyAccessors();
+            if (accessors != null && System.getSecurityManager() == null &&
+                    (valueToApply != null || !getPropertyType().isPrimitive())) {
+                // Null for a primitive goes through reflection, for the usual IllegalArgumentException
+                int index = accessors.getWriteIndex(this.pd);
+                if (index >= 0) {
+                    accessors.setValue(getWrappedInstance(), index, valueToApply);
+                    return;
+                }
+            }
             if (!Modifier.isPublic(writeMethod.getDeclaringClass().getModifiers()) && !writeMethod.isAccessible()) {
                 if (System.getSecurityManager() != null) {
                     AccessController.doPrivileged(new PrivilegedAction<Object>() {
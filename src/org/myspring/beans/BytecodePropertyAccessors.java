@@ -0,0 +1,353 @@
+package org.myspring.beans;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.myspring.core.asm.ClassWriter;
+import org.myspring.core.asm.Label;
+import org.myspring.core.asm.MethodVisitor;
+import org.myspring.core.asm.Opcodes;
+import org.myspring.core.asm.Type;
+import org.myspring.core.util.ClassUtils;
+import org.myspring.core.util.ConcurrentReferenceHashMap;
+
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bytecode-generated accessors for the bean properties of a specific class,
+ * used by {@link BeanWrapperImpl} instead of reflective read and write method
+ * invocations if enabled through {@link CachedIntrospectionResults#GENERATE_ACCESSORS_PROPERTY_NAME}.
+ *
+ * <p>A single accessor class gets generated with ASM per bean class, dispatching
+ * to the read and write methods by property index through a switch statement.
+ * Properties are indexed in the order of the cached property descriptors.
+ *
+ * <p>Only public read and write methods of public bean classes are covered, and
+ * write methods only if their parameter type is public as well; any other
+ * property gets accessed through reflection as usual.
+ *
+ * @see CachedIntrospectionResults#getPropertyAccessors()
+ */
+final class BytecodePropertyAccessors {
+
+    /** Marker for bean classes without any properties covered by generated code */
+    static final BytecodePropertyAccessors NONE =
+            new BytecodePropertyAccessors(null, new IdentityHashMap<PropertyDescriptor, Integer>(0),
+                    new IdentityHashMap<PropertyDescriptor, Integer>(0));
+
+    private static final Log logger = LogFactory.getLog(BytecodePropertyAccessors.class);
+
+    private static final String ACCESSOR_CLASS_NAME_PREFIX =
+            BytecodePropertyAccessors.class.getPackage().getName() + ".PropertyAccessor$$";
+
+    private static final Map<ClassLoader, AccessorClassLoader> accessorClassLoaders =
+            new ConcurrentReferenceHashMap<ClassLoader, AccessorClassLoader>(16);
+
+    private static final AtomicInteger accessorClassCount = new AtomicInteger();
+
+
+    private final Accessor accessor;
+
+    private final Map<PropertyDescriptor, Integer> readIndexes;
+
+    private final Map<PropertyDescriptor, Integer> writeIndexes;
+
+
+    private BytecodePropertyAccessors(Accessor accessor, Map<PropertyDescriptor, Integer> readIndexes,
+                                      Map<PropertyDescriptor, Integer> writeIndexes) {
+
+        this.accessor = accessor;
+        this.readIndexes = readIndexes;
+        this.writeIndexes = writeIndexes;
+    }
+
+
+    /**
+     * Return the index to read the given property through, or -1 if the
+     * property needs to be read through reflection.
+     */
+    public int getReadIndex(PropertyDescriptor pd) {
+        Integer index = this.readIndexes.get(pd);
+        return (index != null ? index : -1);
+    }
+
+    /**
+     * Return the index to write the given property through, or -1 if the
+     * property needs to be written through reflection.
+     */
+    public int getWriteIndex(PropertyDescriptor pd) {
+        Integer index = this.writeIndexes.get(pd);
+        return (index != null ? index : -1);
+    }
+
+    /**
+     * Invoke the read method of the property with the given index.
+     * @throws InvocationTargetException wrapping any exception thrown by the read method
+     */
+    public Object getValue(Object bean, int index) throws InvocationTargetException {
+        try {
+            return this.accessor.getValue(bean, index);
+        }
+        catch (Throwable ex) {
+            throw new InvocationTargetException(ex);
+        }
+    }
+
+    /**
+     * Invoke the write method of the property with the given index.
+     * @throws InvocationTargetException wrapping any exception thrown by the write method
+     */
+    public void setValue(Object bean, int index, Object value) throws InvocationTargetException {
+        try {
+            this.accessor.setValue(bean, index, value);
+        }
+        catch (Throwable ex) {
+            throw new InvocationTargetException(ex);
+        }
+    }
+
+
+    /**
+     * Generate the accessors for the given bean class and its property descriptors.
+     * @return the accessors, or {@link #NONE} if none of the properties
+     * can be accessed through generated code
+     */
+    public static BytecodePropertyAccessors generate(Class<?> beanClass, Collection<PropertyDescriptor> pds) {
+        if (System.getSecurityManager() != null || !isPublic(beanClass) || beanClass.isInterface()) {
+            return NONE;
+        }
+        PropertyDescriptor[] properties = pds.toArray(new PropertyDescriptor[pds.size()]);
+        Method[] readMethods = new Method[properties.length];
+        Method[] writeMethods = new Method[properties.length];
+        Map<PropertyDescriptor, Integer> readIndexes = new IdentityHashMap<PropertyDescriptor, Integer>();
+        Map<PropertyDescriptor, Integer> writeIndexes = new IdentityHashMap<PropertyDescriptor, Integer>();
+        for (int i = 0; i < properties.length; i++) {
+            PropertyDescriptor pd = properties[i];
+            Method readMethod = pd.getReadMethod();
+            if (readMethod != null && isInvokableFromGeneratedCode(readMethod)) {
+                readMethods[i] = readMethod;
+                readIndexes.put(pd, i);
+            }
+            Method writeMethod = pd.getWriteMethod();
+            if (writeMethod != null && isInvokableFromGeneratedCode(writeMethod) &&
+                    isPublic(writeMethod.getParameterTypes()[0])) {
+                writeMethods[i] = writeMethod;
+                writeIndexes.put(pd, i);
+            }
+        }
+        if (readIndexes.isEmpty() && writeIndexes.isEmpty()) {
+            return NONE;
+        }
+
+        try {
+            ClassLoader classLoader = beanClass.getClassLoader();
+            if (classLoader == null) {
+                classLoader = ClassUtils.getDefaultClassLoader();
+            }
+            AccessorClassLoader acl = accessorClassLoaders.get(classLoader);
+            if (acl == null) {
+                acl = new AccessorClassLoader(classLoader);
+                accessorClassLoaders.put(classLoader, acl);
+            }
+            String className = ACCESSOR_CLASS_NAME_PREFIX + accessorClassCount.incrementAndGet();
+            Class<?> accessorClass = acl.defineClass(className,
+                    generateAccessorClass(className, beanClass, readMethods, writeMethods));
+            if (logger.isDebugEnabled()) {
+                logger.debug("Generated property accessor for class [" + beanClass.getName() + "]");
+            }
+            return new BytecodePropertyAccessors(
+                    (Accessor) accessorClass.getDeclaredConstructor().newInstance(), readIndexes, writeIndexes);
+        }
+        catch (Throwable ex) {
+            if (logger.isDebugEnabled()) {
+                logger.debug("Failed to generate property accessor for class [" + beanClass.getName() +
+                        "] - falling back to reflection", ex);
+            }
+            return NONE;
+        }
+    }
+
+    private static boolean isInvokableFromGeneratedCode(Method method) {
+        int modifiers = method.getModifiers();
+        return (Modifier.isPublic(modifiers) && !Modifier.isStatic(modifiers));
+    }
+
+    private static boolean isPublic(Class<?> clazz) {
+        while (clazz.isArray()) {
+            clazz = clazz.getComponentType();
+        }
+        for (Class<?> current = clazz; current != null; current = current.getDeclaringClass()) {
+            if (!Modifier.isPublic(current.getModifiers())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static byte[] generateAccessorClass(String className, Class<?> beanClass,
+                                                Method[] readMethods, Method[] writeMethods) {
+
+        String internalName = className.replace('.', '/');
+        String owner = Type.getInternalName(beanClass);
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        cw.visit(Opcodes.V1_6, Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER | Opcodes.ACC_SYNTHETIC, internalName, null,
+                "java/lang/Object", new String[] {Type.getInternalName(Accessor.class)});
+
+        MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+        mv.visitCode();
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+        mv.visitInsn(Opcodes.RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+
+        // Object getValue(Object bean, int index)
+        mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "getValue", "(Ljava/lang/Object;I)Ljava/lang/Object;", null, null);
+        mv.visitCode();
+        Label defaultLabel = new Label();
+        Label[] labels = createCaseLabels(readMethods, defaultLabel);
+        mv.visitVarInsn(Opcodes.ILOAD, 2);
+        mv.visitTableSwitchInsn(0, labels.length - 1, defaultLabel, labels);
+        for (int i = 0; i < readMethods.length; i++) {
+            Method readMethod = readMethods[i];
+            if (readMethod != null) {
+                mv.visitLabel(labels[i]);
+                mv.visitVarInsn(Opcodes.ALOAD, 1);
+                mv.visitTypeInsn(Opcodes.CHECKCAST, owner);
+                mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, owner, readMethod.getName(),
+                        Type.getMethodDescriptor(readMethod), false);
+                Class<?> returnType = readMethod.getReturnType();
+                if (returnType.isPrimitive()) {
+                    Class<?> wrapperType = ClassUtils.resolvePrimitiveIfNecessary(returnType);
+                    mv.visitMethodInsn(Opcodes.INVOKESTATIC, Type.getInternalName(wrapperType), "valueOf",
+                            "(" + Type.getDescriptor(returnType) + ")" + Type.getDescriptor(wrapperType), false);
+                }
+                mv.visitInsn(Opcodes.ARETURN);
+            }
+        }
+        visitInvalidIndex(mv, defaultLabel);
+        mv.visitMaxs(0, 0);  // computed through COMPUTE_MAXS
+        mv.visitEnd();
+
+        // void setValue(Object bean, int index, Object value)
+        mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "setValue", "(Ljava/lang/Object;ILjava/lang/Object;)V", null, null);
+        mv.visitCode();
+        defaultLabel = new Label();
+        labels = createCaseLabels(writeMethods, defaultLabel);
+        mv.visitVarInsn(Opcodes.ILOAD, 2);
+        mv.visitTableSwitchInsn(0, labels.length - 1, defaultLabel, labels);
+        for (int i = 0; i < writeMethods.length; i++) {
+            Method writeMethod = writeMethods[i];
+            if (writeMethod != null) {
+                mv.visitLabel(labels[i]);
+                mv.visitVarInsn(Opcodes.ALOAD, 1);
+                mv.visitTypeInsn(Opcodes.CHECKCAST, owner);
+                mv.visitVarInsn(Opcodes.ALOAD, 3);
+                Class<?> paramType = writeMethod.getParameterTypes()[0];
+                if (paramType.isPrimitive()) {
+                    String wrapperName = Type.getInternalName(ClassUtils.resolvePrimitiveIfNecessary(paramType));
+                    mv.visitTypeInsn(Opcodes.CHECKCAST, wrapperName);
+                    mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, wrapperName, paramType.getName() + "Value",
+                            "()" + Type.getDescriptor(paramType), false);
+                }
+                else if (paramType != Object.class) {
+                    mv.visitTypeInsn(Opcodes.CHECKCAST, Type.getInternalName(paramType));
+                }
+                mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, owner, writeMethod.getName(),
+                        Type.getMethodDescriptor(writeMethod), false);
+                Class<?> returnType = writeMethod.getReturnType();
+                if (returnType != void.class) {
+                    // Fluent setters returning a value
+                    mv.visitInsn(returnType == long.class || returnType == double.class ?
+                            Opcodes.POP2 : Opcodes.POP);
+                }
+                mv.visitInsn(Opcodes.RETURN);
+            }
+        }
+        visitInvalidIndex(mv, defaultLabel);
+        mv.visitMaxs(0, 0);  // computed through COMPUTE_MAXS
+        mv.visitEnd();
+
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    /**
+     * Create a switch label for each covered method, using the default label
+     * for properties without such a method.
+     */
+    private static Label[] createCaseLabels(Method[] methods, Label defaultLabel) {
+        Label[] labels = new Label[Math.max(methods.length, 1)];
+        for (int i = 0; i < labels.length; i++) {
+            labels[i] = (i < methods.length && methods[i] != null ? new Label() : defaultLabel);
+        }
+        return labels;
+    }
+
+    private static void visitInvalidIndex(MethodVisitor mv, Label defaultLabel) {
+        mv.visitLabel(defaultLabel);
+        mv.visitTypeInsn(Opcodes.NEW, "java/lang/IllegalArgumentException");
+        mv.visitInsn(Opcodes.DUP);
+        mv.visitLdcInsn("Invalid property index");
+        mv.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/IllegalArgumentException", "<init>",
+                "(Ljava/lang/String;)V", false);
+        mv.visitInsn(Opcodes.ATHROW);
+    }
+
+
+    /**
+     * Callback implemented by generated accessor classes.
+     * Public for access from generated code only; not intended for external use.
+     */
+    public interface Accessor {
+
+        /**
+         * Invoke the read method of the property with the given index.
+         * @param bean the bean instance
+         * @param index the index of the property
+         * @return the property value, boxed if necessary
+         * @throws Throwable any exception thrown by the read method
+         */
+        Object getValue(Object bean, int index) throws Throwable;
+
+        /**
+         * Invoke the write method of the property with the given index.
+         * @param bean the bean instance
+         * @param index the index of the property
+         * @param value the value to set, matching the property type
+         * @throws Throwable any exception thrown by the write method
+         */
+        void setValue(Object bean, int index, Object value) throws Throwable;
+    }
+
+
+    /**
+     * Child class loader for generated accessor classes, exposing the
+     * {@link Accessor} interface even if not visible from the parent.
+     */
+    private static class AccessorClassLoader extends ClassLoader {
+
+        public AccessorClassLoader(ClassLoader parent) {
+            super(parent);
+        }
+
+        @Override
+        protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            if (Accessor.class.getName().equals(name)) {
+                return Accessor.class;
+            }
+            return super.loadClass(name, resolve);
+        }
+
+        public Class<?> defineClass(String name, byte[] bytes) {
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+
+}
@@ -9,10 +9,12 @@ import org.myspring.core.util.ClassUtils;
 import org.myspring.core.util.ConcurrentReferenceHashMap;
 import org.myspring.core.util.StringUtils;
 
+import java.beans.BeanDescriptor;
 import java.beans.BeanInfo;
 import java.beans.IntrospectionException;
 import java.beans.Introspector;
 import java.beans.PropertyDescriptor;
+import java.beans.SimpleBeanInfo;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
@@ -23,6 +25,34 @@ public class CachedIntrospectionResults {
 
     private static final boolean shouldIntrospectorIgnoreBeaninfoClasses =
             SpringProperties.getFlag(IGNORE_BEANINFO_PROPERTY_NAME);
+
+    /**
+     * System property that instructs Spring to access bean properties through
+     * bytecode generated per bean class instead of reflective method invocations:
+     * e.g. for binding large numbers of objects through a {@link BeanWrapper}.
+     * <p>The default is "false", using reflection for all property access.
+     * @see BytecodePropertyAccessors
+     */
+    public static final String GENERATE_ACCESSORS_PROPERTY_NAME = "spring.beaninfo.generateAccessors";
+
+    private static final boolean shouldGenerateAccessors =
+            SpringProperties.getFlag(GENERATE_ACCESSORS_PROPERTY_NAME);
+
+
+    /**
+     * System property that instructs Spring to determine bean properties through
+     * the JDK's {@link Introspector}, including the search for explicit
+     * {@code BeanInfo} classes (unless {@link #IGNORE_BEANINFO_PROPERTY_NAME} is set).
+     * <p>The default is "false", deriving basic properties from a single pass
+     * over the public methods of a bean class: see
+     * {@link PropertyDescriptorUtils#determineBasicProperties}. Registered
+     * {@link BeanInfoFactory BeanInfoFactories} are consulted in either case.
+     */
+    public static final String USE_INTROSPECTOR_PROPERTY_NAME = "spring.beaninfo.useIntrospector";
+
+    private static final boolean shouldUseIntrospector =
+            SpringProperties.getFlag(USE_INTROSPECTOR_PROPERTY_NAME);
+
     private static List<BeanInfoFactory> beanInfoFactories = SpringFactoriesLoader.loadFactories(
             BeanInfoFactory.class, CachedIntrospectionResults.class.getClassLoader());
 
@@ -116,17 +146,20 @@ public class CachedIntrospectionResults {
         return false;
     }
 
+    private final Class<?> beanClass;
+
     private final BeanInfo beanInfo;
 
     private final Map<String, PropertyDescriptor> propertyDescriptorCache;
 
     private final ConcurrentMap<PropertyDescriptor, TypeDescriptor> typeDescriptorCache;
 
+    private volatile BytecodePropertyAccessors propertyAccessors;
+
     private CachedIntrospectionResults(Class<?> beanClass) throws BeansException {
         try {
-            if (logger.isTraceEnabled()) {
-                logger.trace("Getting BeanInfo for class [" + beanClass.getName() + "]");
-            }
+            this.beanClass = beanClass;
+            this.propertyDescriptorCache = new LinkedHashMap<String, PropertyDescriptor>();
 
             BeanInfo beanInfo = null;
             for (BeanInfoFactory beanInfoFactory : beanInfoFactories) {
@@ -135,53 +168,33 @@ public class CachedIntrospectionResults {
                     break;
                 }
             }
-            if (beanInfo == null) {
-                // If none of the factories supported the class, fall back to the default
-                beanInfo = (shouldIntrospectorIgnoreBeaninfoClasses ?
-                        Introspector.getBeanInfo(beanClass, Introspector.IGNORE_ALL_BEANINFO) :
-                        Introspector.getBeanInfo(beanClass));
-            }
-            this.beanInfo = beanInfo;
-
-            if (logger.isTraceEnabled()) {
-                logger.trace("Caching PropertyDescriptors for class [" + beanClass.getName() + "]");
-            }
-            this.propertyDescriptorCache = new LinkedHashMap<String, PropertyDescriptor>();
-
-            // This call is slow so we do it once.
-            PropertyDescriptor[] pds = this.beanInfo.getPropertyDescriptors();
-            for (PropertyDescriptor pd : pds) {
-                if (Class.class == beanClass &&
-                        ("classLoader".equals(pd.getName()) ||  "protectionDomain".equals(pd.getName()))) {
-                    // Ignore Class.getClassLoader() and getProtectionDomain() methods - nobody needs to bind to those
-                    continue;
-                }
+            if (beanInfo == null && !shouldUseIntrospector) {
+                // Default: basic properties from the public methods, without any BeanInfo search
                 if (logger.isTraceEnabled()) {
-                    logger.trace("Found bean property '" + pd.getName() + "'" +
-                            (pd.getPropertyType() != null ? " of type [" + pd.getPropertyType().getName() + "]" : "") +
-                            (pd.getPropertyEditorClass() != null ?
-                                    "; editor [" + pd.getPropertyEditorClass().getName() + "]" : ""));
+                    logger.trace("Determining basic properties for class [" + beanClass.getName() + "]");
                 }
-                pd = buildGenericTypeAwarePropertyDescriptor(beanClass, pd);
-                this.propertyDescriptorCache.put(pd.getName(), pd);
-            }
-
-            // Explicitly check implemented interfaces for setter/getter methods as well,
-            // in particular for Java 8 default methods...
-            Class<?> clazz = beanClass;
-            while (clazz != null) {
-                Class<?>[] ifcs = clazz.getInterfaces();
-                for (Class<?> ifc : ifcs) {
-                    BeanInfo ifcInfo = Introspector.getBeanInfo(ifc, Introspector.IGNORE_ALL_BEANINFO);
-                    PropertyDescriptor[] ifcPds = ifcInfo.getPropertyDescriptors();
-                    for (PropertyDescriptor pd : ifcPds) {
-                        if (!this.propertyDescriptorCache.containsKey(pd.getName())) {
-                            pd = buildGenericTypeAwarePropertyDescriptor(beanClass, pd);
-                            this.propertyDescriptorCache.put(pd.getName(), pd);
+                for (PropertyDescriptor pd : PropertyDescriptorUtils.determineBasicProperties(beanClass)) {
+                    if (!isIgnoredProperty(beanClass, pd)) {
+                        if (logger.isTraceEnabled()) {
+                            logger.trace("Found bean property '" + pd.getName() + "'");
                         }
+                        this.propertyDescriptorCache.put(pd.getName(), pd);
+                    }
+                }
+                this.beanInfo = new BasicBeanInfo(beanClass, this.propertyDescriptorCache.values());
+            }
+            else {
+                if (beanInfo == null) {
+                    if (logger.isTraceEnabled()) {
+                        logger.trace("Getting BeanInfo for class [" + beanClass.getName() + "]");
                     }
+                    // If none of the factories supported the class, fall back to the default
+                    beanInfo = (shouldIntrospectorIgnoreBeaninfoClasses ?
+                            Introspector.getBeanInfo(beanClass, Introspector.IGNORE_ALL_BEANINFO) :
+                            Introspector.getBeanInfo(beanClass));
                 }
-                clazz = clazz.getSuperclass();
+                this.beanInfo = beanInfo;
+                introspectBeanInfo(beanClass);
             }
 
             this.typeDescriptorCache = new ConcurrentReferenceHashMap<PropertyDescriptor, TypeDescriptor>();
@@ -191,12 +204,58 @@ public class CachedIntrospectionResults {
         }
     }
 
+    private void introspectBeanInfo(Class<?> beanClass) throws IntrospectionException {
+        if (logger.isTraceEnabled()) {
+            logger.trace("Caching PropertyDescriptors for class [" + beanClass.getName() + "]");
+        }
+
+        // This call is slow so we do it once.
+        PropertyDescriptor[] pds = this.beanInfo.getPropertyDescriptors();
+        for (PropertyDescriptor pd : pds) {
+            if (isIgnoredProperty(beanClass, pd)) {
+                continue;
+            }
+            if (logger.isTraceEnabled()) {
+                logger.trace("Found bean property '" + pd.getName() + "'" +
+                        (pd.getPropertyType() != null ? " of type [" + pd.getPropertyType().getName() + "]" : "") +
+                        (pd.getPropertyEditorClass() != null ?
+                                "; editor [" + pd.getPropertyEditorClass().getName() + "]" : ""));
+            }
+            pd = buildGenericTypeAwarePropertyDescriptor(beanClass, pd);
+            this.propertyDescriptorCache.put(pd.getName(), pd);
+        }
+
+        // Explicitly check implemented interfaces for setter/getter methods as well,
+        // in particular for Java 8 default methods...
+        Class<?> clazz = beanClass;
+        while (clazz != null) {
+            Class<?>[] ifcs = clazz.getInterfaces();
+            for (Class<?> ifc : ifcs) {
+                BeanInfo ifcInfo = Introspector.getBeanInfo(ifc, Introspector.IGNORE_ALL_BEANINFO);
+                PropertyDescriptor[] ifcPds = ifcInfo.getPropertyDescriptors();
+                for (PropertyDescriptor pd : ifcPds) {
+                    if (!this.propertyDescriptorCache.containsKey(pd.getName())) {
+                        pd = buildGenericTypeAwarePropertyDescriptor(beanClass, pd);
+                        this.propertyDescriptorCache.put(pd.getName(), pd);
+                    }
+                }
+            }
+            clazz = clazz.getSuperclass();
+        }
+    }
+
+    private static boolean isIgnoredProperty(Class<?> beanClass, PropertyDescriptor pd) {
+        // Ignore Class.getClassLoader() and getProtectionDomain() methods - nobody needs to bind to those
+        return (Class.class == beanClass &&
+                ("classLoader".equals(pd.getName()) || "protectionDomain".equals(pd.getName())));
+    }
+
     BeanInfo getBeanInfo() {
         return this.beanInfo;
     }
 
     Class<?> getBeanClass() {
-        return this.beanInfo.getBeanDescriptor().getBeanClass();
+        return this.beanClass;
     }
 
     PropertyDescriptor getPropertyDescriptor(String name) {
@@ -233,6 +292,28 @@ public class CachedIntrospectionResults {
         }
     }
 
+    /**
+     * Return the generated accessors for the bean properties, generating them on first access.
+     * @return the accessors, or {@code null} if properties are to be accessed through reflection
+     * @see #GENERATE_ACCESSORS_PROPERTY_NAME
+     */
+    BytecodePropertyAccessors getPropertyAccessors() {
+        if (!shouldGenerateAccessors) {
+            return null;
+        }
+        BytecodePropertyAccessors accessors = this.propertyAccessors;
+        if (accessors == null) {
+            synchronized (this) {
+                accessors = this.propertyAccessors;
+                if (accessors == null) {
+                    accessors = BytecodePropertyAccessors.generate(getBeanClass(), this.propertyDescriptorCache.values());
+                    this.propertyAccessors = accessors;
+                }
+            }
+        }
+        return (accessors != BytecodePropertyAccessors.NONE ? accessors : null);
+    }
+
     TypeDescriptor addTypeDescriptor(PropertyDescriptor pd, TypeDescriptor td) {
         TypeDescriptor existing = this.typeDescriptorCache.putIfAbsent(pd, td);
         return (existing != null ? existing : td);
@@ -241,4 +322,31 @@ public class CachedIntrospectionResults {
     TypeDescriptor getTypeDescriptor(PropertyDescriptor pd) {
         return this.typeDescriptorCache.get(pd);
     }
+
+
+    /**
+     * BeanInfo exposing the basic properties determined without JavaBeans introspection.
+     */
+    private static class BasicBeanInfo extends SimpleBeanInfo {
+
+        private final BeanDescriptor beanDescriptor;
+
+        private final Collection<PropertyDescriptor> propertyDescriptors;
+
+        public BasicBeanInfo(Class<?> beanClass, Collection<PropertyDescriptor> propertyDescriptors) {
+            this.beanDescriptor = new BeanDescriptor(beanClass);
+            this.propertyDescriptors = propertyDescriptors;
+        }
+
+        @Override
+        public BeanDescriptor getBeanDescriptor() {
+            return this.beanDescriptor;
+        }
+
+        @Override
+        public PropertyDescriptor[] getPropertyDescriptors() {
+            return this.propertyDescriptors.toArray(new PropertyDescriptor[this.propertyDescriptors.size()]);
+        }
+    }
+
 }
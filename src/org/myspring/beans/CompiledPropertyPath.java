@@ -0,0 +1,109 @@
+package org.myspring.beans;
+
+import org.myspring.core.util.Assert;
+import org.myspring.core.util.ConcurrentReferenceHashMap;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Pre-parsed representation of a property path such as {@code orders[3].lines[0].sku}:
+ * the tokens of each nested property to navigate through, followed by the tokens of
+ * the final property to read or write.
+ *
+ * <p>Instances are immutable and may be shared across accessors and threads.
+ * They get cached per path, so that repeated access through the same path on any
+ * number of objects parses the path only once. Navigation through a compiled path
+ * follows the regular nested property algorithm, including auto-growing of
+ * {@code null} values and collections if enabled on the accessor.
+ *
+ * @see AbstractNestablePropertyAccessor#getPropertyValue(CompiledPropertyPath)
+ * @see AbstractNestablePropertyAccessor#setPropertyValue(CompiledPropertyPath, Object)
+ */
+public final class CompiledPropertyPath {
+
+    private static final Map<String, CompiledPropertyPath> compiledPathCache =
+            new ConcurrentReferenceHashMap<String, CompiledPropertyPath>(256);
+
+
+    private final String path;
+
+    private final AbstractNestablePropertyAccessor.PropertyTokenHolder[] nestedTokens;
+
+    private final AbstractNestablePropertyAccessor.PropertyTokenHolder finalTokens;
+
+
+    private CompiledPropertyPath(String path) {
+        List<AbstractNestablePropertyAccessor.PropertyTokenHolder> nestedTokens =
+                new ArrayList<AbstractNestablePropertyAccessor.PropertyTokenHolder>(2);
+        String remainingPath = path;
+        int pos = PropertyAccessorUtils.getFirstNestedPropertySeparatorIndex(remainingPath);
+        while (pos > -1) {
+            nestedTokens.add(AbstractNestablePropertyAccessor.getPropertyNameTokens(remainingPath.substring(0, pos)));
+            remainingPath = remainingPath.substring(pos + 1);
+            pos = PropertyAccessorUtils.getFirstNestedPropertySeparatorIndex(remainingPath);
+        }
+        this.path = path;
+        this.nestedTokens = nestedTokens.toArray(
+                new AbstractNestablePropertyAccessor.PropertyTokenHolder[nestedTokens.size()]);
+        this.finalTokens = AbstractNestablePropertyAccessor.getPropertyNameTokens(remainingPath);
+    }
+
+
+    /**
+     * Return the original property path.
+     */
+    public String getPath() {
+        return this.path;
+    }
+
+    /**
+     * Return whether the path navigates through nested properties.
+     */
+    public boolean isNested() {
+        return (this.nestedTokens.length > 0);
+    }
+
+    AbstractNestablePropertyAccessor.PropertyTokenHolder[] getNestedTokens() {
+        return this.nestedTokens;
+    }
+
+    AbstractNestablePropertyAccessor.PropertyTokenHolder getFinalTokens() {
+        return this.finalTokens;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return (this == other ||
+                (other instanceof CompiledPropertyPath && this.path.equals(((CompiledPropertyPath) other).path)));
+    }
+
+    @Override
+    public int hashCode() {
+        return this.path.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return this.path;
+    }
+
+
+    /**
+     * Obtain the compiled representation of the given property path,
+     * parsing it on first use.
+     * @param path the property path, which may be nested and/or indexed
+     * @return the (potentially cached) compiled path
+     */
+    public static CompiledPropertyPath compile(String path) {
+        Assert.notNull(path, "Property path must not be null");
+        CompiledPropertyPath compiledPath = compiledPathCache.get(path);
+        if (compiledPath == null) {
+            compiledPath = new CompiledPropertyPath(path);
+            compiledPathCache.put(path, compiledPath);
+        }
+        return compiledPath;
+    }
+
+}
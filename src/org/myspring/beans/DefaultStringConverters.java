@@ -0,0 +1,384 @@
+package org.myspring.beans;
+
+import org.myspring.beans.propertyeditors.*;
+import org.myspring.core.io.Resource;
+import org.myspring.core.io.support.ResourceArrayPropertyEditor;
+import org.myspring.core.util.ClassUtils;
+import org.myspring.core.util.NumberUtils;
+import org.myspring.core.util.StringUtils;
+import org.xml.sax.InputSource;
+
+import java.beans.PropertyEditor;
+import java.io.File;
+import java.io.InputStream;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.net.URI;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * Shared table of stateless String converters, one for each type that
+ * {@link PropertyEditorRegistrySupport} registers a default editor for.
+ *
+ * <p>Each converter produces the same value as the corresponding default editor's
+ * {@code setAsText} method, including its treatment of empty Strings and the
+ * {@link IllegalArgumentException} thrown for invalid input. In contrast to the
+ * editors, the converters hold no state and may be used by any number of threads,
+ * so that a short-lived registry does not need to create its own set of default
+ * editors just to convert a String value.
+ *
+ * <p>Resource-based types (files, streams, readers, URLs and the like) as well as
+ * collection types are converted through a fresh instance of their default editor,
+ * since those conversions are comparatively rare and the editors are not safe
+ * to share.
+ *
+ * @see PropertyEditorRegistrySupport#getDefaultStringConverter
+ * @see TypeConverterDelegate
+ */
+final class DefaultStringConverters {
+
+    private static final Map<Class<?>, StringConverter> converters;
+
+    static {
+        Map<Class<?>, StringConverter> map = new HashMap<Class<?>, StringConverter>(64);
+
+        map.put(Charset.class, new StringConverter() {
+            @Override
+            public Object convert(String text) {
+                return (StringUtils.hasText(text) ? Charset.forName(text) : null);
+            }
+        });
+        map.put(Class.class, new StringConverter() {
+            @Override
+            public Object convert(String text) {
+                return (StringUtils.hasText(text) ?
+                        ClassUtils.resolveClassName(text.trim(), ClassUtils.getDefaultClassLoader()) : null);
+            }
+        });
+        map.put(Class[].class, new StringConverter() {
+            @Override
+            public Object convert(String text) {
+                if (!StringUtils.hasText(text)) {
+                    return null;
+                }
+                ClassLoader classLoader = ClassUtils.getDefaultClassLoader();
+                String[] classNames = StringUtils.commaDelimitedListToStringArray(text);
+                Class<?>[] classes = new Class<?>[classNames.length];
+                for (int i = 0; i < classNames.length; i++) {
+                    classes[i] = ClassUtils.resolveClassName(classNames[i].trim(), classLoader);
+                }
+                return classes;
+            }
+        });
+        map.put(Currency.class, new StringConverter() {
+            @Override
+            public Object convert(String text) {
+                return Currency.getInstance(text);
+            }
+        });
+        map.put(Locale.class, new StringConverter() {
+            @Override
+            public Object convert(String text) {
+                return StringUtils.parseLocaleString(text);
+            }
+        });
+        map.put(Pattern.class, new StringConverter() {
+            @Override
+            public Object convert(String text) {
+                return (text != null ? Pattern.compile(text) : null);
+            }
+        });
+        map.put(TimeZone.class, new StringConverter() {
+            @Override
+            public Object convert(String text) {
+                return StringUtils.parseTimeZoneString(text);
+            }
+        });
+        map.put(UUID.class, new StringConverter() {
+            @Override
+            public Object convert(String text) {
+                return (StringUtils.hasText(text) ? UUID.fromString(text) : null);
+            }
+        });
+
+        // Resource-based editors: fresh instance per conversion.
+        map.put(File.class, new EditorStringConverter() {
+            @Override
+            protected PropertyEditor createEditor() {
+                return new FileEditor();
+            }
+        });
+        map.put(InputStream.class, new EditorStringConverter() {
+            @Override
+            protected PropertyEditor createEditor() {
+                return new InputStreamEditor();
+            }
+        });
+        map.put(InputSource.class, new EditorStringConverter() {
+            @Override
+            protected PropertyEditor createEditor() {
+                return new InputSourceEditor();
+            }
+        });
+        map.put(Properties.class, new EditorStringConverter() {
+            @Override
+            protected PropertyEditor createEditor() {
+                return new PropertiesEditor();
+            }
+        });
+        map.put(Reader.class, new EditorStringConverter() {
+            @Override
+            protected PropertyEditor createEditor() {
+                return new ReaderEditor();
+            }
+        });
+        map.put(Resource[].class, new EditorStringConverter() {
+            @Override
+            protected PropertyEditor createEditor() {
+                return new ResourceArrayPropertyEditor();
+            }
+        });
+        map.put(URI.class, new EditorStringConverter() {
+            @Override
+            protected PropertyEditor createEditor() {
+                return new URIEditor();
+            }
+        });
+        map.put(URL.class, new EditorStringConverter() {
+            @Override
+            protected PropertyEditor createEditor() {
+                return new URLEditor();
+            }
+        });
+        ClassLoader cl = DefaultStringConverters.class.getClassLoader();
+        if (ClassUtils.isPresent("java.nio.file.Path", cl)) {
+            map.put(ClassUtils.resolveClassName("java.nio.file.Path", cl), new EditorStringConverter() {
+                @Override
+                protected PropertyEditor createEditor() {
+                    return new PathEditor();
+                }
+            });
+        }
+        if (ClassUtils.isPresent("java.time.ZoneId", cl)) {
+            map.put(ClassUtils.resolveClassName("java.time.ZoneId", cl), new EditorStringConverter() {
+                @Override
+                protected PropertyEditor createEditor() {
+                    return new ZoneIdEditor();
+                }
+            });
+        }
+
+        // Collection editors: a String becomes a single-element collection.
+        map.put(Collection.class, new CollectionStringConverter(Collection.class));
+        map.put(Set.class, new CollectionStringConverter(Set.class));
+        map.put(SortedSet.class, new CollectionStringConverter(SortedSet.class));
+        map.put(List.class, new CollectionStringConverter(List.class));
+        map.put(SortedMap.class, new EditorStringConverter() {
+            @Override
+            protected PropertyEditor createEditor() {
+                return new CustomMapEditor(SortedMap.class);
+            }
+        });
+
+        map.put(byte[].class, new StringConverter() {
+            @Override
+            public Object convert(String text) {
+                return (text != null ? text.getBytes() : null);
+            }
+        });
+        map.put(char[].class, new StringConverter() {
+            @Override
+            public Object convert(String text) {
+                return (text != null ? text.toCharArray() : null);
+            }
+        });
+
+        map.put(char.class, new CharacterStringConverter(false));
+        map.put(Character.class, new CharacterStringConverter(true));
+
+        map.put(boolean.class, new BooleanStringConverter(false));
+        map.put(Boolean.class, new BooleanStringConverter(true));
+
+        map.put(byte.class, new NumberStringConverter(Byte.class, false));
+        map.put(Byte.class, new NumberStringConverter(Byte.class, true));
+        map.put(short.class, new NumberStringConverter(Short.class, false));
+        map.put(Short.class, new NumberStringConverter(Short.class, true));
+        map.put(int.class, new NumberStringConverter(Integer.class, false));
+        map.put(Integer.class, new NumberStringConverter(Integer.class, true));
+        map.put(long.class, new NumberStringConverter(Long.class, false));
+        map.put(Long.class, new NumberStringConverter(Long.class, true));
+        map.put(float.class, new NumberStringConverter(Float.class, false));
+        map.put(Float.class, new NumberStringConverter(Float.class, true));
+        map.put(double.class, new NumberStringConverter(Double.class, false));
+        map.put(Double.class, new NumberStringConverter(Double.class, true));
+        map.put(BigDecimal.class, new NumberStringConverter(BigDecimal.class, true));
+        map.put(BigInteger.class, new NumberStringConverter(BigInteger.class, true));
+
+        converters = Collections.unmodifiableMap(map);
+    }
+
+
+    private DefaultStringConverters() {
+    }
+
+
+    /**
+     * Return the shared converter for the given target type.
+     * @param requiredType the type to convert to
+     * @return the converter, or {@code null} if there is no default editor for the type
+     */
+    public static StringConverter getConverter(Class<?> requiredType) {
+        return converters.get(requiredType);
+    }
+
+
+    /**
+     * Stateless conversion of a String to a specific target type.
+     */
+    interface StringConverter {
+
+        /**
+         * Convert the given text, just like the default editor's {@code setAsText}.
+         * @param text the text to convert
+         * @return the converted value (may be {@code null})
+         * @throws IllegalArgumentException if the text is not valid for the target type
+         */
+        Object convert(String text) throws IllegalArgumentException;
+    }
+
+
+    private static abstract class EditorStringConverter implements StringConverter {
+
+        @Override
+        public Object convert(String text) {
+            PropertyEditor editor = createEditor();
+            editor.setAsText(text);
+            return editor.getValue();
+        }
+
+        protected abstract PropertyEditor createEditor();
+    }
+
+
+    private static class CollectionStringConverter extends EditorStringConverter {
+
+        @SuppressWarnings("rawtypes")
+        private final Class<? extends Collection> collectionType;
+
+        @SuppressWarnings("rawtypes")
+        public CollectionStringConverter(Class<? extends Collection> collectionType) {
+            this.collectionType = collectionType;
+        }
+
+        @Override
+        protected PropertyEditor createEditor() {
+            return new CustomCollectionEditor(this.collectionType);
+        }
+    }
+
+
+    /**
+     * @see CharacterEditor
+     */
+    private static class CharacterStringConverter implements StringConverter {
+
+        private static final String UNICODE_PREFIX = "\\u";
+
+        private static final int UNICODE_LENGTH = 6;
+
+        private final boolean allowEmpty;
+
+        public CharacterStringConverter(boolean allowEmpty) {
+            this.allowEmpty = allowEmpty;
+        }
+
+        @Override
+        public Object convert(String text) {
+            if (this.allowEmpty && !StringUtils.hasLength(text)) {
+                // Treat empty String as null value.
+                return null;
+            }
+            else if (text == null) {
+                throw new IllegalArgumentException("null String cannot be converted to char type");
+            }
+            else if (text.startsWith(UNICODE_PREFIX) && text.length() == UNICODE_LENGTH) {
+                int code = Integer.parseInt(text.substring(UNICODE_PREFIX.length()), 16);
+                return Character.valueOf((char) code);
+            }
+            else if (text.length() == 1) {
+                return Character.valueOf(text.charAt(0));
+            }
+            else {
+                throw new IllegalArgumentException("String [" + text + "] with length " +
+                        text.length() + " cannot be converted to char type: neither Unicode nor single character");
+            }
+        }
+    }
+
+
+    /**
+     * @see CustomBooleanEditor
+     */
+    private static class BooleanStringConverter implements StringConverter {
+
+        private final boolean allowEmpty;
+
+        public BooleanStringConverter(boolean allowEmpty) {
+            this.allowEmpty = allowEmpty;
+        }
+
+        @Override
+        public Object convert(String text) {
+            String input = (text != null ? text.trim() : null);
+            if (this.allowEmpty && !StringUtils.hasLength(input)) {
+                // Treat empty String as null value.
+                return null;
+            }
+            else if (CustomBooleanEditor.VALUE_TRUE.equalsIgnoreCase(input) ||
+                    CustomBooleanEditor.VALUE_ON.equalsIgnoreCase(input) ||
+                    CustomBooleanEditor.VALUE_YES.equalsIgnoreCase(input) ||
+                    CustomBooleanEditor.VALUE_1.equals(input)) {
+                return Boolean.TRUE;
+            }
+            else if (CustomBooleanEditor.VALUE_FALSE.equalsIgnoreCase(input) ||
+                    CustomBooleanEditor.VALUE_OFF.equalsIgnoreCase(input) ||
+                    CustomBooleanEditor.VALUE_NO.equalsIgnoreCase(input) ||
+                    CustomBooleanEditor.VALUE_0.equals(input)) {
+                return Boolean.FALSE;
+            }
+            else {
+                throw new IllegalArgumentException("Invalid boolean value [" + text + "]");
+            }
+        }
+    }
+
+
+    /**
+     * @see CustomNumberEditor
+     */
+    private static class NumberStringConverter implements StringConverter {
+
+        private final Class<? extends Number> numberClass;
+
+        private final boolean allowEmpty;
+
+        public NumberStringConverter(Class<? extends Number> numberClass, boolean allowEmpty) {
+            this.numberClass = numberClass;
+            this.allowEmpty = allowEmpty;
+        }
+
+        @Override
+        public Object convert(String text) {
+            if (this.allowEmpty && !StringUtils.hasText(text)) {
+                // Treat empty String as null value.
+                return null;
+            }
+            return NumberUtils.parseNumber(text, this.numberClass);
+        }
+    }
+
+}
@@ -24,9 +24,11 @@ final class GenericTypeAwarePropertyDescriptor extends PropertyDescriptor {
 
     private volatile Set<Method> ambiguousWriteMethods;
 
-    private MethodParameter writeMethodParameter;
+    private volatile boolean ambiguousWriteMethodsChecked;
 
-    private Class<?> propertyType;
+    private volatile MethodParameter writeMethodParameter;
+
+    private volatile Class<?> propertyType;
 
     private final Class<?> propertyEditorClass;
 
@@ -34,6 +36,20 @@ final class GenericTypeAwarePropertyDescriptor extends PropertyDescriptor {
                                               Method readMethod, Method writeMethod, Class<?> propertyEditorClass)
             throws IntrospectionException {
 
+        this(beanClass, propertyName, readMethod, writeMethod, propertyEditorClass, true);
+    }
+
+    /**
+     * Create a new descriptor for the given read and write methods, with generic
+     * property types getting resolved lazily on first access.
+     * @param lookupFallbackWriteMethod whether to look for a setter that the original
+     * JavaBeans introspection might not have matched against the given read method
+     * (not necessary for methods determined through {@link PropertyDescriptorUtils#determineBasicProperties})
+     */
+    GenericTypeAwarePropertyDescriptor(Class<?> beanClass, String propertyName, Method readMethod,
+                                       Method writeMethod, Class<?> propertyEditorClass, boolean lookupFallbackWriteMethod)
+            throws IntrospectionException {
+
         super(propertyName, null, null);
 
         if (beanClass == null)  {
@@ -43,7 +59,7 @@ final class GenericTypeAwarePropertyDescriptor extends PropertyDescriptor {
 
         Method readMethodToUse = BridgeMethodResolver.findBridgedMethod(readMethod);
         Method writeMethodToUse = BridgeMethodResolver.findBridgedMethod(writeMethod);
-        if (writeMethodToUse == null && readMethodToUse != null) {
+        if (writeMethodToUse == null && readMethodToUse != null && lookupFallbackWriteMethod) {
             // Fallback: Original JavaBeans introspection might not have found matching setter
             // method due to lack of bridge method resolution, in case of the getter using a
             // covariant return type whereas the setter is defined for the concrete property type.
@@ -55,35 +71,6 @@ final class GenericTypeAwarePropertyDescriptor extends PropertyDescriptor {
         }
         this.readMethod = readMethodToUse;
         this.writeMethod = writeMethodToUse;
-
-        if (this.writeMethod != null) {
-            if (this.readMethod == null) {
-                // Write method not matched against read method: potentially ambiguous through
-                // several overloaded variants, in which case an arbitrary winner has been chosen
-                // by the JDK's JavaBeans Introspector...
-                Set<Method> ambiguousCandidates = new HashSet<Method>();
-                for (Method method : beanClass.getMethods()) {
-                    if (method.getName().equals(writeMethodToUse.getName()) &&
-                            !method.equals(writeMethodToUse) && !method.isBridge() &&
-                            method.getParameterTypes().length == writeMethodToUse.getParameterTypes().length) {
-                        ambiguousCandidates.add(method);
-                    }
-                }
-                if (!ambiguousCandidates.isEmpty()) {
-                    this.ambiguousWriteMethods = ambiguousCandidates;
-                }
-            }
-            this.writeMethodParameter = new MethodParameter(this.writeMethod, 0);
-            GenericTypeResolver.resolveParameterType(this.writeMethodParameter, this.beanClass);
-        }
-
-        if (this.readMethod != null) {
-            this.propertyType = GenericTypeResolver.resolveReturnType(this.readMethod, this.beanClass);
-        }
-        else if (this.writeMethodParameter != null) {
-            this.propertyType = this.writeMethodParameter.getParameterType();
-        }
-
         this.propertyEditorClass = propertyEditorClass;
     }
 
@@ -102,6 +89,9 @@ final class GenericTypeAwarePropertyDescriptor extends PropertyDescriptor {
     }
 
     public Method getWriteMethodForActualAccess() {
+        if (!this.ambiguousWriteMethodsChecked) {
+            checkAmbiguousWriteMethods();
+        }
         Set<Method> ambiguousCandidates = this.ambiguousWriteMethods;
         if (ambiguousCandidates != null) {
             this.ambiguousWriteMethods = null;
@@ -112,13 +102,57 @@ final class GenericTypeAwarePropertyDescriptor extends PropertyDescriptor {
         return this.writeMethod;
     }
 
+    /**
+     * Determine whether the write method, if not matched against a read method, is
+     * potentially ambiguous through several overloaded variants, in which case an
+     * arbitrary winner has been chosen by JavaBeans introspection.
+     */
+    private synchronized void checkAmbiguousWriteMethods() {
+        if (this.ambiguousWriteMethodsChecked) {
+            return;
+        }
+        if (this.writeMethod != null && this.readMethod == null) {
+            Set<Method> ambiguousCandidates = new HashSet<Method>();
+            for (Method method : this.beanClass.getMethods()) {
+                if (method.getName().equals(this.writeMethod.getName()) &&
+                        !method.equals(this.writeMethod) && !method.isBridge() &&
+                        method.getParameterTypes().length == this.writeMethod.getParameterTypes().length) {
+                    ambiguousCandidates.add(method);
+                }
+            }
+            if (!ambiguousCandidates.isEmpty()) {
+                this.ambiguousWriteMethods = ambiguousCandidates;
+            }
+        }
+        this.ambiguousWriteMethodsChecked = true;
+    }
+
     public MethodParameter getWriteMethodParameter() {
-        return this.writeMethodParameter;
+        MethodParameter writeMethodParameter = this.writeMethodParameter;
+        if (writeMethodParameter == null && this.writeMethod != null) {
+            writeMethodParameter = new MethodParameter(this.writeMethod, 0);
+            GenericTypeResolver.resolveParameterType(writeMethodParameter, this.beanClass);
+            this.writeMethodParameter = writeMethodParameter;
+        }
+        return writeMethodParameter;
     }
 
     @Override
     public Class<?> getPropertyType() {
-        return this.propertyType;
+        Class<?> propertyType = this.propertyType;
+        if (propertyType == null) {
+            if (this.readMethod != null) {
+                propertyType = GenericTypeResolver.resolveReturnType(this.readMethod, this.beanClass);
+            }
+            else {
+                MethodParameter writeMethodParameter = getWriteMethodParameter();
+                if (writeMethodParameter != null) {
+                    propertyType = writeMethodParameter.getParameterType();
+                }
+            }
+            this.propertyType = propertyType;
+        }
+        return propertyType;
     }
 
     @Override
@@ -0,0 +1,451 @@
+package org.myspring.beans;
+
+import org.myspring.core.NamedThreadLocal;
+import org.myspring.core.convert.ConversionException;
+import org.myspring.core.convert.ConversionService;
+import org.myspring.core.convert.ConverterNotFoundException;
+import org.myspring.core.convert.Property;
+import org.myspring.core.convert.TypeDescriptor;
+import org.myspring.core.util.Assert;
+import org.myspring.core.util.ConcurrentReferenceHashMap;
+import org.myspring.core.util.ObjectUtils;
+import org.myspring.core.util.ReflectionUtils;
+
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.*;
+
+/**
+ * Precompiled plan for populating many instances of a given class from
+ * {@code Map} rows with the same keys, e.g. in a batch job, as a faster
+ * alternative to {@code BeanWrapper.setPropertyValues(new MutablePropertyValues(row))}.
+ *
+ * <p>A plan is compiled once per target class, set of property paths and
+ * {@link ConversionService}, resolving the write method and target type of
+ * each plain property up front. For each column, the conversion strategy gets
+ * selected on first use for a specific type of source value and remembered
+ * for subsequent rows with values of the same type: assigning the value as-is,
+ * converting it through the pre-built type descriptors of the conversion service,
+ * or converting it through the default editors of a {@link SimpleTypeConverter}
+ * kept per thread. Nested or indexed property paths are applied through a
+ * {@link BeanWrapperImpl} for each row.
+ *
+ * <p>As with {@link PropertyAccessor#setPropertyValues(PropertyValues)}, individual
+ * conversion and setter failures get collected and reported in bulk through a
+ * {@link PropertyBatchUpdateException} once all columns of a row have been applied.
+ *
+ * <p>Plans are immutable apart from the remembered conversion strategies and
+ * may therefore be shared across threads.
+ *
+ * @see #forTargetClass(Class, Collection, ConversionService)
+ * @see #bind(Object, Map)
+ */
+public final class PropertyBindingPlan {
+
+    private static final int ASSIGN = 0;
+
+    private static final int CONVERT = 1;
+
+    private static final int TYPE_CONVERTER = 2;
+
+    private static final int WRAPPER = 3;
+
+    private static final Selection NULL_SELECTION = new Selection(null, ASSIGN, null);
+
+    private static final Selection WRAPPER_SELECTION = new Selection(null, WRAPPER, null);
+
+
+    private static final Map<PlanKey, PropertyBindingPlan> planCache =
+            new ConcurrentReferenceHashMap<PlanKey, PropertyBindingPlan>(64);
+
+
+    private final Class<?> targetClass;
+
+    private final ConversionService conversionService;
+
+    private final boolean ignoreUnknown;
+
+    private final Column[] columns;
+
+    private final ThreadLocal<SimpleTypeConverter> typeConverterHolder =
+            new NamedThreadLocal<SimpleTypeConverter>("PropertyBindingPlan type converter");
+
+
+    private PropertyBindingPlan(Class<?> targetClass, Collection<String> propertyPaths,
+                                ConversionService conversionService, boolean ignoreUnknown) {
+
+        this.targetClass = targetClass;
+        this.conversionService = conversionService;
+        this.ignoreUnknown = ignoreUnknown;
+
+        CachedIntrospectionResults cachedIntrospectionResults = CachedIntrospectionResults.forClass(targetClass);
+        BytecodePropertyAccessors accessors = cachedIntrospectionResults.getPropertyAccessors();
+        List<Column> columns = new ArrayList<Column>(propertyPaths.size());
+        for (String propertyPath : propertyPaths) {
+            if (PropertyAccessorUtils.isNestedOrIndexedProperty(propertyPath)) {
+                columns.add(new Column(propertyPath));
+                continue;
+            }
+            PropertyDescriptor pd = cachedIntrospectionResults.getPropertyDescriptor(propertyPath);
+            if (pd == null || pd.getWriteMethod() == null) {
+                if (ignoreUnknown) {
+                    continue;
+                }
+                PropertyMatches matches = PropertyMatches.forProperty(propertyPath, targetClass);
+                throw new NotWritablePropertyException(targetClass, propertyPath,
+                        matches.buildErrorMessage(), matches.getPossibleMatches());
+            }
+            Method writeMethod = ((GenericTypeAwarePropertyDescriptor) pd).getWriteMethodForActualAccess();
+            ReflectionUtils.makeAccessible(writeMethod);
+            TypeDescriptor td = cachedIntrospectionResults.getTypeDescriptor(pd);
+            if (td == null) {
+                td = cachedIntrospectionResults.addTypeDescriptor(pd, new TypeDescriptor(
+                        new Property(targetClass, pd.getReadMethod(), pd.getWriteMethod(), pd.getName())));
+            }
+            columns.add(new Column(propertyPath, writeMethod, td, accessors,
+                    (accessors != null ? accessors.getWriteIndex(pd) : -1)));
+        }
+        this.columns = columns.toArray(new Column[columns.size()]);
+    }
+
+
+    /**
+     * Return the class of the objects that this plan populates.
+     */
+    public Class<?> getTargetClass() {
+        return this.targetClass;
+    }
+
+    /**
+     * Return the ConversionService used for converting column values, if any.
+     */
+    public ConversionService getConversionService() {
+        return this.conversionService;
+    }
+
+    /**
+     * Return the property paths that this plan binds, in binding order
+     * (excluding unknown properties if ignored).
+     */
+    public List<String> getPropertyPaths() {
+        List<String> propertyPaths = new ArrayList<String>(this.columns.length);
+        for (Column column : this.columns) {
+            propertyPaths.add(column.propertyPath);
+        }
+        return propertyPaths;
+    }
+
+    /**
+     * Populate the given target object from the given row. Columns of this plan
+     * that are not contained in the row are left untouched, and row entries that
+     * are not part of this plan are ignored.
+     * @param target the object to populate (an instance of the target class)
+     * @param row the values to bind, keyed by property path
+     * @throws NotWritablePropertyException if a nested property path turns out
+     * not to be writable (unless unknown properties are ignored)
+     * @throws PropertyBatchUpdateException if one or more values could not be
+     * converted or set, after all other values have been applied
+     * @throws BeansException in case of other critical failures, as with a BeanWrapper
+     */
+    public void bind(Object target, Map<String, ?> row) throws BeansException {
+        if (target == null || target.getClass() != this.targetClass) {
+            throw new IllegalArgumentException("Binding plan for class [" + this.targetClass.getName() +
+                    "] does not apply to " + ObjectUtils.identityToString(target));
+        }
+        BeanWrapperImpl bw = null;
+        List<PropertyAccessException> propertyAccessExceptions = null;
+        for (Column column : this.columns) {
+            Object value = row.get(column.propertyPath);
+            if (value == null && !row.containsKey(column.propertyPath)) {
+                continue;
+            }
+            try {
+                Selection selection = column.getSelection(value);
+                if (selection.strategy == WRAPPER) {
+                    if (bw == null) {
+                        bw = new BeanWrapperImpl(target);
+                        bw.setConversionService(this.conversionService);
+                    }
+                    bw.setPropertyValue(column.compiledPath, value);
+                }
+                else {
+                    column.apply(target, value, selection);
+                }
+            }
+            catch (NotWritablePropertyException ex) {
+                if (!this.ignoreUnknown) {
+                    throw ex;
+                }
+            }
+            catch (PropertyAccessException ex) {
+                if (propertyAccessExceptions == null) {
+                    propertyAccessExceptions = new LinkedList<PropertyAccessException>();
+                }
+                propertyAccessExceptions.add(ex);
+            }
+        }
+
+        // If we encountered individual exceptions, throw the composite exception.
+        if (propertyAccessExceptions != null) {
+            PropertyAccessException[] paeArray =
+                    propertyAccessExceptions.toArray(new PropertyAccessException[propertyAccessExceptions.size()]);
+            throw new PropertyBatchUpdateException(paeArray);
+        }
+    }
+
+    /**
+     * Return the type converter with default editors for the current thread,
+     * creating it on first use (since editors are not thread-safe).
+     */
+    private SimpleTypeConverter getTypeConverter() {
+        SimpleTypeConverter typeConverter = this.typeConverterHolder.get();
+        if (typeConverter == null) {
+            typeConverter = new SimpleTypeConverter();
+            typeConverter.setConversionService(this.conversionService);
+            this.typeConverterHolder.set(typeConverter);
+        }
+        return typeConverter;
+    }
+
+    @Override
+    public String toString() {
+        return "PropertyBindingPlan for class [" + this.targetClass.getName() + "]: " + getPropertyPaths();
+    }
+
+
+    /**
+     * Obtain the binding plan for the given target class, property paths and
+     * ConversionService, compiling it on first request.
+     * @param targetClass the class of the objects to populate
+     * @param propertyPaths the keys of the rows to bind, i.e. property paths on the target class
+     * @param conversionService the ConversionService to convert values with (may be {@code null})
+     * @return the (potentially cached) binding plan
+     * @throws NotWritablePropertyException if a plain property is not writable
+     */
+    public static PropertyBindingPlan forTargetClass(Class<?> targetClass, Collection<String> propertyPaths,
+                                                     ConversionService conversionService) throws BeansException {
+
+        return forTargetClass(targetClass, propertyPaths, conversionService, false);
+    }
+
+    /**
+     * Obtain the binding plan for the given target class, property paths and
+     * ConversionService, compiling it on first request.
+     * @param targetClass the class of the objects to populate
+     * @param propertyPaths the keys of the rows to bind, i.e. property paths on the target class
+     * @param conversionService the ConversionService to convert values with (may be {@code null})
+     * @param ignoreUnknown whether to ignore unknown properties rather than throwing
+     * a {@link NotWritablePropertyException}
+     * @return the (potentially cached) binding plan
+     * @throws NotWritablePropertyException if a plain property is not writable
+     * and unknown properties are not to be ignored
+     */
+    public static PropertyBindingPlan forTargetClass(Class<?> targetClass, Collection<String> propertyPaths,
+                                                     ConversionService conversionService, boolean ignoreUnknown)
+            throws BeansException {
+
+        Assert.notNull(targetClass, "Target class must not be null");
+        Assert.notNull(propertyPaths, "Property paths must not be null");
+        PlanKey key = new PlanKey(targetClass, new LinkedHashSet<String>(propertyPaths),
+                conversionService, ignoreUnknown);
+        PropertyBindingPlan plan = planCache.get(key);
+        if (plan == null) {
+            plan = new PropertyBindingPlan(targetClass, key.propertyPaths, conversionService, ignoreUnknown);
+            planCache.put(key, plan);
+        }
+        return plan;
+    }
+
+
+    /**
+     * A single property to bind, along with the strategy selected
+     * for the last type of source value encountered.
+     */
+    private class Column {
+
+        final String propertyPath;
+
+        final CompiledPropertyPath compiledPath;
+
+        private final Method writeMethod;
+
+        private final TypeDescriptor targetType;
+
+        private final BytecodePropertyAccessors accessors;
+
+        private final int writeIndex;
+
+        private volatile Selection selection;
+
+        Column(String propertyPath) {
+            this(propertyPath, null, null, null, -1);
+        }
+
+        Column(String propertyPath, Method writeMethod, TypeDescriptor targetType,
+               BytecodePropertyAccessors accessors, int writeIndex) {
+
+            this.propertyPath = propertyPath;
+            this.compiledPath = CompiledPropertyPath.compile(propertyPath);
+            this.writeMethod = writeMethod;
+            this.targetType = targetType;
+            this.accessors = accessors;
+            this.writeIndex = writeIndex;
+        }
+
+        Selection getSelection(Object value) {
+            if (this.writeMethod == null) {
+                return WRAPPER_SELECTION;
+            }
+            if (value == null) {
+                // Let the regular algorithm report null for a primitive
+                return (this.targetType.isPrimitive() ? WRAPPER_SELECTION : NULL_SELECTION);
+            }
+            Selection selection = this.selection;
+            if (selection == null || selection.sourceClass != value.getClass()) {
+                selection = select(value.getClass());
+                this.selection = selection;
+            }
+            return selection;
+        }
+
+        private Selection select(Class<?> sourceClass) {
+            Class<?> targetClass = this.targetType.getObjectType();
+            // Collections, maps and arrays may need their elements converted, just like through a BeanWrapper
+            boolean elementConversionPossible = (Collection.class.isAssignableFrom(targetClass) ||
+                    Map.class.isAssignableFrom(targetClass) || targetClass.isArray());
+            if (targetClass.isAssignableFrom(sourceClass) && !elementConversionPossible) {
+                return new Selection(sourceClass, ASSIGN, null);
+            }
+            if (conversionService != null) {
+                TypeDescriptor sourceType = TypeDescriptor.valueOf(sourceClass);
+                if (conversionService.canConvert(sourceType, this.targetType)) {
+                    return new Selection(sourceClass, CONVERT, sourceType);
+                }
+            }
+            return new Selection(sourceClass, TYPE_CONVERTER, null);
+        }
+
+        /**
+         * Convert the given value if necessary and set it on the given target,
+         * according to the selected (non-wrapper) strategy.
+         */
+        void apply(Object target, Object value, Selection selection) throws PropertyAccessException {
+            Object valueToApply = value;
+            try {
+                if (selection.strategy == CONVERT) {
+                    valueToApply = conversionService.convert(value, selection.sourceType, this.targetType);
+                }
+                else if (selection.strategy == TYPE_CONVERTER) {
+                    valueToApply = getTypeConverter().typeConverterDelegate.convertIfNecessary(
+                            this.propertyPath, null, value, this.targetType.getType(), this.targetType);
+                }
+            }
+            catch (ConverterNotFoundException ex) {
+                PropertyChangeEvent pce = new PropertyChangeEvent(target, this.propertyPath, null, value);
+                throw new ConversionNotSupportedException(pce, this.targetType.getType(), ex);
+            }
+            catch (ConversionException ex) {
+                PropertyChangeEvent pce = new PropertyChangeEvent(target, this.propertyPath, null, value);
+                throw new TypeMismatchException(pce, this.targetType.getType(), ex);
+            }
+            catch (IllegalStateException ex) {
+                PropertyChangeEvent pce = new PropertyChangeEvent(target, this.propertyPath, null, value);
+                throw new ConversionNotSupportedException(pce, this.targetType.getType(), ex);
+            }
+            catch (IllegalArgumentException ex) {
+                PropertyChangeEvent pce = new PropertyChangeEvent(target, this.propertyPath, null, value);
+                throw new TypeMismatchException(pce, this.targetType.getType(), ex);
+            }
+            try {
+                if (this.writeIndex >= 0 && System.getSecurityManager() == null) {
+                    this.accessors.setValue(target, this.writeIndex, valueToApply);
+                }
+                else {
+                    this.writeMethod.invoke(target, valueToApply);
+                }
+            }
+            catch (InvocationTargetException ex) {
+                PropertyChangeEvent pce = new PropertyChangeEvent(target, this.propertyPath, null, value);
+                Throwable cause = ex.getTargetException();
+                if (cause instanceof ClassCastException) {
+                    throw new TypeMismatchException(pce, this.targetType.getType(), cause);
+                }
+                if (cause instanceof UndeclaredThrowableException) {
+                    cause = cause.getCause();
+                }
+                throw new MethodInvocationException(pce, cause);
+            }
+            catch (Exception ex) {
+                PropertyChangeEvent pce = new PropertyChangeEvent(target, this.propertyPath, null, value);
+                throw new MethodInvocationException(pce, ex);
+            }
+        }
+    }
+
+
+    /**
+     * Conversion strategy selected for a specific type of source value.
+     */
+    private static class Selection {
+
+        final Class<?> sourceClass;
+
+        final int strategy;
+
+        final TypeDescriptor sourceType;
+
+        Selection(Class<?> sourceClass, int strategy, TypeDescriptor sourceType) {
+            this.sourceClass = sourceClass;
+            this.strategy = strategy;
+            this.sourceType = sourceType;
+        }
+    }
+
+
+    /**
+     * Cache key for binding plans.
+     */
+    private static final class PlanKey {
+
+        final Class<?> targetClass;
+
+        final Set<String> propertyPaths;
+
+        final ConversionService conversionService;
+
+        final boolean ignoreUnknown;
+
+        PlanKey(Class<?> targetClass, Set<String> propertyPaths, ConversionService conversionService,
+                boolean ignoreUnknown) {
+
+            this.targetClass = targetClass;
+            this.propertyPaths = propertyPaths;
+            this.conversionService = conversionService;
+            this.ignoreUnknown = ignoreUnknown;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) {
+                return true;
+            }
+            if (!(other instanceof PlanKey)) {
+                return false;
+            }
+            PlanKey otherKey = (PlanKey) other;
+            return (this.targetClass == otherKey.targetClass && this.propertyPaths.equals(otherKey.propertyPaths) &&
+                    this.conversionService == otherKey.conversionService &&
+                    this.ignoreUnknown == otherKey.ignoreUnknown);
+        }
+
+        @Override
+        public int hashCode() {
+            return (this.targetClass.hashCode() * 29 + this.propertyPaths.hashCode()) * 29 +
+                    ObjectUtils.nullSafeHashCode(this.conversionService);
+        }
+    }
+
+}
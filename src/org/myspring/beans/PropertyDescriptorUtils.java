@@ -3,12 +3,77 @@ package org.myspring.beans;
 import org.myspring.core.util.ObjectUtils;
 
 import java.beans.IntrospectionException;
+import java.beans.Introspector;
 import java.beans.PropertyDescriptor;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
 import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
 class PropertyDescriptorUtils {
 
+    /**
+     * Determine the basic JavaBeans properties of the given class through a single
+     * pass over its public methods, following the JavaBeans naming conventions for
+     * getters, boolean "is" getters and void setters: without any {@code BeanInfo}
+     * search and without indexed properties (which are accessed through their
+     * array getters and setters instead).
+     * <p>Generic property types get resolved lazily by the returned descriptors.
+     * @param beanClass the class to introspect
+     * @return the property descriptors, in alphabetical order of their names
+     * @throws IntrospectionException if a descriptor could not be built
+     */
+    public static List<PropertyDescriptor> determineBasicProperties(Class<?> beanClass) throws IntrospectionException {
+        Map<String, BasicPropertyMethods> propertyMethods = new TreeMap<String, BasicPropertyMethods>();
+        for (Method method : beanClass.getMethods()) {
+            if (Modifier.isStatic(method.getModifiers()) || method.isBridge()) {
+                continue;
+            }
+            String methodName = method.getName();
+            int paramCount = method.getParameterTypes().length;
+            Class<?> returnType = method.getReturnType();
+            if (paramCount == 0 && returnType != void.class) {
+                if (methodName.length() > 3 && methodName.startsWith("get")) {
+                    getPropertyMethods(propertyMethods, methodName.substring(3)).addReadMethod(method);
+                }
+                else if (methodName.length() > 2 && methodName.startsWith("is") && returnType == boolean.class) {
+                    getPropertyMethods(propertyMethods, methodName.substring(2)).booleanReadMethod = method;
+                }
+            }
+            else if (paramCount == 1 && returnType == void.class &&
+                    methodName.length() > 3 && methodName.startsWith("set")) {
+                getPropertyMethods(propertyMethods, methodName.substring(3)).writeMethods.add(method);
+            }
+        }
+
+        List<PropertyDescriptor> pds = new ArrayList<PropertyDescriptor>(propertyMethods.size());
+        for (Map.Entry<String, BasicPropertyMethods> entry : propertyMethods.entrySet()) {
+            BasicPropertyMethods methods = entry.getValue();
+            Method readMethod = methods.determineReadMethod();
+            Method writeMethod = methods.determineWriteMethod(readMethod);
+            if (readMethod != null || writeMethod != null) {
+                pds.add(new GenericTypeAwarePropertyDescriptor(
+                        beanClass, entry.getKey(), readMethod, writeMethod, null, false));
+            }
+        }
+        return pds;
+    }
+
+    private static BasicPropertyMethods getPropertyMethods(Map<String, BasicPropertyMethods> propertyMethods,
+                                                           String baseName) {
+
+        String propertyName = Introspector.decapitalize(baseName);
+        BasicPropertyMethods methods = propertyMethods.get(propertyName);
+        if (methods == null) {
+            methods = new BasicPropertyMethods();
+            propertyMethods.put(propertyName, methods);
+        }
+        return methods;
+    }
+
     public static void copyNonMethodProperties(PropertyDescriptor source, PropertyDescriptor target)
             throws IntrospectionException {
 
@@ -133,4 +198,58 @@ class PropertyDescriptorUtils {
                 pd.isBound() == otherPd.isBound() && pd.isConstrained() == otherPd.isConstrained());
     }
 
+
+    /**
+     * Getter and setter candidates for a basic property, collected from the public methods of a class.
+     */
+    private static class BasicPropertyMethods {
+
+        Method readMethod;
+
+        Method booleanReadMethod;
+
+        final List<Method> writeMethods = new ArrayList<Method>(1);
+
+        void addReadMethod(Method method) {
+            // Prefer the most specific return type, e.g. for a covariant override
+            // next to an abstract interface method
+            if (this.readMethod == null ||
+                    this.readMethod.getReturnType().isAssignableFrom(method.getReturnType())) {
+                this.readMethod = method;
+            }
+        }
+
+        Method determineReadMethod() {
+            if (this.booleanReadMethod != null &&
+                    (this.readMethod == null || this.readMethod.getReturnType() == boolean.class)) {
+                return this.booleanReadMethod;
+            }
+            return this.readMethod;
+        }
+
+        Method determineWriteMethod(Method readMethod) {
+            if (this.writeMethods.isEmpty()) {
+                return null;
+            }
+            if (readMethod == null) {
+                // Potentially ambiguous: see GenericTypeAwarePropertyDescriptor#getWriteMethodForActualAccess
+                return this.writeMethods.get(0);
+            }
+            Class<?> readType = readMethod.getReturnType();
+            Method compatibleMethod = null;
+            for (Method writeMethod : this.writeMethods) {
+                Class<?> writeType = writeMethod.getParameterTypes()[0];
+                if (writeType == readType) {
+                    return writeMethod;
+                }
+                if (compatibleMethod == null &&
+                        (writeType.isAssignableFrom(readType) || readType.isAssignableFrom(writeType))) {
+                    compatibleMethod = writeMethod;
+                }
+            }
+            // No setter compatible with the getter: read-only, as with the JDK Introspector
+            return compatibleMethod;
+        }
+    }
+
 }
@@ -92,6 +92,23 @@ public class PropertyEditorRegistrySupport  implements PropertyEditorRegistry{
         }
         return this.defaultEditors.get(requiredType);
     }
+    /**
+     * Return a shared stateless converter for String values, equivalent to the
+     * default editor that this registry would use for the given type.
+     * <p>Allows for converting Strings without creating the default editors.
+     * @param requiredType the type to convert to
+     * @return the converter, or {@code null} if default editors are not active,
+     * the default editor has been overridden, or there is no default editor for the type
+     * @see #getDefaultEditor
+     */
+    DefaultStringConverters.StringConverter getDefaultStringConverter(Class<?> requiredType) {
+        if (!this.defaultEditorsActive ||
+                (this.overriddenDefaultEditors != null && this.overriddenDefaultEditors.containsKey(requiredType))) {
+            return null;
+        }
+        return DefaultStringConverters.getConverter(requiredType);
+    }
+
     private void createDefaultEditors() {
         this.defaultEditors = new HashMap<Class<?>, PropertyEditor>(64);
 
@@ -154,10 +154,20 @@ class TypeConverterDelegate {
                     }
                 }
             }
-            if (editor == null) {
-                editor = findDefaultEditor(requiredType);
+            DefaultStringConverters.StringConverter stringConverter = null;
+            if (editor == null && requiredType != null && convertedValue instanceof String) {
+                // Shared stateless equivalent of the default editor, if any.
+                stringConverter = this.propertyEditorRegistry.getDefaultStringConverter(requiredType);
+            }
+            if (stringConverter != null) {
+                convertedValue = stringConverter.convert((String) convertedValue);
+            }
+            else {
+                if (editor == null) {
+                    editor = findDefaultEditor(requiredType);
+                }
+                convertedValue = doConvertValue(oldValue, convertedValue, requiredType, editor);
             }
-            convertedValue = doConvertValue(oldValue, convertedValue, requiredType, editor);
         }
 
         boolean standardConversion = false;
@@ -2,6 +2,17 @@ package org.myspring.beans.factory;
 
 public interface FactoryBean<T> {
 
+    /**
+     * The name of an attribute that can be
+     * {@link org.myspring.core.AttributeAccessor#setAttribute set} on a
+     * {@link org.myspring.beans.factory.config.BeanDefinition} so that
+     * factory beans can signal their object type when it can't be deduced
+     * from the factory bean class or factory method signature.
+     * <p>The value may be a {@code Class}, a {@code ResolvableType} or a class name.
+     */
+    String OBJECT_TYPE_ATTRIBUTE = "factoryBeanObjectType";
+
+
     T getObject() throws Exception;
 
     Class<?> getObjectType();
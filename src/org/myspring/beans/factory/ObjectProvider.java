@@ -1,8 +1,12 @@
 package org.myspring.beans.factory;
 
 import org.myspring.beans.BeansException;
+import org.myspring.core.lang.UsesJava8;
 
-public interface ObjectProvider<T> extends ObjectFactory<T>  {
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+public interface ObjectProvider<T> extends ObjectFactory<T>, Iterable<T> {
 
     T getObject(Object... args) throws BeansException;
 
@@ -10,4 +14,30 @@ public interface ObjectProvider<T> extends ObjectFactory<T>  {
 
     T getIfUnique() throws BeansException;
 
+    /**
+     * Return an Iterator over all matching object instances, in registration order.
+     * <p>Each instance is only obtained from the factory once the iterator gets to it.
+     * @see #stream()
+     */
+    @Override
+    Iterator<T> iterator();
+
+    /**
+     * Return a sequential Stream over all matching object instances, in registration order.
+     * <p>Each instance is only obtained from the factory once the stream pulls it,
+     * so short-circuiting operations leave the remaining instances alone.
+     * @see #orderedStream()
+     */
+    @UsesJava8
+    Stream<T> stream();
+
+    /**
+     * Return a sequential Stream over all matching object instances, pre-ordered
+     * according to the factory's common order comparator.
+     * <p>Note that sorting requires all matching instances to be obtained upfront.
+     * @see #stream()
+     */
+    @UsesJava8
+    Stream<T> orderedStream();
+
 }
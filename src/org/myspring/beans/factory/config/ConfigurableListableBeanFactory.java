@@ -24,6 +24,14 @@ public interface ConfigurableListableBeanFactory
 
     void clearMetadataCache();
 
+    /**
+     * Release all metadata that is not needed for the beans created so far and that
+     * can be recomputed on demand, e.g. merged bean definitions of created singletons.
+     * <p>Typically triggered after the startup of a singleton-only application,
+     * for reclaiming heap space.
+     */
+    void trimMetadataCaches();
+
     void freezeConfiguration();
 
     boolean isConfigurationFrozen();
@@ -12,7 +12,7 @@ public class ConstructorArgumentValues {
 
     private final Map<Integer, ValueHolder> indexedArgumentValues = new LinkedHashMap<Integer, ValueHolder>(0);
 
-    private final List<ValueHolder> genericArgumentValues = new LinkedList<ValueHolder>();
+    private final List<ValueHolder> genericArgumentValues = new ArrayList<ValueHolder>(0);
 
     public ConstructorArgumentValues() {
     }
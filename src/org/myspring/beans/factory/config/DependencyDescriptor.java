@@ -7,6 +7,7 @@ import org.myspring.beans.factory.NoUniqueBeanDefinitionException;
 import org.myspring.core.MethodParameter;
 import org.myspring.core.ParameterNameDiscoverer;
 import org.myspring.core.ResolvableType;
+import org.myspring.core.util.ObjectUtils;
 
 import java.io.Serializable;
 import java.lang.reflect.ParameterizedType;
@@ -156,4 +157,24 @@ public class DependencyDescriptor extends InjectionPoint implements Serializable
             this.methodParameter.initParameterNameDiscovery(parameterNameDiscoverer);
         }
     }
+
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!super.equals(other)) {
+            return false;
+        }
+        DependencyDescriptor otherDesc = (DependencyDescriptor) other;
+        return (this.required == otherDesc.required && this.eager == otherDesc.eager &&
+                this.nestingLevel == otherDesc.nestingLevel &&
+                ObjectUtils.nullSafeEquals(this.containingClass, otherDesc.containingClass));
+    }
+
+    @Override
+    public int hashCode() {
+        return (31 * super.hashCode() + ObjectUtils.nullSafeHashCode(this.containingClass));
+    }
 }
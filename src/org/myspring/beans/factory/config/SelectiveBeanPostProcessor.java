@@ -0,0 +1,17 @@
+package org.myspring.beans.factory.config;
+
+/**
+ * Extension of {@link BeanPostProcessor} for post-processors that only act on
+ * beans of certain classes, allowing the factory to leave them out of the
+ * post-processor chain for all other beans.
+ */
+public interface SelectiveBeanPostProcessor extends BeanPostProcessor {
+
+    /**
+     * Determine whether this post-processor needs to be applied to beans of the given class.
+     * <p>The result is expected to be stable: the factory caches it per bean class.
+     * @param beanClass the class of the bean (or of the raw bean instance)
+     */
+    boolean isApplicableTo(Class<?> beanClass);
+
+}
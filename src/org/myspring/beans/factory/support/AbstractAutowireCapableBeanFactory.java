@@ -19,8 +19,14 @@ import java.security.PrivilegedAction;
 import java.security.PrivilegedActionException;
 import java.security.PrivilegedExceptionAction;
 import java.util.*;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public abstract class AbstractAutowireCapableBeanFactory extends AbstractBeanFactory
         implements AutowireCapableBeanFactory {
@@ -39,6 +45,22 @@ public abstract class AbstractAutowireCapableBeanFactory extends AbstractBeanFac
      */
     private boolean allowRawInjectionDespiteWrapping = false;
 
+    /** Profiler recording the timings of bean creations, if any */
+    private volatile BeanCreationProfiler beanCreationProfiler;
+
+    /** Executor for the init phase of singletons marked for background initialization */
+    private volatile Executor backgroundInitExecutor;
+
+    /** Default background init executor created by this factory, to be shut down on destruction */
+    private ExecutorService defaultBackgroundInitExecutor;
+
+    /** Synchronization monitor for the lazy creation of the default background init executor */
+    private final Object backgroundInitExecutorMonitor = new Object();
+
+    /** Name of the singleton that the current thread may hand off the initialization of */
+    private final ThreadLocal<String> backgroundInitCandidate =
+            new NamedThreadLocal<String>("Singleton eligible for background initialization");
+
     /**
      * Dependency types to ignore on dependency check and autowire, as Set of
      * Class objects: for example, String. Default is none.
@@ -144,6 +166,70 @@ public abstract class AbstractAutowireCapableBeanFactory extends AbstractBeanFac
         this.allowRawInjectionDespiteWrapping = allowRawInjectionDespiteWrapping;
     }
 
+    /**
+     * Set a profiler for recording how much time is spent in each phase
+     * of creating the beans of this factory.
+     * <p>Default is none, in which case no measurements are taken at all.
+     * @see BeanCreationProfiler
+     */
+    public void setBeanCreationProfiler(BeanCreationProfiler beanCreationProfiler) {
+        this.beanCreationProfiler = beanCreationProfiler;
+    }
+
+    /**
+     * Return the profiler for bean creations, if any.
+     */
+    public BeanCreationProfiler getBeanCreationProfiler() {
+        return this.beanCreationProfiler;
+    }
+
+    /**
+     * Set the Executor to run the init phase of singletons on that are marked
+     * for background initialization.
+     * <p>Default is an executor that runs each initialization on a virtual thread
+     * where available (JDK 21+), or on a daemon thread of a cached pool otherwise.
+     * @see AbstractBeanDefinition#setBackgroundInit
+     */
+    public void setBackgroundInitExecutor(Executor backgroundInitExecutor) {
+        this.backgroundInitExecutor = backgroundInitExecutor;
+    }
+
+    /**
+     * Return the Executor for background initialization of singletons,
+     * creating the default one on first access.
+     */
+    public Executor getBackgroundInitExecutor() {
+        Executor executor = this.backgroundInitExecutor;
+        if (executor == null) {
+            synchronized (this.backgroundInitExecutorMonitor) {
+                executor = this.backgroundInitExecutor;
+                if (executor == null) {
+                    this.defaultBackgroundInitExecutor = createDefaultBackgroundInitExecutor();
+                    executor = this.defaultBackgroundInitExecutor;
+                    this.backgroundInitExecutor = executor;
+                }
+            }
+        }
+        return executor;
+    }
+
+    private ExecutorService createDefaultBackgroundInitExecutor() {
+        Method virtualThreadFactory = ClassUtils.getMethodIfAvailable(Executors.class, "newVirtualThreadPerTaskExecutor");
+        if (virtualThreadFactory != null) {
+            return (ExecutorService) ReflectionUtils.invokeMethod(virtualThreadFactory, null);
+        }
+        final String threadNamePrefix = ObjectUtils.getIdentityHexString(this) + "-background-init-";
+        return Executors.newCachedThreadPool(new ThreadFactory() {
+            private final AtomicInteger threadCount = new AtomicInteger();
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, threadNamePrefix + this.threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
     /**
      * Ignore the given dependency type for autowiring:
      * for example, String. Default is none.
@@ -165,11 +251,32 @@ public abstract class AbstractAutowireCapableBeanFactory extends AbstractBeanFac
                     (AbstractAutowireCapableBeanFactory) otherFactory;
             this.instantiationStrategy = otherAutowireFactory.instantiationStrategy;
             this.allowCircularReferences = otherAutowireFactory.allowCircularReferences;
+            this.beanCreationProfiler = otherAutowireFactory.beanCreationProfiler;
+            this.backgroundInitExecutor = otherAutowireFactory.backgroundInitExecutor;
             this.ignoredDependencyTypes.addAll(otherAutowireFactory.ignoredDependencyTypes);
             this.ignoredDependencyInterfaces.addAll(otherAutowireFactory.ignoredDependencyInterfaces);
         }
     }
 
+    /**
+     * Overridden to shut down the default background init executor, if this factory
+     * created one, once pending background initializations have completed.
+     * A new default executor gets created if the factory is used again.
+     */
+    @Override
+    public void destroySingletons() {
+        super.destroySingletons();
+        synchronized (this.backgroundInitExecutorMonitor) {
+            if (this.defaultBackgroundInitExecutor != null) {
+                this.defaultBackgroundInitExecutor.shutdown();
+                if (this.backgroundInitExecutor == this.defaultBackgroundInitExecutor) {
+                    this.backgroundInitExecutor = null;
+                }
+                this.defaultBackgroundInitExecutor = null;
+            }
+        }
+    }
+
 
     //-------------------------------------------------------------------------
     // Typical methods for creating and populating external bean instances
@@ -297,8 +404,20 @@ public abstract class AbstractAutowireCapableBeanFactory extends AbstractBeanFac
     public Object applyBeanPostProcessorsBeforeInitialization(Object existingBean, String beanName)
             throws BeansException {
 
+        return applyBeanPostProcessorsBeforeInitialization(existingBean, beanName,
+                getBeanPostProcessorChain(existingBean != null ? existingBean.getClass() : null));
+    }
+
+    /**
+     * Apply the given post-processor chain's {@code postProcessBeforeInitialization}
+     * callbacks to the given bean instance.
+     * @see #initializeBean(String, Object, RootBeanDefinition)
+     */
+    private Object applyBeanPostProcessorsBeforeInitialization(Object existingBean, String beanName,
+            BeanPostProcessorChain chain) throws BeansException {
+
         Object result = existingBean;
-        for (BeanPostProcessor processor : getBeanPostProcessors()) {
+        for (BeanPostProcessor processor : chain.getBeanPostProcessors()) {
             result = processor.postProcessBeforeInitialization(result, beanName);
             if (result == null) {
                 return result;
@@ -311,8 +430,20 @@ public abstract class AbstractAutowireCapableBeanFactory extends AbstractBeanFac
     public Object applyBeanPostProcessorsAfterInitialization(Object existingBean, String beanName)
             throws BeansException {
 
+        return applyBeanPostProcessorsAfterInitialization(existingBean, beanName,
+                getBeanPostProcessorChain(existingBean != null ? existingBean.getClass() : null));
+    }
+
+    /**
+     * Apply the given post-processor chain's {@code postProcessAfterInitialization}
+     * callbacks to the given bean instance.
+     * @see #initializeBean(String, Object, RootBeanDefinition)
+     */
+    private Object applyBeanPostProcessorsAfterInitialization(Object existingBean, String beanName,
+            BeanPostProcessorChain chain) throws BeansException {
+
         Object result = existingBean;
-        for (BeanPostProcessor processor : getBeanPostProcessors()) {
+        for (BeanPostProcessor processor : chain.getBeanPostProcessors()) {
             result = processor.postProcessAfterInitialization(result, beanName);
             if (result == null) {
                 return result;
@@ -338,6 +469,25 @@ public abstract class AbstractAutowireCapableBeanFactory extends AbstractBeanFac
      */
     @Override
     protected Object createBean(String beanName, RootBeanDefinition mbd, Object[] args) throws BeanCreationException {
+        BeanCreationProfiler profiler = this.beanCreationProfiler;
+        if (profiler == null) {
+            return createBeanInternal(beanName, mbd, args, null);
+        }
+        BeanCreationProfiler.BeanCreation creation = profiler.creationStarted(beanName);
+        boolean successful = false;
+        try {
+            Object beanInstance = createBeanInternal(beanName, mbd, args, creation);
+            successful = true;
+            return beanInstance;
+        }
+        finally {
+            profiler.creationFinished(creation, successful);
+        }
+    }
+
+    private Object createBeanInternal(String beanName, RootBeanDefinition mbd, Object[] args,
+                                      BeanCreationProfiler.BeanCreation creation) {
+
         if (logger.isDebugEnabled()) {
             logger.debug("Creating instance of bean '" + beanName + "'");
         }
@@ -361,6 +511,7 @@ public abstract class AbstractAutowireCapableBeanFactory extends AbstractBeanFac
                     beanName, "Validation of method overrides failed", ex);
         }
 
+        long phaseStart = (creation != null ? System.nanoTime() : 0);
         try {
             // Give BeanPostProcessors a chance to return a proxy instead of the target bean instance.
             Object bean = resolveBeforeInstantiation(beanName, mbdToUse);
@@ -372,6 +523,11 @@ public abstract class AbstractAutowireCapableBeanFactory extends AbstractBeanFac
             throw new BeanCreationException(mbdToUse.getResourceDescription(), beanName,
                     "BeanPostProcessor before instantiation of bean failed", ex);
         }
+        finally {
+            if (creation != null) {
+                creation.phaseCompleted(BeanCreationProfiler.Phase.RESOLVE_BEFORE_INSTANTIATION, phaseStart);
+            }
+        }
 
         Object beanInstance = doCreateBean(beanName, mbdToUse, args);
         if (logger.isDebugEnabled()) {
@@ -397,6 +553,9 @@ public abstract class AbstractAutowireCapableBeanFactory extends AbstractBeanFac
     protected Object doCreateBean(final String beanName, final RootBeanDefinition mbd, final Object[] args)
             throws BeanCreationException {
 
+        BeanCreationProfiler.BeanCreation creation = getCurrentBeanCreation(beanName);
+        long phaseStart = (creation != null ? System.nanoTime() : 0);
+
         // Instantiate the bean.
         BeanWrapper instanceWrapper = null;
         if (mbd.isSingleton()) {
@@ -405,6 +564,10 @@ public abstract class AbstractAutowireCapableBeanFactory extends AbstractBeanFac
         if (instanceWrapper == null) {
             instanceWrapper = createBeanInstance(beanName, mbd, args);
         }
+        if (creation != null) {
+            creation.phaseCompleted(BeanCreationProfiler.Phase.CREATE_BEAN_INSTANCE, phaseStart);
+            phaseStart = System.nanoTime();
+        }
         final Object bean = (instanceWrapper != null ? instanceWrapper.getWrappedInstance() : null);
         Class<?> beanType = (instanceWrapper != null ? instanceWrapper.getWrappedClass() : null);
         mbd.resolvedTargetType = beanType;
@@ -422,6 +585,9 @@ public abstract class AbstractAutowireCapableBeanFactory extends AbstractBeanFac
                 mbd.postProcessed = true;
             }
         }
+        if (creation != null) {
+            creation.phaseCompleted(BeanCreationProfiler.Phase.MERGED_BEAN_DEFINITION_POST_PROCESSING, phaseStart);
+        }
 
         // Eagerly cache singletons to be able to resolve circular references
         // even when triggered by lifecycle interfaces like BeanFactoryAware.
@@ -441,21 +607,58 @@ public abstract class AbstractAutowireCapableBeanFactory extends AbstractBeanFac
         }
 
         // Initialize the bean instance.
+        try {
+            if (creation != null) {
+                phaseStart = System.nanoTime();
+                populateBean(beanName, mbd, instanceWrapper);
+                creation.phaseCompleted(BeanCreationProfiler.Phase.POPULATE_BEAN, phaseStart);
+            }
+            else {
+                populateBean(beanName, mbd, instanceWrapper);
+            }
+        }
+        catch (Throwable ex) {
+            throw wrapInitializationFailure(beanName, mbd, ex);
+        }
+
+        if (bean != null && mbd.isBackgroundInit() && mbd.isSingleton() &&
+                beanName.equals(this.backgroundInitCandidate.get())) {
+            this.backgroundInitCandidate.remove();
+            if (logger.isDebugEnabled()) {
+                logger.debug("Handing off initialization of bean '" + beanName + "' to the background");
+            }
+            final boolean earlyExposure = earlySingletonExposure;
+            initializeSingletonInBackground(beanName, new Callable<Object>() {
+                @Override
+                public Object call() {
+                    return completeBeanCreation(beanName, mbd, bean, earlyExposure);
+                }
+            }, getBackgroundInitExecutor());
+            return bean;
+        }
+        return completeBeanCreation(beanName, mbd, bean, earlySingletonExposure);
+    }
+
+    /**
+     * Initialize the given populated bean instance and register it as disposable,
+     * making sure that an early reference handed out for it is still valid.
+     * @param beanName the name of the bean
+     * @param mbd the merged bean definition for the bean
+     * @param bean the raw bean instance
+     * @param earlySingletonExposure whether an early reference may have been exposed
+     * @return the object to expose as the bean
+     */
+    private Object completeBeanCreation(String beanName, RootBeanDefinition mbd, Object bean,
+                                        boolean earlySingletonExposure) {
+
         Object exposedObject = bean;
         try {
-            populateBean(beanName, mbd, instanceWrapper);
             if (exposedObject != null) {
                 exposedObject = initializeBean(beanName, exposedObject, mbd);
             }
         }
         catch (Throwable ex) {
-            if (ex instanceof BeanCreationException && beanName.equals(((BeanCreationException) ex).getBeanName())) {
-                throw (BeanCreationException) ex;
-            }
-            else {
-                throw new BeanCreationException(
-                        mbd.getResourceDescription(), beanName, "Initialization of bean failed", ex);
-            }
+            throw wrapInitializationFailure(beanName, mbd, ex);
         }
 
         if (earlySingletonExposure) {
@@ -497,6 +700,58 @@ public abstract class AbstractAutowireCapableBeanFactory extends AbstractBeanFac
         return exposedObject;
     }
 
+    private BeanCreationException wrapInitializationFailure(String beanName, RootBeanDefinition mbd, Throwable ex) {
+        if (ex instanceof BeanCreationException && beanName.equals(((BeanCreationException) ex).getBeanName())) {
+            return (BeanCreationException) ex;
+        }
+        return new BeanCreationException(mbd.getResourceDescription(), beanName, "Initialization of bean failed", ex);
+    }
+
+    /**
+     * Create the given singleton, handing off its init phase to the
+     * {@link #setBackgroundInitExecutor background executor} if its bean
+     * definition is marked for background initialization.
+     * @param beanName the name of the bean
+     * @see AbstractBeanDefinition#setBackgroundInit
+     * @see #awaitBackgroundInitializations()
+     */
+    void createSingletonWithBackgroundInit(String beanName) {
+        // Create depends-on beans first: the hand-off must not happen in a nested creation.
+        String[] dependsOn = getMergedLocalBeanDefinition(beanName).getDependsOn();
+        if (dependsOn != null) {
+            for (String dep : dependsOn) {
+                getBean(dep);
+            }
+        }
+        this.backgroundInitCandidate.set(beanName);
+        try {
+            getBean(beanName);
+        }
+        finally {
+            this.backgroundInitCandidate.remove();
+        }
+    }
+
+    /**
+     * Return the profiled creation of the given bean on the current thread, if any.
+     */
+    private BeanCreationProfiler.BeanCreation getCurrentBeanCreation(String beanName) {
+        BeanCreationProfiler profiler = this.beanCreationProfiler;
+        return (profiler != null ? profiler.getCurrentCreation(beanName) : null);
+    }
+
+    /**
+     * Records the wait as time spent on dependencies if a profiler is set.
+     * @see #setBeanCreationProfiler
+     */
+    @Override
+    protected void afterSingletonLockWait(String beanName, long waitNanos) {
+        BeanCreationProfiler profiler = this.beanCreationProfiler;
+        if (profiler != null) {
+            profiler.dependencyWaited(waitNanos);
+        }
+    }
+
     @Override
     protected Class<?> predictBeanType(String beanName, RootBeanDefinition mbd, Class<?>... typesToMatch) {
         Class<?> targetType = determineTargetType(beanName, mbd, typesToMatch);
@@ -504,14 +759,12 @@ public abstract class AbstractAutowireCapableBeanFactory extends AbstractBeanFac
         // Apply SmartInstantiationAwareBeanPostProcessors to predict the
         // eventual type after a before-instantiation shortcut.
         if (targetType != null && !mbd.isSynthetic() && hasInstantiationAwareBeanPostProcessors()) {
-            for (BeanPostProcessor bp : getBeanPostProcessors()) {
-                if (bp instanceof SmartInstantiationAwareBeanPostProcessor) {
-                    SmartInstantiationAwareBeanPostProcessor ibp = (SmartInstantiationAwareBeanPostProcessor) bp;
-                    Class<?> predicted = ibp.predictBeanType(targetType, beanName);
-                    if (predicted != null && (typesToMatch.length != 1 || FactoryBean.class != typesToMatch[0] ||
-                            FactoryBean.class.isAssignableFrom(predicted))) {
-                        return predicted;
-                    }
+            for (SmartInstantiationAwareBeanPostProcessor ibp :
+                    getBeanPostProcessorChain(targetType).getSmartInstantiationAwareBeanPostProcessors()) {
+                Class<?> predicted = ibp.predictBeanType(targetType, beanName);
+                if (predicted != null && (typesToMatch.length != 1 || FactoryBean.class != typesToMatch[0] ||
+                        FactoryBean.class.isAssignableFrom(predicted))) {
+                    return predicted;
                 }
             }
         }
@@ -586,7 +839,8 @@ public abstract class AbstractAutowireCapableBeanFactory extends AbstractBeanFac
         // Can't clearly figure out exact method due to type converting / autowiring!
         Class<?> commonType = null;
         Method uniqueCandidate = null;
-        int minNrOfArgs = mbd.getConstructorArgumentValues().getArgumentCount();
+        int minNrOfArgs =
+                (mbd.hasConstructorArgumentValues() ? mbd.getConstructorArgumentValues().getArgumentCount() : 0);
         Method[] candidates = ReflectionUtils.getUniqueDeclaredMethods(factoryClass);
         for (Method candidate : candidates) {
             if (Modifier.isStatic(candidate.getModifiers()) == isStatic && mbd.isFactoryMethod(candidate) &&
@@ -657,42 +911,29 @@ public abstract class AbstractAutowireCapableBeanFactory extends AbstractBeanFac
     }
 
     /**
-     * This implementation attempts to query the FactoryBean's generic parameter metadata
-     * if present to determine the object type. If not present, i.e. the FactoryBean is
-     * declared as a raw type, checks the FactoryBean's {@code getObjectType} method
-     * on a plain instance of the FactoryBean, without bean properties applied yet.
-     * If this doesn't return a type yet, a full creation of the FactoryBean is
-     * used as fallback (through delegation to the superclass's implementation).
+     * This implementation attempts to predict the FactoryBean's object type from the
+     * bean definition first, see {@link #predictFactoryBeanObjectType}. If no prediction
+     * is possible, i.e. the FactoryBean is declared as a raw type, checks the FactoryBean's
+     * {@code getObjectType} method on a plain instance of the FactoryBean, without bean
+     * properties applied yet. If this doesn't return a type yet, a full creation of the
+     * FactoryBean is used as fallback (through delegation to the superclass's implementation).
      * <p>The shortcut check for a FactoryBean is only applied in case of a singleton
      * FactoryBean. If the FactoryBean instance itself is not kept as singleton,
      * it will be fully created to check the type of its exposed object.
      */
     @Override
     protected Class<?> getTypeForFactoryBean(String beanName, RootBeanDefinition mbd) {
-        String factoryBeanName = mbd.getFactoryBeanName();
-        String factoryMethodName = mbd.getFactoryMethodName();
+        Class<?> predicted = predictFactoryBeanObjectType(beanName, mbd);
+        if (predicted != null) {
+            return predicted;
+        }
 
-        if (factoryBeanName != null) {
-            if (factoryMethodName != null) {
-                // Try to obtain the FactoryBean's object type from its factory method declaration
-                // without instantiating the containing bean at all.
-                BeanDefinition fbDef = getBeanDefinition(factoryBeanName);
-                if (fbDef instanceof AbstractBeanDefinition) {
-                    AbstractBeanDefinition afbDef = (AbstractBeanDefinition) fbDef;
-                    if (afbDef.hasBeanClass()) {
-                        Class<?> result = getTypeForFactoryBeanFromMethod(afbDef.getBeanClass(), factoryMethodName);
-                        if (result != null) {
-                            return result;
-                        }
-                    }
-                }
-            }
-            // If not resolvable above and the referenced factory bean doesn't exist yet,
-            // exit here - we don't want to force the creation of another bean just to
-            // obtain a FactoryBean's object type...
-            if (!isBeanEligibleForMetadataCaching(factoryBeanName)) {
-                return null;
-            }
+        String factoryBeanName = mbd.getFactoryBeanName();
+        // If not predictable and the referenced factory bean doesn't exist yet,
+        // exit here - we don't want to force the creation of another bean just to
+        // obtain a FactoryBean's object type...
+        if (factoryBeanName != null && !isBeanEligibleForMetadataCaching(factoryBeanName)) {
+            return null;
         }
 
         // Let's obtain a shortcut instance for an early getObjectType() call...
@@ -713,18 +954,100 @@ public abstract class AbstractAutowireCapableBeanFactory extends AbstractBeanFac
             }
         }
 
-        if (factoryBeanName == null && mbd.hasBeanClass()) {
-            // No early bean instantiation possible: determine FactoryBean's type from
-            // static factory method signature or from class inheritance hierarchy...
-            if (factoryMethodName != null) {
-                return getTypeForFactoryBeanFromMethod(mbd.getBeanClass(), factoryMethodName);
+        return null;
+    }
+
+    /**
+     * Predict the object type of the given FactoryBean definition without instantiating
+     * anything: from the {@link FactoryBean#OBJECT_TYPE_ATTRIBUTE} attribute, from the
+     * FactoryBean generic of the definition's target type, factory method signature
+     * or bean class. The prediction is cached in the merged bean definition, so that
+     * type lookups only go through the analysis once per bean.
+     * @param beanName the name of the bean
+     * @param mbd the merged bean definition for the bean
+     * @return the predicted object type, or {@code null} if not predictable
+     */
+    protected Class<?> predictFactoryBeanObjectType(String beanName, RootBeanDefinition mbd) {
+        if (mbd.factoryBeanObjectTypePredicted) {
+            return mbd.predictedFactoryBeanObjectType;
+        }
+
+        // A prediction derived from another bean definition is only cached if successful.
+        boolean cacheable = true;
+        Class<?> result = getTypeForFactoryBeanFromAttributes(beanName, mbd);
+        if (result == null) {
+            ResolvableType beanType = mbd.targetType;
+            if (beanType == null) {
+                beanType = mbd.factoryMethodReturnType;
+            }
+            if (beanType != null) {
+                result = getFactoryBeanGeneric(beanType);
+            }
+        }
+        if (result == null) {
+            String factoryBeanName = mbd.getFactoryBeanName();
+            String factoryMethodName = mbd.getFactoryMethodName();
+            if (factoryBeanName != null) {
+                cacheable = false;
+                if (factoryMethodName != null) {
+                    // Try to obtain the FactoryBean's object type from its factory method declaration
+                    // without instantiating the containing bean at all.
+                    BeanDefinition fbDef = getBeanDefinition(factoryBeanName);
+                    if (fbDef instanceof AbstractBeanDefinition && ((AbstractBeanDefinition) fbDef).hasBeanClass()) {
+                        result = getTypeForFactoryBeanFromMethod(
+                                ((AbstractBeanDefinition) fbDef).getBeanClass(), factoryMethodName);
+                    }
+                }
+            }
+            else if (mbd.hasBeanClass()) {
+                // Determine FactoryBean's type from static factory method signature
+                // or from class inheritance hierarchy...
+                result = (factoryMethodName != null ?
+                        getTypeForFactoryBeanFromMethod(mbd.getBeanClass(), factoryMethodName) :
+                        getFactoryBeanGeneric(ResolvableType.forClass(mbd.getBeanClass())));
             }
             else {
-                return GenericTypeResolver.resolveTypeArgument(mbd.getBeanClass(), FactoryBean.class);
+                cacheable = false;
             }
         }
 
-        return null;
+        if (result != null || cacheable) {
+            mbd.predictedFactoryBeanObjectType = result;
+            mbd.factoryBeanObjectTypePredicted = true;
+        }
+        return result;
+    }
+
+    /**
+     * Determine the FactoryBean object type from the {@link FactoryBean#OBJECT_TYPE_ATTRIBUTE}
+     * attribute of the given bean definition, if present.
+     */
+    private Class<?> getTypeForFactoryBeanFromAttributes(String beanName, RootBeanDefinition mbd) {
+        Object attribute = mbd.getAttribute(FactoryBean.OBJECT_TYPE_ATTRIBUTE);
+        if (attribute == null) {
+            return null;
+        }
+        if (attribute instanceof Class) {
+            return (Class<?>) attribute;
+        }
+        if (attribute instanceof ResolvableType) {
+            return ((ResolvableType) attribute).resolve();
+        }
+        if (attribute instanceof String) {
+            try {
+                return ClassUtils.forName((String) attribute, getBeanClassLoader());
+            }
+            catch (ClassNotFoundException ex) {
+                throw new CannotLoadBeanClassException(mbd.getResourceDescription(), beanName, (String) attribute, ex);
+            }
+        }
+        throw new IllegalArgumentException("Invalid value type for attribute '" +
+                FactoryBean.OBJECT_TYPE_ATTRIBUTE + "': " + attribute.getClass().getName());
+    }
+
+    private Class<?> getFactoryBeanGeneric(ResolvableType type) {
+        Class<?> result = type.as(FactoryBean.class).getGeneric().resolve();
+        return (result != null && Object.class != result ? result : null);
     }
 
     private Class<?> getTypeForFactoryBeanFromMethod(Class<?> beanClass, final String factoryMethodName) {
@@ -765,13 +1088,11 @@ public abstract class AbstractAutowireCapableBeanFactory extends AbstractBeanFac
     protected Object getEarlyBeanReference(String beanName, RootBeanDefinition mbd, Object bean) {
         Object exposedObject = bean;
         if (bean != null && !mbd.isSynthetic() && hasInstantiationAwareBeanPostProcessors()) {
-            for (BeanPostProcessor bp : getBeanPostProcessors()) {
-                if (bp instanceof SmartInstantiationAwareBeanPostProcessor) {
-                    SmartInstantiationAwareBeanPostProcessor ibp = (SmartInstantiationAwareBeanPostProcessor) bp;
-                    exposedObject = ibp.getEarlyBeanReference(exposedObject, beanName);
-                    if (exposedObject == null) {
-                        return null;
-                    }
+            for (SmartInstantiationAwareBeanPostProcessor ibp :
+                    getBeanPostProcessorChain(bean.getClass()).getSmartInstantiationAwareBeanPostProcessors()) {
+                exposedObject = ibp.getEarlyBeanReference(exposedObject, beanName);
+                if (exposedObject == null) {
+                    return null;
                 }
             }
         }
@@ -792,7 +1113,11 @@ public abstract class AbstractAutowireCapableBeanFactory extends AbstractBeanFac
      * that we couldn't obtain a shortcut FactoryBean instance
      */
     private FactoryBean<?> getSingletonFactoryBeanForTypeCheck(String beanName, RootBeanDefinition mbd) {
-        synchronized (getSingletonMutex()) {
+        if (!tryLockSingleton(beanName)) {
+            // Currently created by another thread: don't wait for it just for a type check.
+            return null;
+        }
+        try {
             BeanWrapper bw = this.factoryBeanInstanceCache.get(beanName);
             if (bw != null) {
                 return (FactoryBean<?>) bw.getWrappedInstance();
@@ -828,6 +1153,9 @@ public abstract class AbstractAutowireCapableBeanFactory extends AbstractBeanFac
             }
             return fb;
         }
+        finally {
+            unlockSingleton(beanName);
+        }
     }
 
     /**
@@ -879,11 +1207,9 @@ public abstract class AbstractAutowireCapableBeanFactory extends AbstractBeanFac
      * @see MergedBeanDefinitionPostProcessor#postProcessMergedBeanDefinition
      */
     protected void applyMergedBeanDefinitionPostProcessors(RootBeanDefinition mbd, Class<?> beanType, String beanName) {
-        for (BeanPostProcessor bp : getBeanPostProcessors()) {
-            if (bp instanceof MergedBeanDefinitionPostProcessor) {
-                MergedBeanDefinitionPostProcessor bdp = (MergedBeanDefinitionPostProcessor) bp;
-                bdp.postProcessMergedBeanDefinition(mbd, beanType, beanName);
-            }
+        for (MergedBeanDefinitionPostProcessor bdp :
+                getBeanPostProcessorChain(beanType).getMergedBeanDefinitionPostProcessors()) {
+            bdp.postProcessMergedBeanDefinition(mbd, beanType, beanName);
         }
     }
 
@@ -924,13 +1250,11 @@ public abstract class AbstractAutowireCapableBeanFactory extends AbstractBeanFac
      * @see InstantiationAwareBeanPostProcessor#postProcessBeforeInstantiation
      */
     protected Object applyBeanPostProcessorsBeforeInstantiation(Class<?> beanClass, String beanName) {
-        for (BeanPostProcessor bp : getBeanPostProcessors()) {
-            if (bp instanceof InstantiationAwareBeanPostProcessor) {
-                InstantiationAwareBeanPostProcessor ibp = (InstantiationAwareBeanPostProcessor) bp;
-                Object result = ibp.postProcessBeforeInstantiation(beanClass, beanName);
-                if (result != null) {
-                    return result;
-                }
+        for (InstantiationAwareBeanPostProcessor ibp :
+                getBeanPostProcessorChain(beanClass).getInstantiationAwareBeanPostProcessors()) {
+            Object result = ibp.postProcessBeforeInstantiation(beanClass, beanName);
+            if (result != null) {
+                return result;
             }
         }
         return null;
@@ -997,13 +1321,11 @@ public abstract class AbstractAutowireCapableBeanFactory extends AbstractBeanFac
             throws BeansException {
 
         if (beanClass != null && hasInstantiationAwareBeanPostProcessors()) {
-            for (BeanPostProcessor bp : getBeanPostProcessors()) {
-                if (bp instanceof SmartInstantiationAwareBeanPostProcessor) {
-                    SmartInstantiationAwareBeanPostProcessor ibp = (SmartInstantiationAwareBeanPostProcessor) bp;
-                    Constructor<?>[] ctors = ibp.determineCandidateConstructors(beanClass, beanName);
-                    if (ctors != null) {
-                        return ctors;
-                    }
+            for (SmartInstantiationAwareBeanPostProcessor ibp :
+                    getBeanPostProcessorChain(beanClass).getSmartInstantiationAwareBeanPostProcessors()) {
+                Constructor<?>[] ctors = ibp.determineCandidateConstructors(beanClass, beanName);
+                if (ctors != null) {
+                    return ctors;
                 }
             }
         }
@@ -1086,7 +1408,7 @@ public abstract class AbstractAutowireCapableBeanFactory extends AbstractBeanFac
      * @param bw the BeanWrapper with bean instance
      */
     protected void populateBean(String beanName, RootBeanDefinition mbd, BeanWrapper bw) {
-        PropertyValues pvs = mbd.getPropertyValues();
+        PropertyValues pvs = (mbd.hasPropertyValues() ? mbd.getPropertyValues() : new MutablePropertyValues());
 
         if (bw == null) {
             if (!pvs.isEmpty()) {
@@ -1103,15 +1425,14 @@ public abstract class AbstractAutowireCapableBeanFactory extends AbstractBeanFac
         // state of the bean before properties are set. This can be used, for example,
         // to support styles of field injection.
         boolean continueWithPropertyPopulation = true;
-
-        if (!mbd.isSynthetic() && hasInstantiationAwareBeanPostProcessors()) {
-            for (BeanPostProcessor bp : getBeanPostProcessors()) {
-                if (bp instanceof InstantiationAwareBeanPostProcessor) {
-                    InstantiationAwareBeanPostProcessor ibp = (InstantiationAwareBeanPostProcessor) bp;
-                    if (!ibp.postProcessAfterInstantiation(bw.getWrappedInstance(), beanName)) {
-                        continueWithPropertyPopulation = false;
-                        break;
-                    }
+        BeanPostProcessorChain chain = (hasInstantiationAwareBeanPostProcessors() ?
+                getBeanPostProcessorChain(bw.getWrappedClass()) : null);
+
+        if (!mbd.isSynthetic() && chain != null) {
+            for (InstantiationAwareBeanPostProcessor ibp : chain.getInstantiationAwareBeanPostProcessors()) {
+                if (!ibp.postProcessAfterInstantiation(bw.getWrappedInstance(), beanName)) {
+                    continueWithPropertyPopulation = false;
+                    break;
                 }
             }
         }
@@ -1137,19 +1458,16 @@ public abstract class AbstractAutowireCapableBeanFactory extends AbstractBeanFac
             pvs = newPvs;
         }
 
-        boolean hasInstAwareBpps = hasInstantiationAwareBeanPostProcessors();
+        boolean hasInstAwareBpps = (chain != null && chain.hasInstantiationAwareBeanPostProcessors());
         boolean needsDepCheck = (mbd.getDependencyCheck() != RootBeanDefinition.DEPENDENCY_CHECK_NONE);
 
         if (hasInstAwareBpps || needsDepCheck) {
             PropertyDescriptor[] filteredPds = filterPropertyDescriptorsForDependencyCheck(bw, mbd.allowCaching);
             if (hasInstAwareBpps) {
-                for (BeanPostProcessor bp : getBeanPostProcessors()) {
-                    if (bp instanceof InstantiationAwareBeanPostProcessor) {
-                        InstantiationAwareBeanPostProcessor ibp = (InstantiationAwareBeanPostProcessor) bp;
-                        pvs = ibp.postProcessPropertyValues(pvs, filteredPds, bw.getWrappedInstance(), beanName);
-                        if (pvs == null) {
-                            return;
-                        }
+                for (InstantiationAwareBeanPostProcessor ibp : chain.getInstantiationAwareBeanPostProcessors()) {
+                    pvs = ibp.postProcessPropertyValues(pvs, filteredPds, bw.getWrappedInstance(), beanName);
+                    if (pvs == null) {
+                        return;
                     }
                 }
             }
@@ -1230,7 +1548,7 @@ public abstract class AbstractAutowireCapableBeanFactory extends AbstractBeanFac
 
     protected String[] unsatisfiedNonSimpleProperties(AbstractBeanDefinition mbd, BeanWrapper bw) {
         Set<String> result = new TreeSet<String>();
-        PropertyValues pvs = mbd.getPropertyValues();
+        PropertyValues pvs = (mbd.hasPropertyValues() ? mbd.getPropertyValues() : new MutablePropertyValues());
         PropertyDescriptor[] pds = bw.getPropertyDescriptors();
         for (PropertyDescriptor pd : pds) {
             if (pd.getWriteMethod() != null && !isExcludedFromDependencyCheck(pd) && !pvs.contains(pd.getName()) &&
@@ -1331,6 +1649,21 @@ public abstract class AbstractAutowireCapableBeanFactory extends AbstractBeanFac
             ((BeanWrapperImpl) bw).setSecurityContext(getAccessControlContext());
         }
 
+        // Shortcut: execute the plan built for previous instances of a non-singleton bean.
+        RootBeanDefinition planningBd = null;
+        if (mbd instanceof RootBeanDefinition && !mbd.isSingleton() && pvs == mbd.getPropertyValues() &&
+                System.getSecurityManager() == null) {
+            planningBd = (RootBeanDefinition) mbd;
+            PropertyInjectionPlan plan = planningBd.propertyInjectionPlan;
+            if (plan != null) {
+                if (plan.isApplicableTo(bw)) {
+                    applyPropertyInjectionPlan(beanName, mbd, bw, plan);
+                    return;
+                }
+                planningBd = null;
+            }
+        }
+
         MutablePropertyValues mpvs = null;
         List<PropertyValue> original;
 
@@ -1408,6 +1741,69 @@ public abstract class AbstractAutowireCapableBeanFactory extends AbstractBeanFac
             throw new BeanCreationException(
                     mbd.getResourceDescription(), beanName, "Error setting property values", ex);
         }
+
+        // Precompile the injection steps for subsequent instances.
+        if (planningBd != null) {
+            planningBd.propertyInjectionPlan = PropertyInjectionPlan.build(bw, original);
+        }
+    }
+
+    /**
+     * Apply the given precompiled property injection plan to the given BeanWrapper,
+     * only resolving and converting those values that differ per instance.
+     * @param beanName the bean name passed for better exception information
+     * @param mbd the merged bean definition
+     * @param bw the BeanWrapper wrapping the target object
+     * @param plan the plan built for the bean definition
+     */
+    private void applyPropertyInjectionPlan(String beanName, BeanDefinition mbd, BeanWrapper bw,
+                                            PropertyInjectionPlan plan) {
+
+        Object bean = bw.getWrappedInstance();
+        TypeConverter converter = null;
+        BeanDefinitionValueResolver valueResolver = null;
+        List<PropertyAccessException> propertyAccessExceptions = null;
+        for (PropertyInjectionPlan.Step step : plan.getSteps()) {
+            Object value;
+            if (step.isConstant()) {
+                value = step.getConstantValue();
+            }
+            else {
+                if (valueResolver == null) {
+                    converter = getCustomTypeConverter();
+                    if (converter == null) {
+                        converter = bw;
+                    }
+                    valueResolver = new BeanDefinitionValueResolver(this, beanName, mbd, converter);
+                }
+                PropertyValue pv = step.getPropertyValue();
+                value = valueResolver.resolveValueIfNecessary(pv, pv.getValue());
+                if (step.requiresConversion(value)) {
+                    try {
+                        value = convertForProperty(value, step.getPropertyName(), bw, converter);
+                    }
+                    catch (BeansException ex) {
+                        throw new BeanCreationException(
+                                mbd.getResourceDescription(), beanName, "Error setting property values", ex);
+                    }
+                }
+            }
+            try {
+                step.inject(bean, value);
+            }
+            catch (PropertyAccessException ex) {
+                if (propertyAccessExceptions == null) {
+                    propertyAccessExceptions = new LinkedList<PropertyAccessException>();
+                }
+                propertyAccessExceptions.add(ex);
+            }
+        }
+        if (propertyAccessExceptions != null) {
+            PropertyAccessException[] paeArray =
+                    propertyAccessExceptions.toArray(new PropertyAccessException[propertyAccessExceptions.size()]);
+            throw new BeanCreationException(mbd.getResourceDescription(), beanName,
+                    "Error setting property values", new PropertyBatchUpdateException(paeArray));
+        }
     }
 
     /**
@@ -1440,9 +1836,20 @@ public abstract class AbstractAutowireCapableBeanFactory extends AbstractBeanFac
             invokeAwareMethods(beanName, bean);
         }
 
+        BeanCreationProfiler.BeanCreation creation = getCurrentBeanCreation(beanName);
+        long phaseStart = (creation != null ? System.nanoTime() : 0);
+
+        // Select the post-processors for the target class once: a before-initialization
+        // callback may return a proxy, which must not change the after-initialization chain.
+        BeanPostProcessorChain chain = null;
         Object wrappedBean = bean;
         if (mbd == null || !mbd.isSynthetic()) {
-            wrappedBean = applyBeanPostProcessorsBeforeInitialization(wrappedBean, beanName);
+            chain = getBeanPostProcessorChain(bean != null ? bean.getClass() : null);
+            wrappedBean = applyBeanPostProcessorsBeforeInitialization(wrappedBean, beanName, chain);
+        }
+        if (creation != null) {
+            creation.phaseCompleted(BeanCreationProfiler.Phase.BEFORE_INITIALIZATION, phaseStart);
+            phaseStart = System.nanoTime();
         }
 
         try {
@@ -1453,8 +1860,16 @@ public abstract class AbstractAutowireCapableBeanFactory extends AbstractBeanFac
                     (mbd != null ? mbd.getResourceDescription() : null),
                     beanName, "Invocation of init method failed", ex);
         }
+        if (creation != null) {
+            creation.phaseCompleted(BeanCreationProfiler.Phase.INIT_METHODS, phaseStart);
+            phaseStart = System.nanoTime();
+        }
+
         if (mbd == null || !mbd.isSynthetic()) {
-            wrappedBean = applyBeanPostProcessorsAfterInitialization(wrappedBean, beanName);
+            wrappedBean = applyBeanPostProcessorsAfterInitialization(wrappedBean, beanName, chain);
+        }
+        if (creation != null) {
+            creation.phaseCompleted(BeanCreationProfiler.Phase.AFTER_INITIALIZATION, phaseStart);
         }
         return wrappedBean;
     }
@@ -1599,6 +2014,24 @@ public abstract class AbstractAutowireCapableBeanFactory extends AbstractBeanFac
         }
     }
 
+    /**
+     * Overridden to release the FactoryBean instance cache, the filtered property
+     * descriptors and the parameter names discovered so far as well.
+     */
+    @Override
+    public void trimMetadataCaches() {
+        super.trimMetadataCaches();
+        this.factoryBeanInstanceCache.clear();
+        this.filteredPropertyDescriptorsCache.clear();
+        ParameterNameDiscoverer pnd = this.parameterNameDiscoverer;
+        if (pnd instanceof PrioritizedParameterNameDiscoverer) {
+            ((PrioritizedParameterNameDiscoverer) pnd).clearCache();
+        }
+        else if (pnd instanceof LocalVariableTableParameterNameDiscoverer) {
+            ((LocalVariableTableParameterNameDiscoverer) pnd).clearCache();
+        }
+    }
+
     /**
      * Overridden to clear FactoryBean instance cache as well.
      */
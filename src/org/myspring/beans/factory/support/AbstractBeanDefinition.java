@@ -86,6 +86,8 @@ public abstract class AbstractBeanDefinition extends BeanMetadataAttributeAccess
 
     private boolean lazyInit = false;
 
+    private boolean backgroundInit = false;
+
     private int autowireMode = AUTOWIRE_NO;
 
     private int dependencyCheck = DEPENDENCY_CHECK_NONE;
@@ -96,8 +98,7 @@ public abstract class AbstractBeanDefinition extends BeanMetadataAttributeAccess
 
     private boolean primary = false;
 
-    private final Map<String, AutowireCandidateQualifier> qualifiers =
-            new LinkedHashMap<String, AutowireCandidateQualifier>(0);
+    private Map<String, AutowireCandidateQualifier> qualifiers;
 
     private boolean nonPublicAccessAllowed = true;
 
@@ -107,11 +108,16 @@ public abstract class AbstractBeanDefinition extends BeanMetadataAttributeAccess
 
     private String factoryMethodName;
 
-    private ConstructorArgumentValues constructorArgumentValues;
+    /*
+     * The following three structures are allocated on first access through their
+     * getters only: most definitions in a large context do not define any of them.
+     */
+
+    private volatile ConstructorArgumentValues constructorArgumentValues;
 
-    private MutablePropertyValues propertyValues;
+    private volatile MutablePropertyValues propertyValues;
 
-    private MethodOverrides methodOverrides = new MethodOverrides();
+    private volatile MethodOverrides methodOverrides;
 
     private String initMethodName;
 
@@ -159,8 +165,14 @@ public abstract class AbstractBeanDefinition extends BeanMetadataAttributeAccess
         setLazyInit(original.isLazyInit());
         setFactoryBeanName(original.getFactoryBeanName());
         setFactoryMethodName(original.getFactoryMethodName());
-        setConstructorArgumentValues(new ConstructorArgumentValues(original.getConstructorArgumentValues()));
-        setPropertyValues(new MutablePropertyValues(original.getPropertyValues()));
+        if (!(original instanceof AbstractBeanDefinition) ||
+                ((AbstractBeanDefinition) original).hasConstructorArgumentValues()) {
+            setConstructorArgumentValues(new ConstructorArgumentValues(original.getConstructorArgumentValues()));
+        }
+        if (!(original instanceof AbstractBeanDefinition) ||
+                ((AbstractBeanDefinition) original).hasPropertyValues()) {
+            setPropertyValues(new MutablePropertyValues(original.getPropertyValues()));
+        }
         setRole(original.getRole());
         setSource(original.getSource());
         copyAttributesFrom(original);
@@ -170,6 +182,7 @@ public abstract class AbstractBeanDefinition extends BeanMetadataAttributeAccess
             if (originalAbd.hasBeanClass()) {
                 setBeanClass(originalAbd.getBeanClass());
             }
+            setBackgroundInit(originalAbd.isBackgroundInit());
             setAutowireMode(originalAbd.getAutowireMode());
             setDependencyCheck(originalAbd.getDependencyCheck());
             setDependsOn(originalAbd.getDependsOn());
@@ -178,7 +191,9 @@ public abstract class AbstractBeanDefinition extends BeanMetadataAttributeAccess
             copyQualifiersFrom(originalAbd);
             setNonPublicAccessAllowed(originalAbd.isNonPublicAccessAllowed());
             setLenientConstructorResolution(originalAbd.isLenientConstructorResolution());
-            setMethodOverrides(new MethodOverrides(originalAbd.getMethodOverrides()));
+            if (originalAbd.hasMethodOverrides()) {
+                setMethodOverrides(new MethodOverrides(originalAbd.getMethodOverrides()));
+            }
             setInitMethodName(originalAbd.getInitMethodName());
             setEnforceInitMethod(originalAbd.isEnforceInitMethod());
             setDestroyMethodName(originalAbd.getDestroyMethodName());
@@ -223,8 +238,14 @@ public abstract class AbstractBeanDefinition extends BeanMetadataAttributeAccess
         if (StringUtils.hasLength(other.getFactoryMethodName())) {
             setFactoryMethodName(other.getFactoryMethodName());
         }
-        getConstructorArgumentValues().addArgumentValues(other.getConstructorArgumentValues());
-        getPropertyValues().addPropertyValues(other.getPropertyValues());
+        if (!(other instanceof AbstractBeanDefinition) ||
+                ((AbstractBeanDefinition) other).hasConstructorArgumentValues()) {
+            getConstructorArgumentValues().addArgumentValues(other.getConstructorArgumentValues());
+        }
+        if (!(other instanceof AbstractBeanDefinition) ||
+                ((AbstractBeanDefinition) other).hasPropertyValues()) {
+            getPropertyValues().addPropertyValues(other.getPropertyValues());
+        }
         setRole(other.getRole());
         setSource(other.getSource());
         copyAttributesFrom(other);
@@ -234,6 +255,7 @@ public abstract class AbstractBeanDefinition extends BeanMetadataAttributeAccess
             if (otherAbd.hasBeanClass()) {
                 setBeanClass(otherAbd.getBeanClass());
             }
+            setBackgroundInit(otherAbd.isBackgroundInit());
             setAutowireMode(otherAbd.getAutowireMode());
             setDependencyCheck(otherAbd.getDependencyCheck());
             setDependsOn(otherAbd.getDependsOn());
@@ -242,7 +264,9 @@ public abstract class AbstractBeanDefinition extends BeanMetadataAttributeAccess
             copyQualifiersFrom(otherAbd);
             setNonPublicAccessAllowed(otherAbd.isNonPublicAccessAllowed());
             setLenientConstructorResolution(otherAbd.isLenientConstructorResolution());
-            getMethodOverrides().addOverrides(otherAbd.getMethodOverrides());
+            if (otherAbd.hasMethodOverrides()) {
+                getMethodOverrides().addOverrides(otherAbd.getMethodOverrides());
+            }
             if (StringUtils.hasLength(otherAbd.getInitMethodName())) {
                 setInitMethodName(otherAbd.getInitMethodName());
                 setEnforceInitMethod(otherAbd.isEnforceInitMethod());
@@ -427,6 +451,29 @@ public abstract class AbstractBeanDefinition extends BeanMetadataAttributeAccess
         return this.lazyInit;
     }
 
+    /**
+     * Set whether the init phase of this bean (init methods as well as the
+     * post-processing around them) should run on a background thread when the
+     * bean gets pre-instantiated on startup. Only applicable to a non-lazy singleton
+     * that is not a FactoryBean.
+     * <p>The bean instance only gets published once its initialization has completed:
+     * until then, other beans that need it wait for the background initialization,
+     * while the pre-instantiation of further singletons continues right away.
+     * Useful for singletons with slow, I/O-bound warm-up in their init methods.
+     * @see AbstractAutowireCapableBeanFactory#setBackgroundInitExecutor
+     */
+    public void setBackgroundInit(boolean backgroundInit) {
+        this.backgroundInit = backgroundInit;
+    }
+
+    /**
+     * Return whether the init phase of this bean should run on a background thread
+     * on pre-instantiation.
+     */
+    public boolean isBackgroundInit() {
+        return this.backgroundInit;
+    }
+
     /**
      * Set the autowire mode. This determines whether any automagical detection
      * and setting of bean references will happen. Default is AUTOWIRE_NO,
@@ -561,6 +608,9 @@ public abstract class AbstractBeanDefinition extends BeanMetadataAttributeAccess
      * @see AutowireCandidateQualifier#getTypeName()
      */
     public void addQualifier(AutowireCandidateQualifier qualifier) {
+        if (this.qualifiers == null) {
+            this.qualifiers = new LinkedHashMap<String, AutowireCandidateQualifier>(4);
+        }
         this.qualifiers.put(qualifier.getTypeName(), qualifier);
     }
 
@@ -568,14 +618,14 @@ public abstract class AbstractBeanDefinition extends BeanMetadataAttributeAccess
      * Return whether this bean has the specified qualifier.
      */
     public boolean hasQualifier(String typeName) {
-        return this.qualifiers.keySet().contains(typeName);
+        return (this.qualifiers != null && this.qualifiers.containsKey(typeName));
     }
 
     /**
      * Return the qualifier mapped to the provided type name.
      */
     public AutowireCandidateQualifier getQualifier(String typeName) {
-        return this.qualifiers.get(typeName);
+        return (this.qualifiers != null ? this.qualifiers.get(typeName) : null);
     }
 
     /**
@@ -583,6 +633,9 @@ public abstract class AbstractBeanDefinition extends BeanMetadataAttributeAccess
      * @return the Set of {@link AutowireCandidateQualifier} objects.
      */
     public Set<AutowireCandidateQualifier> getQualifiers() {
+        if (this.qualifiers == null) {
+            return new LinkedHashSet<AutowireCandidateQualifier>(0);
+        }
         return new LinkedHashSet<AutowireCandidateQualifier>(this.qualifiers.values());
     }
 
@@ -592,7 +645,11 @@ public abstract class AbstractBeanDefinition extends BeanMetadataAttributeAccess
      */
     public void copyQualifiersFrom(AbstractBeanDefinition source) {
         Assert.notNull(source, "Source must not be null");
-        this.qualifiers.putAll(source.qualifiers);
+        if (source.qualifiers != null) {
+            for (AutowireCandidateQualifier qualifier : source.qualifiers.values()) {
+                addQualifier(qualifier);
+            }
+        }
     }
 
     /**
@@ -677,54 +734,106 @@ public abstract class AbstractBeanDefinition extends BeanMetadataAttributeAccess
      * Specify constructor argument values for this bean.
      */
     public void setConstructorArgumentValues(ConstructorArgumentValues constructorArgumentValues) {
-        this.constructorArgumentValues =
-                (constructorArgumentValues != null ? constructorArgumentValues : new ConstructorArgumentValues());
+        this.constructorArgumentValues = constructorArgumentValues;
     }
 
     /**
      * Return constructor argument values for this bean (never {@code null}).
+     * <p>Allocates an empty holder on first access if none has been specified;
+     * use {@link #hasConstructorArgumentValues()} for read-only checks.
      */
     @Override
     public ConstructorArgumentValues getConstructorArgumentValues() {
-        return this.constructorArgumentValues;
+        ConstructorArgumentValues cargs = this.constructorArgumentValues;
+        if (cargs == null) {
+            synchronized (this) {
+                cargs = this.constructorArgumentValues;
+                if (cargs == null) {
+                    cargs = new ConstructorArgumentValues();
+                    this.constructorArgumentValues = cargs;
+                }
+            }
+        }
+        return cargs;
     }
 
     /**
      * Return if there are constructor argument values defined for this bean.
      */
     public boolean hasConstructorArgumentValues() {
-        return !this.constructorArgumentValues.isEmpty();
+        ConstructorArgumentValues cargs = this.constructorArgumentValues;
+        return (cargs != null && !cargs.isEmpty());
     }
 
     /**
      * Specify property values for this bean, if any.
      */
     public void setPropertyValues(MutablePropertyValues propertyValues) {
-        this.propertyValues = (propertyValues != null ? propertyValues : new MutablePropertyValues());
+        this.propertyValues = propertyValues;
     }
 
     /**
      * Return property values for this bean (never {@code null}).
+     * <p>Allocates an empty holder on first access if none has been specified;
+     * use {@link #hasPropertyValues()} for read-only checks.
      */
     @Override
     public MutablePropertyValues getPropertyValues() {
-        return this.propertyValues;
+        MutablePropertyValues pvs = this.propertyValues;
+        if (pvs == null) {
+            synchronized (this) {
+                pvs = this.propertyValues;
+                if (pvs == null) {
+                    pvs = new MutablePropertyValues();
+                    this.propertyValues = pvs;
+                }
+            }
+        }
+        return pvs;
+    }
+
+    /**
+     * Return if there are property values defined for this bean.
+     */
+    public boolean hasPropertyValues() {
+        MutablePropertyValues pvs = this.propertyValues;
+        return (pvs != null && !pvs.isEmpty());
     }
 
     /**
      * Specify method overrides for the bean, if any.
      */
     public void setMethodOverrides(MethodOverrides methodOverrides) {
-        this.methodOverrides = (methodOverrides != null ? methodOverrides : new MethodOverrides());
+        this.methodOverrides = methodOverrides;
     }
 
     /**
      * Return information about methods to be overridden by the IoC
      * container. This will be empty if there are no method overrides.
      * Never returns {@code null}.
+     * <p>Allocates an empty holder on first access if none has been specified;
+     * use {@link #hasMethodOverrides()} for read-only checks.
      */
     public MethodOverrides getMethodOverrides() {
-        return this.methodOverrides;
+        MethodOverrides overrides = this.methodOverrides;
+        if (overrides == null) {
+            synchronized (this) {
+                overrides = this.methodOverrides;
+                if (overrides == null) {
+                    overrides = new MethodOverrides();
+                    this.methodOverrides = overrides;
+                }
+            }
+        }
+        return overrides;
+    }
+
+    /**
+     * Return if there are method overrides defined for this bean.
+     */
+    public boolean hasMethodOverrides() {
+        MethodOverrides overrides = this.methodOverrides;
+        return (overrides != null && !overrides.isEmpty());
     }
 
     /**
@@ -891,7 +1000,7 @@ public abstract class AbstractBeanDefinition extends BeanMetadataAttributeAccess
 
 
     public void validate() throws BeanDefinitionValidationException {
-        if (!getMethodOverrides().isEmpty() && getFactoryMethodName() != null) {
+        if (hasMethodOverrides() && getFactoryMethodName() != null) {
             throw new BeanDefinitionValidationException(
                     "Cannot combine static factory method with method overrides: " +
                             "the static factory method must create the instance");
@@ -905,9 +1014,8 @@ public abstract class AbstractBeanDefinition extends BeanMetadataAttributeAccess
 
     public void prepareMethodOverrides() throws BeanDefinitionValidationException {
         // Check that lookup methods exists.
-        MethodOverrides methodOverrides = getMethodOverrides();
-        if (!methodOverrides.isEmpty()) {
-            Set<MethodOverride> overrides = methodOverrides.getOverrides();
+        if (hasMethodOverrides()) {
+            Set<MethodOverride> overrides = getMethodOverrides().getOverrides();
             synchronized (overrides) {
                 for (MethodOverride mo : overrides) {
                     prepareMethodOverride(mo);
@@ -963,19 +1071,23 @@ public abstract class AbstractBeanDefinition extends BeanMetadataAttributeAccess
         if (!ObjectUtils.nullSafeEquals(this.scope, that.scope)) return false;
         if (this.abstractFlag != that.abstractFlag) return false;
         if (this.lazyInit != that.lazyInit) return false;
+        if (this.backgroundInit != that.backgroundInit) return false;
 
         if (this.autowireMode != that.autowireMode) return false;
         if (this.dependencyCheck != that.dependencyCheck) return false;
         if (!Arrays.equals(this.dependsOn, that.dependsOn)) return false;
         if (this.autowireCandidate != that.autowireCandidate) return false;
-        if (!ObjectUtils.nullSafeEquals(this.qualifiers, that.qualifiers)) return false;
+        if (!getQualifiers().equals(that.getQualifiers())) return false;
         if (this.primary != that.primary) return false;
 
         if (this.nonPublicAccessAllowed != that.nonPublicAccessAllowed) return false;
         if (this.lenientConstructorResolution != that.lenientConstructorResolution) return false;
-        if (!ObjectUtils.nullSafeEquals(this.constructorArgumentValues, that.constructorArgumentValues)) return false;
-        if (!ObjectUtils.nullSafeEquals(this.propertyValues, that.propertyValues)) return false;
-        if (!ObjectUtils.nullSafeEquals(this.methodOverrides, that.methodOverrides)) return false;
+        if (hasConstructorArgumentValues() != that.hasConstructorArgumentValues() || (hasConstructorArgumentValues() &&
+                !this.constructorArgumentValues.equals(that.constructorArgumentValues))) return false;
+        if (hasPropertyValues() != that.hasPropertyValues() ||
+                (hasPropertyValues() && !this.propertyValues.equals(that.propertyValues))) return false;
+        if (hasMethodOverrides() != that.hasMethodOverrides() ||
+                (hasMethodOverrides() && !this.methodOverrides.equals(that.methodOverrides))) return false;
 
         if (!ObjectUtils.nullSafeEquals(this.factoryBeanName, that.factoryBeanName)) return false;
         if (!ObjectUtils.nullSafeEquals(this.factoryMethodName, that.factoryMethodName)) return false;
@@ -994,8 +1106,8 @@ public abstract class AbstractBeanDefinition extends BeanMetadataAttributeAccess
     public int hashCode() {
         int hashCode = ObjectUtils.nullSafeHashCode(getBeanClassName());
         hashCode = 29 * hashCode + ObjectUtils.nullSafeHashCode(this.scope);
-        hashCode = 29 * hashCode + ObjectUtils.nullSafeHashCode(this.constructorArgumentValues);
-        hashCode = 29 * hashCode + ObjectUtils.nullSafeHashCode(this.propertyValues);
+        hashCode = 29 * hashCode + (hasConstructorArgumentValues() ? this.constructorArgumentValues.hashCode() : 0);
+        hashCode = 29 * hashCode + (hasPropertyValues() ? this.propertyValues.hashCode() : 0);
         hashCode = 29 * hashCode + ObjectUtils.nullSafeHashCode(this.factoryBeanName);
         hashCode = 29 * hashCode + ObjectUtils.nullSafeHashCode(this.factoryMethodName);
         hashCode = 29 * hashCode + super.hashCode();
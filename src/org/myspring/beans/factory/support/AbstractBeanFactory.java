@@ -13,6 +13,7 @@ import java.beans.PropertyEditor;
 import java.security.*;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 public abstract class AbstractBeanFactory extends FactoryBeanRegistrySupport implements ConfigurableBeanFactory {
     /** Parent bean factory, for bean inheritance support */
@@ -56,6 +57,13 @@ public abstract class AbstractBeanFactory extends FactoryBeanRegistrySupport imp
     /** Indicates whether any DestructionAwareBeanPostProcessors have been registered */
     private boolean hasDestructionAwareBeanPostProcessors;
 
+    /** Generation of resolved BeanHandle state, incremented on invalidation */
+    private final AtomicLong beanHandleGeneration = new AtomicLong();
+
+    /** Cache of applicable BeanPostProcessors: bean Class --> BeanPostProcessorChain */
+    private volatile Map<Class<?>, BeanPostProcessorChain> beanPostProcessorChainCache =
+            new ConcurrentHashMap<Class<?>, BeanPostProcessorChain>(64);
+
     /** Map from scope identifier String to corresponding Scope */
     private final Map<String, Scope> scopes = new LinkedHashMap<String, Scope>(8);
 
@@ -203,15 +211,7 @@ public abstract class AbstractBeanFactory extends FactoryBeanRegistrySupport imp
 
                 else if (mbd.isPrototype()) {
                     // It's a prototype -> create a new instance.
-                    Object prototypeInstance = null;
-                    try {
-                        beforePrototypeCreation(beanName);
-                        prototypeInstance = createBean(beanName, mbd, args);
-                    }
-                    finally {
-                        afterPrototypeCreation(beanName);
-                    }
-                    bean = getObjectForBeanInstance(prototypeInstance, name, beanName, mbd);
+                    bean = createPrototype(name, beanName, mbd, args);
                 }
 
                 else {
@@ -249,7 +249,41 @@ public abstract class AbstractBeanFactory extends FactoryBeanRegistrySupport imp
             }
         }
 
-        // Check if required type matches the type of the actual bean instance.
+        return adaptBeanInstance(name, bean, requiredType);
+    }
+
+    /**
+     * Create a new instance of the given prototype bean, exposing the
+     * FactoryBean-produced object if applicable.
+     * @param name the name of the bean, as requested
+     * @param beanName the canonical bean name
+     * @param mbd the merged bean definition
+     * @param args explicit arguments to use for creating the bean, if any
+     * @return the bean instance to expose
+     */
+    Object createPrototype(String name, String beanName, RootBeanDefinition mbd, Object[] args) {
+        Object prototypeInstance = null;
+        try {
+            beforePrototypeCreation(beanName);
+            prototypeInstance = createBean(beanName, mbd, args);
+        }
+        finally {
+            afterPrototypeCreation(beanName);
+        }
+        return getObjectForBeanInstance(prototypeInstance, name, beanName, mbd);
+    }
+
+    /**
+     * Check if the required type matches the type of the actual bean instance,
+     * converting it if necessary.
+     * @param name the name of the bean, as requested
+     * @param bean the bean instance
+     * @param requiredType the required type of the bean, if any
+     * @return the bean instance to expose
+     * @throws BeanNotOfRequiredTypeException if the bean cannot be converted
+     */
+    @SuppressWarnings("unchecked")
+    <T> T adaptBeanInstance(String name, Object bean, Class<T> requiredType) {
         if (requiredType != null && bean != null && !requiredType.isInstance(bean)) {
             try {
                 return getTypeConverter().convertIfNecessary(bean, requiredType);
@@ -265,6 +299,68 @@ public abstract class AbstractBeanFactory extends FactoryBeanRegistrySupport imp
         return (T) bean;
     }
 
+    /**
+     * Obtain a handle for repeatedly retrieving the bean with the given name,
+     * resolving its name, scope and FactoryBean status once only.
+     * @param name the name of the bean (may be an alias or a FactoryBean dereference)
+     * @return the handle for the bean
+     * @see BeanHandle
+     */
+    public BeanHandle<Object> getBeanHandle(String name) {
+        return new BeanHandle<Object>(this, name, null);
+    }
+
+    /**
+     * Obtain a handle for repeatedly retrieving the bean with the given name,
+     * resolving its name, scope and FactoryBean status once only.
+     * @param name the name of the bean (may be an alias or a FactoryBean dereference)
+     * @param requiredType the type the bean must match (may be {@code null})
+     * @return the handle for the bean
+     * @see BeanHandle
+     */
+    public <T> BeanHandle<T> getBeanHandle(String name, Class<T> requiredType) {
+        return new BeanHandle<T>(this, name, requiredType);
+    }
+
+    /**
+     * Return the current generation of state that {@link BeanHandle BeanHandles} rely on,
+     * changing whenever singletons, aliases or bean definitions get removed or reset.
+     */
+    long getBeanHandleGeneration() {
+        return this.beanHandleGeneration.get();
+    }
+
+    /**
+     * Invalidate all resolved {@link BeanHandle BeanHandles} of this factory.
+     */
+    protected void invalidateBeanHandles() {
+        this.beanHandleGeneration.incrementAndGet();
+    }
+
+    @Override
+    public void registerAlias(String name, String alias) {
+        super.registerAlias(name, alias);
+        invalidateBeanHandles();
+    }
+
+    @Override
+    public void removeAlias(String alias) {
+        super.removeAlias(alias);
+        invalidateBeanHandles();
+    }
+
+    @Override
+    protected void removeSingleton(String beanName) {
+        super.removeSingleton(beanName);
+        invalidateBeanHandles();
+    }
+
+    @Override
+    protected void clearSingletonCache() {
+        super.clearSingletonCache();
+        invalidateBeanHandles();
+    }
+
     @Override
     public boolean containsBean(String name) {
         String beanName = transformedBeanName(name);
@@ -731,6 +827,7 @@ public abstract class AbstractBeanFactory extends FactoryBeanRegistrySupport imp
         if (beanPostProcessor instanceof DestructionAwareBeanPostProcessor) {
             this.hasDestructionAwareBeanPostProcessors = true;
         }
+        clearBeanPostProcessorChainCache();
     }
 
     @Override
@@ -751,6 +848,35 @@ public abstract class AbstractBeanFactory extends FactoryBeanRegistrySupport imp
         return this.hasInstantiationAwareBeanPostProcessors;
     }
 
+    /**
+     * Return the chain of BeanPostProcessors applicable to beans of the given class,
+     * leaving out {@link SelectiveBeanPostProcessor SelectiveBeanPostProcessors}
+     * that do not apply to it.
+     * @param beanClass the bean class, or {@code null} if not known
+     * (in which case all post-processors are applicable)
+     */
+    BeanPostProcessorChain getBeanPostProcessorChain(Class<?> beanClass) {
+        if (beanClass == null) {
+            return new BeanPostProcessorChain(this.beanPostProcessors, null);
+        }
+        Map<Class<?>, BeanPostProcessorChain> cache = this.beanPostProcessorChainCache;
+        BeanPostProcessorChain chain = cache.get(beanClass);
+        if (chain == null) {
+            chain = new BeanPostProcessorChain(this.beanPostProcessors, beanClass);
+            if (ClassUtils.isCacheSafe(beanClass, getBeanClassLoader())) {
+                cache.put(beanClass, chain);
+            }
+        }
+        return chain;
+    }
+
+    /**
+     * Discard the cached BeanPostProcessor chains after a change of post-processors.
+     */
+    private void clearBeanPostProcessorChainCache() {
+        this.beanPostProcessorChainCache = new ConcurrentHashMap<Class<?>, BeanPostProcessorChain>(64);
+    }
+
 
     protected boolean hasDestructionAwareBeanPostProcessors() {
         return this.hasDestructionAwareBeanPostProcessors;
@@ -824,6 +950,7 @@ public abstract class AbstractBeanFactory extends FactoryBeanRegistrySupport imp
                     otherAbstractFactory.hasInstantiationAwareBeanPostProcessors;
             this.hasDestructionAwareBeanPostProcessors = this.hasDestructionAwareBeanPostProcessors ||
                     otherAbstractFactory.hasDestructionAwareBeanPostProcessors;
+            clearBeanPostProcessorChainCache();
             this.scopes.putAll(otherAbstractFactory.scopes);
             this.securityContextProvider = otherAbstractFactory.securityContextProvider;
         }
@@ -1037,9 +1164,9 @@ public abstract class AbstractBeanFactory extends FactoryBeanRegistrySupport imp
 
 
     protected RootBeanDefinition getMergedLocalBeanDefinition(String beanName) throws BeansException {
-        // Quick check on the concurrent map first, with minimal locking.
+        // Quick check on the concurrent map first, without any locking.
         RootBeanDefinition mbd = this.mergedBeanDefinitions.get(beanName);
-        if (mbd != null) {
+        if (mbd != null && !mbd.stale) {
             return mbd;
         }
         return getMergedBeanDefinition(beanName, getBeanDefinition(beanName));
@@ -1057,75 +1184,166 @@ public abstract class AbstractBeanFactory extends FactoryBeanRegistrySupport imp
             String beanName, BeanDefinition bd, BeanDefinition containingBd)
             throws BeanDefinitionStoreException {
 
-        synchronized (this.mergedBeanDefinitions) {
-            RootBeanDefinition mbd = null;
+        if (containingBd != null) {
+            // Inner bean definitions are not cached: no need to coordinate with other threads.
+            return mergeBeanDefinition(beanName, bd, containingBd, null);
+        }
 
-            // Check with full lock now in order to enforce the same merged instance.
-            if (containingBd == null) {
-                mbd = this.mergedBeanDefinitions.get(beanName);
+        // Lock the given definition only, enforcing the same merged instance for its bean
+        // without blocking the merging of unrelated beans (parents get locked in turn).
+        synchronized (bd) {
+            RootBeanDefinition mbd = this.mergedBeanDefinitions.get(beanName);
+            if (mbd != null && !mbd.stale) {
+                return mbd;
             }
+            mbd = mergeBeanDefinition(beanName, bd, null, mbd);
 
-            if (mbd == null) {
-                if (bd.getParentName() == null) {
-                    // Use copy of given root bean definition.
-                    if (bd instanceof RootBeanDefinition) {
-                        mbd = ((RootBeanDefinition) bd).cloneBeanDefinition();
-                    }
-                    else {
-                        mbd = new RootBeanDefinition(bd);
-                    }
+            // Cache the merged bean definition for the time being
+            // (it might still get re-merged later on in order to pick up metadata changes)
+            if (isCacheBeanMetadata()) {
+                this.mergedBeanDefinitions.put(beanName, mbd);
+            }
+            return mbd;
+        }
+    }
+
+    /**
+     * Create a new merged bean definition for the given bean definition,
+     * merging it with its parent if necessary.
+     * @param beanName the name of the bean definition
+     * @param bd the original bean definition (Root/ChildBeanDefinition)
+     * @param containingBd the containing bean definition in case of inner bean,
+     * or {@code null} in case of a top-level bean
+     * @param previous the stale merged bean definition to take over caches from, if any
+     * @return the merged bean definition for the bean
+     */
+    private RootBeanDefinition mergeBeanDefinition(
+            String beanName, BeanDefinition bd, BeanDefinition containingBd, RootBeanDefinition previous) {
+
+        RootBeanDefinition mbd;
+        if (bd.getParentName() == null) {
+            // Use copy of given root bean definition.
+            if (bd instanceof RootBeanDefinition) {
+                mbd = ((RootBeanDefinition) bd).cloneBeanDefinition();
+            }
+            else {
+                mbd = new RootBeanDefinition(bd);
+            }
+        }
+        else {
+            // Child bean definition: needs to be merged with parent.
+            BeanDefinition pbd;
+            try {
+                String parentBeanName = transformedBeanName(bd.getParentName());
+                if (!beanName.equals(parentBeanName)) {
+                    pbd = getMergedBeanDefinition(parentBeanName);
                 }
                 else {
-                    // Child bean definition: needs to be merged with parent.
-                    BeanDefinition pbd;
-                    try {
-                        String parentBeanName = transformedBeanName(bd.getParentName());
-                        if (!beanName.equals(parentBeanName)) {
-                            pbd = getMergedBeanDefinition(parentBeanName);
-                        }
-                        else {
-                            BeanFactory parent = getParentBeanFactory();
-                            if (parent instanceof ConfigurableBeanFactory) {
-                                pbd = ((ConfigurableBeanFactory) parent).getMergedBeanDefinition(parentBeanName);
-                            }
-                            else {
-                                throw new NoSuchBeanDefinitionException(parentBeanName,
-                                        "Parent name '" + parentBeanName + "' is equal to bean name '" + beanName +
-                                                "': cannot be resolved without an AbstractBeanFactory parent");
-                            }
-                        }
+                    BeanFactory parent = getParentBeanFactory();
+                    if (parent instanceof ConfigurableBeanFactory) {
+                        pbd = ((ConfigurableBeanFactory) parent).getMergedBeanDefinition(parentBeanName);
                     }
-                    catch (NoSuchBeanDefinitionException ex) {
-                        throw new BeanDefinitionStoreException(bd.getResourceDescription(), beanName,
-                                "Could not resolve parent bean definition '" + bd.getParentName() + "'", ex);
+                    else {
+                        throw new NoSuchBeanDefinitionException(parentBeanName,
+                                "Parent name '" + parentBeanName + "' is equal to bean name '" + beanName +
+                                        "': cannot be resolved without an AbstractBeanFactory parent");
                     }
-                    // Deep copy with overridden values.
-                    mbd = new RootBeanDefinition(pbd);
-                    mbd.overrideFrom(bd);
                 }
+            }
+            catch (NoSuchBeanDefinitionException ex) {
+                throw new BeanDefinitionStoreException(bd.getResourceDescription(), beanName,
+                        "Could not resolve parent bean definition '" + bd.getParentName() + "'", ex);
+            }
+            // Deep copy with overridden values.
+            mbd = new RootBeanDefinition(pbd);
+            mbd.overrideFrom(bd);
+        }
 
-                // Set default singleton scope, if not configured before.
-                if (!StringUtils.hasLength(mbd.getScope())) {
-                    mbd.setScope(RootBeanDefinition.SCOPE_SINGLETON);
-                }
+        // Set default singleton scope, if not configured before.
+        if (!StringUtils.hasLength(mbd.getScope())) {
+            mbd.setScope(RootBeanDefinition.SCOPE_SINGLETON);
+        }
 
-                // A bean contained in a non-singleton bean cannot be a singleton itself.
-                // Let's correct this on the fly here, since this might be the result of
-                // parent-child merging for the outer bean, in which case the original inner bean
-                // definition will not have inherited the merged outer bean's singleton status.
-                if (containingBd != null && !containingBd.isSingleton() && mbd.isSingleton()) {
-                    mbd.setScope(containingBd.getScope());
-                }
+        // A bean contained in a non-singleton bean cannot be a singleton itself.
+        // Let's correct this on the fly here, since this might be the result of
+        // parent-child merging for the outer bean, in which case the original inner bean
+        // definition will not have inherited the merged outer bean's singleton status.
+        if (containingBd != null && !containingBd.isSingleton() && mbd.isSingleton()) {
+            mbd.setScope(containingBd.getScope());
+        }
+
+        if (previous != null) {
+            copyRelevantMergedBeanDefinitionCaches(previous, mbd);
+        }
+        return mbd;
+    }
 
-                // Cache the merged bean definition for the time being
-                // (it might still get re-merged later on in order to pick up metadata changes)
-                if (containingBd == null && isCacheBeanMetadata()) {
-                    this.mergedBeanDefinitions.put(beanName, mbd);
+    /**
+     * Take over the resolved types of a stale merged bean definition, including a
+     * predicted FactoryBean object type, as long as the relevant metadata has not
+     * changed. The resolved constructor or factory method gets taken over as well
+     * if the constructor arguments and the autowiring setup are unchanged too.
+     */
+    private void copyRelevantMergedBeanDefinitionCaches(RootBeanDefinition previous, RootBeanDefinition mbd) {
+        if (ObjectUtils.nullSafeEquals(mbd.getBeanClassName(), previous.getBeanClassName()) &&
+                ObjectUtils.nullSafeEquals(mbd.getFactoryBeanName(), previous.getFactoryBeanName()) &&
+                ObjectUtils.nullSafeEquals(mbd.getFactoryMethodName(), previous.getFactoryMethodName()) &&
+                (mbd.targetType == null || mbd.targetType.equals(previous.targetType))) {
+            mbd.targetType = previous.targetType;
+            mbd.resolvedTargetType = previous.resolvedTargetType;
+            mbd.factoryMethodReturnType = previous.factoryMethodReturnType;
+            if (previous.factoryBeanObjectTypePredicted) {
+                mbd.predictedFactoryBeanObjectType = previous.predictedFactoryBeanObjectType;
+                mbd.factoryBeanObjectTypePredicted = true;
+            }
+            if (mbd.getAutowireMode() == previous.getAutowireMode() &&
+                    mbd.isLenientConstructorResolution() == previous.isLenientConstructorResolution() &&
+                    mbd.isNonPublicAccessAllowed() == previous.isNonPublicAccessAllowed() &&
+                    hasSameConstructorArgumentValues(mbd, previous)) {
+                synchronized (previous.constructorArgumentLock) {
+                    mbd.resolvedConstructorOrFactoryMethod = previous.resolvedConstructorOrFactoryMethod;
+                    mbd.constructorArgumentsResolved = previous.constructorArgumentsResolved;
+                    mbd.resolvedConstructorArguments = previous.resolvedConstructorArguments;
+                    mbd.preparedConstructorArguments = previous.preparedConstructorArguments;
+                    mbd.isFactoryMethodUnique = previous.isFactoryMethodUnique;
                 }
             }
+        }
+    }
 
-            return mbd;
+    private boolean hasSameConstructorArgumentValues(RootBeanDefinition mbd, RootBeanDefinition previous) {
+        if (!mbd.hasConstructorArgumentValues() || !previous.hasConstructorArgumentValues()) {
+            return (mbd.hasConstructorArgumentValues() == previous.hasConstructorArgumentValues());
+        }
+        ConstructorArgumentValues cav = mbd.getConstructorArgumentValues();
+        ConstructorArgumentValues previousCav = previous.getConstructorArgumentValues();
+        Map<Integer, ConstructorArgumentValues.ValueHolder> indexed = cav.getIndexedArgumentValues();
+        Map<Integer, ConstructorArgumentValues.ValueHolder> previousIndexed = previousCav.getIndexedArgumentValues();
+        List<ConstructorArgumentValues.ValueHolder> generic = cav.getGenericArgumentValues();
+        List<ConstructorArgumentValues.ValueHolder> previousGeneric = previousCav.getGenericArgumentValues();
+        if (indexed.size() != previousIndexed.size() || generic.size() != previousGeneric.size()) {
+            return false;
+        }
+        for (Map.Entry<Integer, ConstructorArgumentValues.ValueHolder> entry : indexed.entrySet()) {
+            if (!isSameArgumentValue(entry.getValue(), previousIndexed.get(entry.getKey()))) {
+                return false;
+            }
+        }
+        for (int i = 0; i < generic.size(); i++) {
+            if (!isSameArgumentValue(generic.get(i), previousGeneric.get(i))) {
+                return false;
+            }
         }
+        return true;
+    }
+
+    private boolean isSameArgumentValue(ConstructorArgumentValues.ValueHolder valueHolder,
+                                        ConstructorArgumentValues.ValueHolder previousValueHolder) {
+
+        return (previousValueHolder != null &&
+                ObjectUtils.nullSafeEquals(valueHolder.getValue(), previousValueHolder.getValue()) &&
+                ObjectUtils.nullSafeEquals(valueHolder.getType(), previousValueHolder.getType()) &&
+                ObjectUtils.nullSafeEquals(valueHolder.getName(), previousValueHolder.getName()));
     }
 
 
@@ -1143,7 +1361,12 @@ public abstract class AbstractBeanFactory extends FactoryBeanRegistrySupport imp
      * @param beanName the bean name to clear the merged definition for
      */
     protected void clearMergedBeanDefinition(String beanName) {
-        this.mergedBeanDefinitions.remove(beanName);
+        RootBeanDefinition mbd = this.mergedBeanDefinitions.remove(beanName);
+        if (mbd != null) {
+            // Let holders of the previous instance know that it is outdated.
+            mbd.stale = true;
+        }
+        invalidateBeanHandles();
     }
 
     /**
@@ -1155,14 +1378,30 @@ public abstract class AbstractBeanFactory extends FactoryBeanRegistrySupport imp
      * @since 4.2
      */
     public void clearMetadataCache() {
-        Iterator<String> mergedBeans = this.mergedBeanDefinitions.keySet().iterator();
-        while (mergedBeans.hasNext()) {
-            if (!isBeanEligibleForMetadataCaching(mergedBeans.next())) {
-                mergedBeans.remove();
+        for (Map.Entry<String, RootBeanDefinition> entry : this.mergedBeanDefinitions.entrySet()) {
+            if (!isBeanEligibleForMetadataCaching(entry.getKey())) {
+                entry.getValue().stale = true;
             }
         }
     }
 
+    /**
+     * Release metadata that can be recomputed on demand: the merged bean definitions
+     * of singletons that have been fully created already, along with the cached
+     * BeanPostProcessor chains. Merged bean definitions of other beans are kept,
+     * since they are likely to be needed again for creating further instances.
+     */
+    public void trimMetadataCaches() {
+        for (Map.Entry<String, RootBeanDefinition> entry : this.mergedBeanDefinitions.entrySet()) {
+            String beanName = entry.getKey();
+            if (entry.getValue().isSingleton() && containsSingleton(beanName) &&
+                    !isSingletonCurrentlyInCreation(beanName)) {
+                clearMergedBeanDefinition(beanName);
+            }
+        }
+        clearBeanPostProcessorChainCache();
+    }
+
 
     protected Class<?> resolveBeanClass(final RootBeanDefinition mbd, String beanName, final Class<?>... typesToMatch)
             throws CannotLoadBeanClassException {
@@ -1301,14 +1540,12 @@ public abstract class AbstractBeanFactory extends FactoryBeanRegistrySupport imp
      * @param beanName the name of the bean
      */
     protected void markBeanAsCreated(String beanName) {
-        if (!this.alreadyCreated.contains(beanName)) {
-            synchronized (this.mergedBeanDefinitions) {
-                if (!this.alreadyCreated.contains(beanName)) {
-                    // Let the bean definition get re-merged now that we're actually creating
-                    // the bean... just in case some of its metadata changed in the meantime.
-                    clearMergedBeanDefinition(beanName);
-                    this.alreadyCreated.add(beanName);
-                }
+        if (!this.alreadyCreated.contains(beanName) && this.alreadyCreated.add(beanName)) {
+            // Let the bean definition get re-merged now that we're actually creating
+            // the bean... just in case some of its metadata changed in the meantime.
+            RootBeanDefinition mbd = this.mergedBeanDefinitions.get(beanName);
+            if (mbd != null) {
+                mbd.stale = true;
             }
         }
     }
@@ -1318,9 +1555,7 @@ public abstract class AbstractBeanFactory extends FactoryBeanRegistrySupport imp
      * @param beanName the name of the bean
      */
     protected void cleanupAfterBeanCreationFailure(String beanName) {
-        synchronized (this.mergedBeanDefinitions) {
-            this.alreadyCreated.remove(beanName);
-        }
+        this.alreadyCreated.remove(beanName);
     }
 
     /**
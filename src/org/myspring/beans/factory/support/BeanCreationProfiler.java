@@ -0,0 +1,422 @@
+package org.myspring.beans.factory.support;
+
+import org.myspring.core.NamedThreadLocal;
+import org.myspring.core.util.Assert;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Records how much time an {@link AbstractAutowireCapableBeanFactory} spends in
+ * each phase of creating its beans, for finding out which beans make startup slow.
+ *
+ * <p>Each bean creation is recorded as a {@link BeanCreation} entry, nested within
+ * the creation of the bean that triggered it on the same thread. A creation's total
+ * time thus includes the time spent on creating its dependencies as well as the time
+ * spent waiting for other threads to finish creating a shared dependency; its self
+ * time excludes both. Phase times are measured inclusively of nested creations.
+ *
+ * <p>Recording only happens while a profiler is registered with the bean factory:
+ * without one, the creation algorithm does not take any measurements at all.
+ * Note that every creation gets recorded, including those of prototype beans;
+ * use {@link #reset()} to discard entries that are not of interest anymore.
+ *
+ * @see AbstractAutowireCapableBeanFactory#setBeanCreationProfiler
+ */
+public class BeanCreationProfiler {
+
+    /**
+     * The measured phases of a bean creation.
+     */
+    public enum Phase {
+
+        /** Giving post-processors a chance to return a shortcut instance */
+        RESOLVE_BEFORE_INSTANTIATION("resolveBeforeInstantiation"),
+
+        /** Instantiating the bean through its constructor or factory method */
+        CREATE_BEAN_INSTANCE("createBeanInstance"),
+
+        /** Post-processing of the merged bean definition */
+        MERGED_BEAN_DEFINITION_POST_PROCESSING("applyMergedBeanDefinitionPostProcessors"),
+
+        /** Populating the bean instance with property values */
+        POPULATE_BEAN("populateBean"),
+
+        /** Applying BeanPostProcessors before initialization */
+        BEFORE_INITIALIZATION("postProcessBeforeInitialization"),
+
+        /** Invoking the bean's init methods */
+        INIT_METHODS("invokeInitMethods"),
+
+        /** Applying BeanPostProcessors after initialization */
+        AFTER_INITIALIZATION("postProcessAfterInitialization");
+
+        private final String key;
+
+        Phase(String key) {
+            this.key = key;
+        }
+
+        /**
+         * Return the key of this phase in the JSON export.
+         */
+        public String getKey() {
+            return this.key;
+        }
+    }
+
+
+    private final ThreadLocal<Deque<BeanCreation>> currentCreations =
+            new NamedThreadLocal<Deque<BeanCreation>>("Bean creations currently being profiled");
+
+    private final List<BeanCreation> rootCreations = new CopyOnWriteArrayList<BeanCreation>();
+
+
+    /**
+     * Return the top-level bean creations, i.e. those not triggered by the creation
+     * of another bean on the same thread, in the order of their start.
+     */
+    public List<BeanCreation> getRootCreations() {
+        return Collections.unmodifiableList(this.rootCreations);
+    }
+
+    /**
+     * Return all recorded bean creations, in depth-first order.
+     */
+    public List<BeanCreation> getAllCreations() {
+        List<BeanCreation> result = new ArrayList<BeanCreation>();
+        for (BeanCreation creation : this.rootCreations) {
+            creation.collect(result);
+        }
+        return result;
+    }
+
+    /**
+     * Return all recorded creations of the given bean (several in case of a prototype).
+     * @param beanName the name of the bean
+     */
+    public List<BeanCreation> getCreations(String beanName) {
+        List<BeanCreation> result = new ArrayList<BeanCreation>(1);
+        for (BeanCreation creation : getAllCreations()) {
+            if (creation.getBeanName().equals(beanName)) {
+                result.add(creation);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Return the completed bean creations with the highest self time.
+     * @param maxResults the maximum number of creations to return
+     */
+    public List<BeanCreation> getSlowestCreations(int maxResults) {
+        List<BeanCreation> result = new ArrayList<BeanCreation>();
+        for (BeanCreation creation : getAllCreations()) {
+            if (creation.isCompleted()) {
+                result.add(creation);
+            }
+        }
+        Collections.sort(result, new Comparator<BeanCreation>() {
+            @Override
+            public int compare(BeanCreation creation1, BeanCreation creation2) {
+                long self1 = creation1.getSelfNanos();
+                long self2 = creation2.getSelfNanos();
+                return (self1 > self2 ? -1 : (self1 == self2 ? 0 : 1));
+            }
+        });
+        return (result.size() > maxResults ? result.subList(0, maxResults) : result);
+    }
+
+    /**
+     * Discard all recorded bean creations.
+     */
+    public void reset() {
+        this.rootCreations.clear();
+    }
+
+    /**
+     * Export the recorded bean creations as a JSON document of the form
+     * {@code {"beans":[{"name":...,"totalNanos":...,"dependencies":[...]}]}}.
+     */
+    public String toJson() {
+        StringWriter writer = new StringWriter(1024);
+        try {
+            writeJson(writer);
+        }
+        catch (IOException ex) {
+            throw new IllegalStateException(ex);
+        }
+        return writer.toString();
+    }
+
+    /**
+     * Write the recorded bean creations to the given Writer, in the format of {@link #toJson()}.
+     * @param writer the Writer to write to (not closed)
+     * @throws IOException in case of I/O errors
+     */
+    public void writeJson(Writer writer) throws IOException {
+        writer.write("{\"beans\":[");
+        boolean first = true;
+        for (BeanCreation creation : this.rootCreations) {
+            if (!first) {
+                writer.write(',');
+            }
+            creation.writeJson(writer);
+            first = false;
+        }
+        writer.write("]}");
+    }
+
+
+    /**
+     * Start recording the creation of the given bean on the current thread.
+     * @return the new entry, to be passed to {@link #creationFinished}
+     */
+    BeanCreation creationStarted(String beanName) {
+        Deque<BeanCreation> current = this.currentCreations.get();
+        if (current == null) {
+            current = new ArrayDeque<BeanCreation>(8);
+            this.currentCreations.set(current);
+        }
+        BeanCreation creation = new BeanCreation(beanName, Thread.currentThread().getName());
+        BeanCreation parent = current.peek();
+        if (parent != null) {
+            parent.addDependency(creation);
+        }
+        else {
+            this.rootCreations.add(creation);
+        }
+        current.push(creation);
+        return creation;
+    }
+
+    /**
+     * Finish recording the given bean creation.
+     * @param creation the entry returned by {@link #creationStarted}
+     * @param successful whether the bean has been created successfully
+     */
+    void creationFinished(BeanCreation creation, boolean successful) {
+        creation.finish(successful);
+        Deque<BeanCreation> current = this.currentCreations.get();
+        if (current != null) {
+            current.remove(creation);
+            if (current.isEmpty()) {
+                this.currentCreations.remove();
+            }
+        }
+    }
+
+    /**
+     * Return the creation of the given bean currently being recorded on this thread, if any.
+     */
+    BeanCreation getCurrentCreation(String beanName) {
+        Deque<BeanCreation> current = this.currentCreations.get();
+        BeanCreation creation = (current != null ? current.peek() : null);
+        return (creation != null && creation.getBeanName().equals(beanName) ? creation : null);
+    }
+
+    /**
+     * Record time spent by the current thread on waiting for another thread's bean creation.
+     */
+    void dependencyWaited(long nanos) {
+        Deque<BeanCreation> current = this.currentCreations.get();
+        BeanCreation creation = (current != null ? current.peek() : null);
+        if (creation != null) {
+            creation.lockWaitNanos += nanos;
+        }
+    }
+
+
+    /**
+     * A single recorded bean creation.
+     */
+    public static class BeanCreation {
+
+        private final String beanName;
+
+        private final String threadName;
+
+        private final long startTime = System.currentTimeMillis();
+
+        private final long startNanos = System.nanoTime();
+
+        private volatile long endNanos;
+
+        private volatile boolean successful;
+
+        private final long[] phaseNanos = new long[Phase.values().length];
+
+        private volatile long lockWaitNanos;
+
+        private final List<BeanCreation> dependencies = new ArrayList<BeanCreation>(4);
+
+        BeanCreation(String beanName, String threadName) {
+            this.beanName = beanName;
+            this.threadName = threadName;
+        }
+
+        public String getBeanName() {
+            return this.beanName;
+        }
+
+        /**
+         * Return the name of the thread that created the bean.
+         */
+        public String getThreadName() {
+            return this.threadName;
+        }
+
+        /**
+         * Return the wall-clock time at which the creation started.
+         */
+        public long getStartTime() {
+            return this.startTime;
+        }
+
+        /**
+         * Return whether the creation has finished, either successfully or not.
+         */
+        public boolean isCompleted() {
+            return (this.endNanos != 0);
+        }
+
+        /**
+         * Return whether the bean has been created successfully.
+         */
+        public boolean isSuccessful() {
+            return this.successful;
+        }
+
+        /**
+         * Return the total time of the creation, including dependencies
+         * (or the time elapsed so far if the creation is still in progress).
+         */
+        public long getTotalNanos() {
+            long end = this.endNanos;
+            return (end != 0 ? end : System.nanoTime()) - this.startNanos;
+        }
+
+        /**
+         * Return the time spent on creating dependencies or waiting for other threads to create them.
+         */
+        public long getDependencyNanos() {
+            long nanos = this.lockWaitNanos;
+            for (BeanCreation dependency : getDependencies()) {
+                nanos += dependency.getTotalNanos();
+            }
+            return nanos;
+        }
+
+        /**
+         * Return the time spent on waiting for other threads to create dependencies.
+         */
+        public long getLockWaitNanos() {
+            return this.lockWaitNanos;
+        }
+
+        /**
+         * Return the time spent on this bean itself, excluding dependencies.
+         */
+        public long getSelfNanos() {
+            return Math.max(getTotalNanos() - getDependencyNanos(), 0);
+        }
+
+        /**
+         * Return the time spent in the given phase, including dependencies created in that phase.
+         */
+        public long getPhaseNanos(Phase phase) {
+            Assert.notNull(phase, "Phase must not be null");
+            return this.phaseNanos[phase.ordinal()];
+        }
+
+        /**
+         * Return the creations of the beans created on behalf of this bean.
+         */
+        public List<BeanCreation> getDependencies() {
+            synchronized (this.dependencies) {
+                return new ArrayList<BeanCreation>(this.dependencies);
+            }
+        }
+
+        void phaseCompleted(Phase phase, long phaseStartNanos) {
+            this.phaseNanos[phase.ordinal()] += System.nanoTime() - phaseStartNanos;
+        }
+
+        void addDependency(BeanCreation dependency) {
+            synchronized (this.dependencies) {
+                this.dependencies.add(dependency);
+            }
+        }
+
+        void finish(boolean successful) {
+            this.successful = successful;
+            this.endNanos = System.nanoTime();
+        }
+
+        void collect(List<BeanCreation> result) {
+            result.add(this);
+            for (BeanCreation dependency : getDependencies()) {
+                dependency.collect(result);
+            }
+        }
+
+        void writeJson(Writer writer) throws IOException {
+            writer.write("{\"name\":");
+            writeJsonString(writer, this.beanName);
+            writer.write(",\"thread\":");
+            writeJsonString(writer, this.threadName);
+            writer.write(",\"startTime\":" + this.startTime);
+            writer.write(",\"completed\":" + isCompleted());
+            writer.write(",\"successful\":" + this.successful);
+            writer.write(",\"totalNanos\":" + getTotalNanos());
+            writer.write(",\"selfNanos\":" + getSelfNanos());
+            writer.write(",\"dependencyNanos\":" + getDependencyNanos());
+            writer.write(",\"lockWaitNanos\":" + this.lockWaitNanos);
+            writer.write(",\"phases\":{");
+            for (Phase phase : Phase.values()) {
+                if (phase.ordinal() > 0) {
+                    writer.write(',');
+                }
+                writer.write("\"" + phase.getKey() + "\":" + this.phaseNanos[phase.ordinal()]);
+            }
+            writer.write("},\"dependencies\":[");
+            boolean first = true;
+            for (BeanCreation dependency : getDependencies()) {
+                if (!first) {
+                    writer.write(',');
+                }
+                dependency.writeJson(writer);
+                first = false;
+            }
+            writer.write("]}");
+        }
+
+        @Override
+        public String toString() {
+            return "BeanCreation '" + this.beanName + "': total " + getTotalNanos() / 1000 +
+                    " us, self " + getSelfNanos() / 1000 + " us";
+        }
+
+        private static void writeJsonString(Writer writer, String value) throws IOException {
+            writer.write('"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == '"' || c == '\\') {
+                    writer.write('\\');
+                    writer.write(c);
+                }
+                else if (c < 0x20) {
+                    writer.write(String.format("\\u%04x", (int) c));
+                }
+                else {
+                    writer.write(c);
+                }
+            }
+            writer.write('"');
+        }
+    }
+
+}
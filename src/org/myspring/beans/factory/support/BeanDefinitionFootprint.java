@@ -0,0 +1,131 @@
+package org.myspring.beans.factory.support;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.myspring.beans.factory.config.RuntimeBeanReference;
+import org.myspring.core.util.Assert;
+
+/**
+ * Measurement harness reporting the average retained heap size of bean definitions,
+ * for keeping an eye on the footprint of contexts with a very large number of beans.
+ *
+ * <p>Sizes are estimated by allocating a large number of definitions of the same
+ * shape and comparing the used heap before and after, with garbage collection
+ * requested in between. The results are approximations and depend on the JVM's
+ * object layout (e.g. compressed oops), but are stable enough to compare shapes
+ * and to spot regressions.
+ *
+ * <p>Run {@link #main} for a report on the most common definition shapes, logged
+ * at info level. This is a diagnostic tool only: it is not used by the container,
+ * and the garbage collections it requests make it unsuitable for production use.
+ */
+final class BeanDefinitionFootprint {
+
+    private static final Log logger = LogFactory.getLog(BeanDefinitionFootprint.class);
+
+
+    private BeanDefinitionFootprint() {
+    }
+
+
+    /**
+     * Callback for creating a bean definition of a specific shape.
+     */
+    interface DefinitionFactory {
+
+        /**
+         * Create a new bean definition.
+         * @param index the index of the definition within the measured batch
+         */
+        AbstractBeanDefinition createBeanDefinition(int index);
+    }
+
+
+    /**
+     * Estimate the retained size of each definition created by the given factory.
+     * @param factory the factory for the definitions to measure
+     * @param count the number of definitions to allocate for the measurement
+     * @return the average retained size per definition, in bytes
+     */
+    static long measureRetainedSize(DefinitionFactory factory, int count) {
+        Assert.notNull(factory, "DefinitionFactory must not be null");
+        Assert.isTrue(count > 0, "Count must be positive");
+        // Warm-up run, loading classes and initializing shared constants.
+        retain(factory, Math.min(count, 1000));
+
+        Object[] holder = new Object[count];
+        long before = usedMemory();
+        for (int i = 0; i < count; i++) {
+            holder[i] = factory.createBeanDefinition(i);
+        }
+        long after = usedMemory();
+        long size = Math.max(after - before, 0) / count;
+        if (holder[count - 1] == null) {
+            throw new IllegalStateException("DefinitionFactory returned null");
+        }
+        return size;
+    }
+
+    private static Object[] retain(DefinitionFactory factory, int count) {
+        Object[] holder = new Object[count];
+        for (int i = 0; i < count; i++) {
+            holder[i] = factory.createBeanDefinition(i);
+        }
+        return holder;
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+            try {
+                Thread.sleep(20);
+            }
+            catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            used = Math.min(used, runtime.totalMemory() - runtime.freeMemory());
+        }
+        return used;
+    }
+
+
+    /**
+     * Log the retained size per definition for the common definition shapes:
+     * plain definitions, definitions with a property value and a constructor
+     * argument, and merged definitions as held by a bean factory.
+     * @param args an optional number of definitions per measurement (default 100000)
+     */
+    public static void main(String[] args) {
+        int count = (args.length > 0 ? Integer.parseInt(args[0]) : 100000);
+
+        report("plain definition", count, new DefinitionFactory() {
+            @Override
+            public AbstractBeanDefinition createBeanDefinition(int index) {
+                return new RootBeanDefinition(Object.class);
+            }
+        });
+        report("definition with property and argument", count, new DefinitionFactory() {
+            @Override
+            public AbstractBeanDefinition createBeanDefinition(int index) {
+                RootBeanDefinition bd = new RootBeanDefinition(Object.class);
+                bd.getPropertyValues().add("name", "value");
+                bd.getConstructorArgumentValues().addIndexedArgumentValue(0, new RuntimeBeanReference("other"));
+                return bd;
+            }
+        });
+        final RootBeanDefinition template = new RootBeanDefinition(Object.class);
+        report("merged definition", count, new DefinitionFactory() {
+            @Override
+            public AbstractBeanDefinition createBeanDefinition(int index) {
+                return template.cloneBeanDefinition();
+            }
+        });
+    }
+
+    private static void report(String shape, int count, DefinitionFactory factory) {
+        logger.info(shape + ": " + measureRetainedSize(factory, count) + " bytes per definition");
+    }
+
+}
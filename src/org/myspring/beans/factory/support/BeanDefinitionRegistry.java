@@ -5,11 +5,27 @@ import org.myspring.beans.factory.NoSuchBeanDefinitionException;
 import org.myspring.beans.factory.config.BeanDefinition;
 import org.myspring.core.AliasRegistry;
 
+import java.util.Map;
+
 public interface BeanDefinitionRegistry extends AliasRegistry {
 
     void registerBeanDefinition(String beanName, BeanDefinition beanDefinition)
             throws BeanDefinitionStoreException;
 
+    /**
+     * Register all of the given bean definitions at once, in the iteration order
+     * of the given map.
+     * <p>Equivalent to a series of {@link #registerBeanDefinition} calls, except for
+     * all definitions being validated before any of them gets registered, and for
+     * implementations being able to publish the entire batch in a single step.
+     * @param beanDefinitions the bean definitions to register, keyed by bean name
+     * @throws BeanDefinitionStoreException if any of the bean definitions is invalid
+     * or if there is already a bean definition for one of the names (and overriding
+     * is not allowed)
+     */
+    void registerBeanDefinitions(Map<String, ? extends BeanDefinition> beanDefinitions)
+            throws BeanDefinitionStoreException;
+
     /**
      * Remove the BeanDefinition for the given name.
      * @param beanName the name of the bean instance to register
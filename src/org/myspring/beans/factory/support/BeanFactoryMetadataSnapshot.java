@@ -0,0 +1,571 @@
+package org.myspring.beans.factory.support;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.myspring.beans.factory.config.ConstructorArgumentValues;
+import org.myspring.core.ResolvableType;
+import org.myspring.core.util.ClassUtils;
+
+import java.io.*;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/**
+ * Helper for {@link DefaultListableBeanFactory#writeMetadataSnapshot} and
+ * {@link DefaultListableBeanFactory#restoreMetadataSnapshot}, persisting the metadata
+ * that a frozen bean factory derives at runtime in a compact binary format.
+ *
+ * <p>The snapshot covers, per bean definition, the predicted target type, the resolved
+ * constructor or factory method along with the prepared constructor arguments (stored
+ * as references into the bean definition's argument values), and the factory-wide
+ * by-type lookup caches. Every class referenced by the snapshot is recorded together
+ * with a checksum of its class file; on restore, entries referring to a changed or
+ * missing class are skipped, just like entries whose bean definition differs in any
+ * relevant attribute. The by-type caches as well as resolved constructors or factory
+ * methods with autowired arguments are only restored if the registered beans are
+ * exactly the same as when the snapshot was taken.
+ *
+ * <p>Merged bean definitions are still built from the registered definitions on restore,
+ * serving as the key for validating each entry; it is the resolution work on top of
+ * them that gets skipped.
+ */
+class BeanFactoryMetadataSnapshot {
+
+    private static final int MAGIC = 0x4D534246;
+
+    private static final int VERSION = 1;
+
+    private static final byte MEMBER_NONE = 0;
+
+    private static final byte MEMBER_CONSTRUCTOR = 1;
+
+    private static final byte MEMBER_FACTORY_METHOD = 2;
+
+    private static final byte ARGUMENTS_NONE = 0;
+
+    private static final byte ARGUMENTS_EMPTY = 1;
+
+    private static final byte ARGUMENTS_PREPARED = 2;
+
+    private static final byte ARGUMENT_AUTOWIRED = 0;
+
+    private static final byte ARGUMENT_INDEXED = 1;
+
+    private static final byte ARGUMENT_GENERIC = 2;
+
+    private static final long NO_CHECKSUM = -1;
+
+    private static final Log logger = LogFactory.getLog(BeanFactoryMetadataSnapshot.class);
+
+    private final DefaultListableBeanFactory beanFactory;
+
+    private final Map<String, Long> checksumCache = new HashMap<String, Long>();
+
+
+    public BeanFactoryMetadataSnapshot(DefaultListableBeanFactory beanFactory) {
+        this.beanFactory = beanFactory;
+    }
+
+
+    /**
+     * Write the resolved metadata of the bean factory to the given stream.
+     * @param out the stream to write to (not closed)
+     * @throws IOException in case of I/O errors
+     */
+    public void write(OutputStream out) throws IOException {
+        String[] beanNames = this.beanFactory.getBeanDefinitionNames();
+        ClassTable classTable = new ClassTable();
+        ByteArrayOutputStream entryBytes = new ByteArrayOutputStream(beanNames.length * 64);
+        DataOutputStream entries = new DataOutputStream(entryBytes);
+
+        entries.writeInt(beanNames.length);
+        for (String beanName : beanNames) {
+            RootBeanDefinition mbd = this.beanFactory.getMergedLocalBeanDefinition(beanName);
+            entries.writeUTF(beanName);
+            entries.writeLong(fingerprint(mbd));
+            writeBeanMetadata(mbd, classTable, entries);
+        }
+        writeByTypeCache(this.beanFactory.getBeanNamesByTypeCache(true), classTable, entries);
+        writeByTypeCache(this.beanFactory.getBeanNamesByTypeCache(false), classTable, entries);
+        entries.flush();
+
+        DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(out));
+        dos.writeInt(MAGIC);
+        dos.writeInt(VERSION);
+        dos.writeLong(factoryFingerprint(beanNames));
+        dos.writeInt(classTable.names.size());
+        for (String className : classTable.names) {
+            dos.writeUTF(className);
+            dos.writeLong(checksum(className));
+        }
+        entryBytes.writeTo(dos);
+        dos.flush();
+        if (logger.isDebugEnabled()) {
+            logger.debug("Wrote metadata snapshot for " + beanNames.length + " bean definitions, referring to " +
+                    classTable.names.size() + " classes");
+        }
+    }
+
+    private void writeBeanMetadata(RootBeanDefinition mbd, ClassTable classTable, DataOutputStream dos)
+            throws IOException {
+
+        dos.writeInt(classTable.indexOf(mbd.resolvedTargetType));
+
+        Object member;
+        boolean argumentsResolved;
+        Object[] resolvedArguments;
+        Object[] preparedArguments;
+        synchronized (mbd.constructorArgumentLock) {
+            member = mbd.resolvedConstructorOrFactoryMethod;
+            argumentsResolved = mbd.constructorArgumentsResolved;
+            resolvedArguments = mbd.resolvedConstructorArguments;
+            preparedArguments = mbd.preparedConstructorArguments;
+        }
+
+        int[] argumentRefs = null;
+        byte argumentsKind = ARGUMENTS_NONE;
+        if (member != null && argumentsResolved) {
+            if (preparedArguments != null) {
+                argumentRefs = toArgumentReferences(mbd, preparedArguments);
+                argumentsKind = ARGUMENTS_PREPARED;
+            }
+            else if (resolvedArguments != null && resolvedArguments.length == 0) {
+                argumentsKind = ARGUMENTS_EMPTY;
+            }
+            if (argumentsKind == ARGUMENTS_NONE || (argumentsKind == ARGUMENTS_PREPARED && argumentRefs == null)) {
+                // Resolved arguments that cannot be expressed in terms of the bean definition.
+                member = null;
+            }
+        }
+
+        if (member instanceof Constructor) {
+            Constructor<?> ctor = (Constructor<?>) member;
+            dos.writeByte(MEMBER_CONSTRUCTOR);
+            dos.writeInt(classTable.indexOf(ctor.getDeclaringClass()));
+            writeParameterTypes(ctor.getParameterTypes(), classTable, dos);
+        }
+        else if (member instanceof Method) {
+            Method method = (Method) member;
+            dos.writeByte(MEMBER_FACTORY_METHOD);
+            dos.writeInt(classTable.indexOf(method.getDeclaringClass()));
+            dos.writeUTF(method.getName());
+            writeParameterTypes(method.getParameterTypes(), classTable, dos);
+            dos.writeBoolean(mbd.isFactoryMethodUnique);
+        }
+        else {
+            dos.writeByte(MEMBER_NONE);
+            return;
+        }
+
+        dos.writeByte(argumentsResolved ? argumentsKind : ARGUMENTS_NONE);
+        if (argumentsResolved && argumentsKind == ARGUMENTS_PREPARED) {
+            dos.writeInt(argumentRefs.length / 2);
+            for (int i = 0; i < argumentRefs.length; i += 2) {
+                dos.writeByte(argumentRefs[i]);
+                dos.writeInt(argumentRefs[i + 1]);
+            }
+        }
+    }
+
+    private void writeParameterTypes(Class<?>[] paramTypes, ClassTable classTable, DataOutputStream dos)
+            throws IOException {
+
+        dos.writeInt(paramTypes.length);
+        for (Class<?> paramType : paramTypes) {
+            dos.writeInt(classTable.indexOf(paramType));
+        }
+    }
+
+    /**
+     * Express the given prepared arguments as pairs of argument kind and index,
+     * or return {@code null} if any of them is not a value of the bean definition.
+     */
+    private int[] toArgumentReferences(RootBeanDefinition mbd, Object[] preparedArguments) {
+        ConstructorArgumentValues cav = mbd.getConstructorArgumentValues();
+        int[] refs = new int[preparedArguments.length * 2];
+        for (int i = 0; i < preparedArguments.length; i++) {
+            Object argument = preparedArguments[i];
+            int refIndex = -1;
+            if (argument instanceof ConstructorResolver.AutowiredArgumentMarker) {
+                refs[i * 2] = ARGUMENT_AUTOWIRED;
+                refIndex = 0;
+            }
+            else {
+                for (Map.Entry<Integer, ConstructorArgumentValues.ValueHolder> entry :
+                        cav.getIndexedArgumentValues().entrySet()) {
+                    if (entry.getValue().getValue() == argument) {
+                        refs[i * 2] = ARGUMENT_INDEXED;
+                        refIndex = entry.getKey();
+                        break;
+                    }
+                }
+                if (refIndex < 0) {
+                    List<ConstructorArgumentValues.ValueHolder> generic = cav.getGenericArgumentValues();
+                    for (int j = 0; j < generic.size(); j++) {
+                        if (generic.get(j).getValue() == argument) {
+                            refs[i * 2] = ARGUMENT_GENERIC;
+                            refIndex = j;
+                            break;
+                        }
+                    }
+                }
+            }
+            if (refIndex < 0) {
+                return null;
+            }
+            refs[i * 2 + 1] = refIndex;
+        }
+        return refs;
+    }
+
+    private void writeByTypeCache(Map<Class<?>, String[]> cache, ClassTable classTable, DataOutputStream dos)
+            throws IOException {
+
+        Map<Class<?>, String[]> entries = new LinkedHashMap<Class<?>, String[]>(cache);
+        dos.writeInt(entries.size());
+        for (Map.Entry<Class<?>, String[]> entry : entries.entrySet()) {
+            dos.writeInt(classTable.indexOf(entry.getKey()));
+            dos.writeInt(entry.getValue().length);
+            for (String beanName : entry.getValue()) {
+                dos.writeUTF(beanName);
+            }
+        }
+    }
+
+
+    /**
+     * Apply the metadata from the given stream to the bean factory.
+     * @param in the stream to read from (not closed)
+     * @return the number of bean definitions that metadata has been restored for
+     * @throws IOException in case of I/O errors or an invalid snapshot format
+     */
+    public int restore(InputStream in) throws IOException {
+        DataInputStream dis = new DataInputStream(new BufferedInputStream(in));
+        if (dis.readInt() != MAGIC) {
+            throw new IOException("Not a bean factory metadata snapshot");
+        }
+        int version = dis.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported metadata snapshot version " + version);
+        }
+
+        String[] beanNames = this.beanFactory.getBeanDefinitionNames();
+        final boolean sameBeanFactory = (dis.readLong() == factoryFingerprint(beanNames));
+        boolean sameBeans = sameBeanFactory;
+
+        int classCount = dis.readInt();
+        Class<?>[] classes = new Class<?>[classCount];
+        for (int i = 0; i < classCount; i++) {
+            String className = dis.readUTF();
+            long checksum = dis.readLong();
+            if (checksum == checksum(className)) {
+                try {
+                    classes[i] = ClassUtils.forName(className, this.beanFactory.getBeanClassLoader());
+                }
+                catch (Throwable ex) {
+                    // Leave as null: entries referring to the class are going to be skipped.
+                }
+            }
+            else if (logger.isDebugEnabled()) {
+                logger.debug("Class [" + className + "] has changed since the metadata snapshot was taken");
+            }
+        }
+
+        int restored = 0;
+        int beanCount = dis.readInt();
+        for (int i = 0; i < beanCount; i++) {
+            String beanName = dis.readUTF();
+            long fingerprint = dis.readLong();
+            RootBeanDefinition mbd = null;
+            if (this.beanFactory.containsBeanDefinition(beanName)) {
+                mbd = this.beanFactory.getMergedLocalBeanDefinition(beanName);
+                if (fingerprint(mbd) != fingerprint) {
+                    mbd = null;
+                }
+            }
+            if (readBeanMetadata(mbd, classes, sameBeanFactory, dis)) {
+                restored++;
+            }
+            else {
+                sameBeans = false;
+            }
+        }
+
+        restoreByTypeCache(this.beanFactory.getBeanNamesByTypeCache(true), sameBeans, classes, dis);
+        restoreByTypeCache(this.beanFactory.getBeanNamesByTypeCache(false), sameBeans, classes, dis);
+        if (logger.isDebugEnabled()) {
+            logger.debug("Restored metadata for " + restored + " of " + beanNames.length + " bean definitions" +
+                    (sameBeans ? "" : " - by-type caches not restored since bean definitions have changed"));
+        }
+        return restored;
+    }
+
+    /**
+     * Read the metadata entry for a single bean, applying it to the given bean definition
+     * unless the latter is {@code null} or the entry turns out to be stale.
+     * <p>A resolved constructor or factory method with autowired arguments is only applied
+     * if the registered beans are the same as when the snapshot was taken, since the
+     * available autowire candidates determine which constructor or factory method to use.
+     * @param sameBeans whether the registered beans are the same as at snapshot time
+     * @return whether the entry has been applied
+     */
+    private boolean readBeanMetadata(RootBeanDefinition mbd, Class<?>[] classes, boolean sameBeans,
+                                     DataInputStream dis) throws IOException {
+
+        int targetTypeIndex = dis.readInt();
+        boolean valid = (mbd != null);
+        Class<?> targetType = null;
+        if (targetTypeIndex >= 0) {
+            targetType = classes[targetTypeIndex];
+            valid &= (targetType != null);
+        }
+
+        Member member = null;
+        boolean factoryMethodUnique = false;
+        byte memberKind = dis.readByte();
+        if (memberKind != MEMBER_NONE) {
+            Class<?> declaringClass = classes[dis.readInt()];
+            String methodName = (memberKind == MEMBER_FACTORY_METHOD ? dis.readUTF() : null);
+            Class<?>[] paramTypes = new Class<?>[dis.readInt()];
+            for (int i = 0; i < paramTypes.length; i++) {
+                paramTypes[i] = classes[dis.readInt()];
+                valid &= (paramTypes[i] != null);
+            }
+            if (memberKind == MEMBER_FACTORY_METHOD) {
+                factoryMethodUnique = dis.readBoolean();
+            }
+            valid &= (declaringClass != null);
+            if (valid) {
+                try {
+                    member = (methodName != null ? declaringClass.getDeclaredMethod(methodName, paramTypes) :
+                            declaringClass.getDeclaredConstructor(paramTypes));
+                }
+                catch (NoSuchMethodException ex) {
+                    valid = false;
+                }
+            }
+        }
+
+        Object[] preparedArguments = null;
+        boolean autowiredArguments = false;
+        byte argumentsKind = (memberKind != MEMBER_NONE ? dis.readByte() : ARGUMENTS_NONE);
+        if (argumentsKind == ARGUMENTS_PREPARED) {
+            int count = dis.readInt();
+            preparedArguments = new Object[count];
+            ConstructorArgumentValues cav = (mbd != null ? mbd.getConstructorArgumentValues() : null);
+            for (int i = 0; i < count; i++) {
+                byte kind = dis.readByte();
+                int index = dis.readInt();
+                if (!valid) {
+                    continue;
+                }
+                if (kind == ARGUMENT_AUTOWIRED) {
+                    preparedArguments[i] = new ConstructorResolver.AutowiredArgumentMarker();
+                    autowiredArguments = true;
+                }
+                else if (kind == ARGUMENT_INDEXED && cav.getIndexedArgumentValues().containsKey(index)) {
+                    preparedArguments[i] = cav.getIndexedArgumentValues().get(index).getValue();
+                }
+                else if (kind == ARGUMENT_GENERIC && index < cav.getGenericArgumentValues().size()) {
+                    preparedArguments[i] = cav.getGenericArgumentValues().get(index).getValue();
+                }
+                else {
+                    valid = false;
+                }
+            }
+        }
+
+        if (!valid) {
+            return false;
+        }
+        if (targetType != null && mbd.resolvedTargetType == null) {
+            mbd.resolvedTargetType = targetType;
+        }
+        if (autowiredArguments && !sameBeans) {
+            // Autowire candidates have changed: let the constructor resolution happen again.
+            member = null;
+        }
+        if (member != null) {
+            synchronized (mbd.constructorArgumentLock) {
+                if (mbd.resolvedConstructorOrFactoryMethod == null) {
+                    mbd.resolvedConstructorOrFactoryMethod = member;
+                    if (argumentsKind == ARGUMENTS_PREPARED) {
+                        mbd.preparedConstructorArguments = preparedArguments;
+                        mbd.constructorArgumentsResolved = true;
+                    }
+                    else if (argumentsKind == ARGUMENTS_EMPTY) {
+                        mbd.resolvedConstructorArguments = new Object[0];
+                        mbd.constructorArgumentsResolved = true;
+                    }
+                }
+            }
+            if (member instanceof Method) {
+                mbd.isFactoryMethodUnique = factoryMethodUnique;
+                if (mbd.factoryMethodReturnType == null) {
+                    mbd.factoryMethodReturnType = ResolvableType.forMethodReturnType((Method) member);
+                }
+            }
+        }
+        return true;
+    }
+
+    private void restoreByTypeCache(Map<Class<?>, String[]> cache, boolean apply, Class<?>[] classes,
+                                    DataInputStream dis) throws IOException {
+
+        int count = dis.readInt();
+        for (int i = 0; i < count; i++) {
+            Class<?> type = classes[dis.readInt()];
+            String[] beanNames = new String[dis.readInt()];
+            for (int j = 0; j < beanNames.length; j++) {
+                beanNames[j] = dis.readUTF();
+            }
+            if (apply && type != null && ClassUtils.isCacheSafe(type, this.beanFactory.getBeanClassLoader())) {
+                cache.put(type, beanNames);
+            }
+        }
+    }
+
+
+    /**
+     * Compute a checksum of the class file for the given class name,
+     * as found through the bean factory's class loader.
+     */
+    private long checksum(String className) throws IOException {
+        Long cached = this.checksumCache.get(className);
+        if (cached != null) {
+            return cached;
+        }
+        long checksum = NO_CHECKSUM;
+        String name = className;
+        while (name.startsWith("[")) {
+            name = name.substring(1);
+        }
+        if (name.startsWith("L") && name.endsWith(";")) {
+            name = name.substring(1, name.length() - 1);
+        }
+        if (ClassUtils.resolvePrimitiveClassName(name) != null || name.length() == 1) {
+            checksum = 0;
+        }
+        else {
+            ClassLoader classLoader = this.beanFactory.getBeanClassLoader();
+            String resourcePath = name.replace('.', '/') + ClassUtils.CLASS_FILE_SUFFIX;
+            InputStream is = (classLoader != null ? classLoader.getResourceAsStream(resourcePath) :
+                    ClassLoader.getSystemResourceAsStream(resourcePath));
+            if (is != null) {
+                try {
+                    CRC32 crc = new CRC32();
+                    byte[] buffer = new byte[4096];
+                    int read;
+                    while ((read = is.read(buffer)) != -1) {
+                        crc.update(buffer, 0, read);
+                    }
+                    checksum = crc.getValue();
+                }
+                finally {
+                    is.close();
+                }
+            }
+        }
+        this.checksumCache.put(className, checksum);
+        return checksum;
+    }
+
+    /**
+     * Compute a fingerprint of the attributes of the given bean definition
+     * that the snapshot's metadata depends on.
+     */
+    private static long fingerprint(RootBeanDefinition mbd) {
+        StringBuilder sb = new StringBuilder(128);
+        sb.append(mbd.getBeanClassName()).append('|');
+        sb.append(mbd.getFactoryBeanName()).append('|');
+        sb.append(mbd.getFactoryMethodName()).append('|');
+        sb.append(mbd.getScope()).append('|');
+        sb.append(mbd.isAbstract()).append('|');
+        sb.append(mbd.getResolvedAutowireMode()).append('|');
+        sb.append(mbd.isNonPublicAccessAllowed()).append('|');
+        sb.append(mbd.isLenientConstructorResolution()).append('|');
+        sb.append(mbd.targetType).append('|');
+        if (mbd.hasConstructorArgumentValues()) {
+            ConstructorArgumentValues cav = mbd.getConstructorArgumentValues();
+            for (Map.Entry<Integer, ConstructorArgumentValues.ValueHolder> entry :
+                    cav.getIndexedArgumentValues().entrySet()) {
+                sb.append(entry.getKey());
+                appendValueHolder(sb, entry.getValue());
+            }
+            sb.append('|');
+            for (ConstructorArgumentValues.ValueHolder valueHolder : cav.getGenericArgumentValues()) {
+                appendValueHolder(sb, valueHolder);
+            }
+        }
+        else {
+            sb.append('|');
+        }
+        return fingerprint(sb);
+    }
+
+    private static void appendValueHolder(StringBuilder sb, ConstructorArgumentValues.ValueHolder valueHolder) {
+        Object value = valueHolder.getValue();
+        sb.append('[').append(valueHolder.getType()).append(',').append(valueHolder.getName()).append(',');
+        sb.append(value != null ? value.getClass().getName() : null).append(']');
+    }
+
+    /**
+     * Compute a fingerprint of the set of beans known to the bean factory,
+     * which the by-type caches depend on.
+     */
+    private long factoryFingerprint(String[] beanNames) {
+        StringBuilder sb = new StringBuilder(beanNames.length * 48);
+        for (String beanName : beanNames) {
+            sb.append(beanName).append('=');
+            sb.append(fingerprint(this.beanFactory.getMergedLocalBeanDefinition(beanName))).append(';');
+        }
+        sb.append('|');
+        for (String singletonName : this.beanFactory.getManualSingletonNames()) {
+            Object singleton = this.beanFactory.getSingleton(singletonName, false);
+            sb.append(singletonName).append('=');
+            sb.append(singleton != null ? singleton.getClass().getName() : null).append(';');
+        }
+        return fingerprint(sb);
+    }
+
+    /**
+     * 64-bit FNV-1a hash of the given characters.
+     */
+    private static long fingerprint(CharSequence chars) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < chars.length(); i++) {
+            hash ^= chars.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+
+    /**
+     * Table of the classes referenced by a snapshot, written ahead of the entries.
+     */
+    private static class ClassTable {
+
+        final List<String> names = new ArrayList<String>();
+
+        private final Map<String, Integer> indexes = new HashMap<String, Integer>();
+
+        int indexOf(Class<?> clazz) {
+            if (clazz == null) {
+                return -1;
+            }
+            String name = clazz.getName();
+            Integer index = this.indexes.get(name);
+            if (index == null) {
+                index = this.names.size();
+                this.names.add(name);
+                this.indexes.put(name, index);
+            }
+            return index;
+        }
+    }
+
+}
@@ -0,0 +1,160 @@
+package org.myspring.beans.factory.support;
+
+import org.myspring.beans.BeansException;
+import org.myspring.beans.factory.BeanFactoryUtils;
+import org.myspring.beans.factory.FactoryBean;
+import org.myspring.core.util.ObjectUtils;
+
+/**
+ * Handle for repeatedly retrieving a specific bean from an {@link AbstractBeanFactory},
+ * as obtained through {@link AbstractBeanFactory#getBeanHandle}.
+ *
+ * <p>On first access, the handle goes through the regular {@code getBean} algorithm
+ * and remembers what it found out: the canonical bean name, the fully initialized
+ * instance for a singleton (or the FactoryBean for a singleton FactoryBean producing
+ * non-singleton objects), and the merged bean definition for a prototype. Subsequent
+ * calls return the singleton straight away or go directly to the creation of a new
+ * prototype instance, skipping name canonicalization, singleton lookups and
+ * FactoryBean checks.
+ *
+ * <p>Resolved state gets discarded whenever a singleton, alias or bean definition
+ * of the factory is removed or reset, with the next call resolving the bean anew.
+ * Beans of other scopes, beans from a parent factory and prototypes with
+ * {@code depends-on} declarations are always retrieved through the regular algorithm.
+ *
+ * @param <T> the type of the bean
+ */
+public final class BeanHandle<T> {
+
+    private static final int SHARED_OBJECT = 0;
+
+    private static final int SINGLETON_FACTORY_BEAN = 1;
+
+    private static final int PROTOTYPE = 2;
+
+
+    private final AbstractBeanFactory beanFactory;
+
+    private final String name;
+
+    private final Class<T> requiredType;
+
+    private volatile Resolution resolution;
+
+
+    BeanHandle(AbstractBeanFactory beanFactory, String name, Class<T> requiredType) {
+        this.beanFactory = beanFactory;
+        this.name = name;
+        this.requiredType = requiredType;
+    }
+
+
+    /**
+     * Return the name of the bean, as requested.
+     */
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * Return the type that the bean must match, if any.
+     */
+    public Class<T> getRequiredType() {
+        return this.requiredType;
+    }
+
+    /**
+     * Return an instance of the bean, equivalent to calling
+     * {@code getBean(name, requiredType)} on the factory.
+     * @return an instance of the bean
+     * @throws BeansException if the bean could not be obtained
+     */
+    public T getBean() throws BeansException {
+        Resolution resolution = this.resolution;
+        if (resolution != null && resolution.generation == this.beanFactory.getBeanHandleGeneration()) {
+            switch (resolution.kind) {
+                case SHARED_OBJECT:
+                    return resolution.adaptedObject;
+                case SINGLETON_FACTORY_BEAN:
+                    return this.beanFactory.adaptBeanInstance(this.name, this.beanFactory.getObjectForBeanInstance(
+                            resolution.object, this.name, resolution.beanName, null), this.requiredType);
+                case PROTOTYPE:
+                    if (!resolution.mbd.stale) {
+                        return this.beanFactory.adaptBeanInstance(this.name, this.beanFactory.createPrototype(
+                                this.name, resolution.beanName, resolution.mbd, null), this.requiredType);
+                    }
+            }
+        }
+        return resolve();
+    }
+
+    /**
+     * Retrieve the bean through the regular algorithm, remembering
+     * the resolved state for subsequent calls if possible.
+     */
+    private T resolve() {
+        long generation = this.beanFactory.getBeanHandleGeneration();
+        T bean = this.beanFactory.getBean(this.name, this.requiredType);
+        String beanName = this.beanFactory.transformedBeanName(this.name);
+
+        Resolution resolution = null;
+        Object singletonInstance = this.beanFactory.getSingleton(beanName, false);
+        if (singletonInstance != null) {
+            if (!this.beanFactory.isSingletonCurrentlyInCreation(beanName)) {
+                if (singletonInstance instanceof FactoryBean && !BeanFactoryUtils.isFactoryDereference(this.name) &&
+                        !((FactoryBean<?>) singletonInstance).isSingleton()) {
+                    resolution = new Resolution(generation, SINGLETON_FACTORY_BEAN, beanName,
+                            singletonInstance, null, null);
+                }
+                else {
+                    resolution = new Resolution(generation, SHARED_OBJECT, beanName, bean, bean, null);
+                }
+            }
+        }
+        else if (this.beanFactory.containsBeanDefinition(beanName)) {
+            RootBeanDefinition mbd = this.beanFactory.getMergedLocalBeanDefinition(beanName);
+            if (mbd.isPrototype() && ObjectUtils.isEmpty(mbd.getDependsOn())) {
+                resolution = new Resolution(generation, PROTOTYPE, beanName, null, null, mbd);
+            }
+        }
+        this.resolution = resolution;
+        return bean;
+    }
+
+    @Override
+    public String toString() {
+        return "BeanHandle for bean '" + this.name + "'" +
+                (this.requiredType != null ? " of type [" + this.requiredType.getName() + "]" : "");
+    }
+
+
+    /**
+     * Resolved state of a handle, valid for a specific generation of the factory's state.
+     */
+    private class Resolution {
+
+        final long generation;
+
+        final int kind;
+
+        final String beanName;
+
+        final Object object;
+
+        final T adaptedObject;
+
+        final RootBeanDefinition mbd;
+
+        Resolution(long generation, int kind, String beanName, Object object, T adaptedObject,
+                   RootBeanDefinition mbd) {
+
+            this.generation = generation;
+            this.kind = kind;
+            this.beanName = beanName;
+            this.object = object;
+            this.adaptedObject = adaptedObject;
+            this.mbd = mbd;
+        }
+    }
+
+}
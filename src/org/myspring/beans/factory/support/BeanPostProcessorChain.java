@@ -0,0 +1,88 @@
+package org.myspring.beans.factory.support;
+
+import org.myspring.beans.factory.config.BeanPostProcessor;
+import org.myspring.beans.factory.config.InstantiationAwareBeanPostProcessor;
+import org.myspring.beans.factory.config.SelectiveBeanPostProcessor;
+import org.myspring.beans.factory.config.SmartInstantiationAwareBeanPostProcessor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The BeanPostProcessors applicable to beans of a specific class, pre-sorted
+ * by the callback interfaces they implement.
+ *
+ * <p>Post-processors implementing {@link SelectiveBeanPostProcessor} are left out
+ * if they are not applicable to the class; all others are always included.
+ *
+ * @see AbstractBeanFactory#getBeanPostProcessorChain
+ */
+final class BeanPostProcessorChain {
+
+    private final BeanPostProcessor[] beanPostProcessors;
+
+    private final InstantiationAwareBeanPostProcessor[] instantiationAwareBeanPostProcessors;
+
+    private final SmartInstantiationAwareBeanPostProcessor[] smartInstantiationAwareBeanPostProcessors;
+
+    private final MergedBeanDefinitionPostProcessor[] mergedBeanDefinitionPostProcessors;
+
+
+    /**
+     * Create the chain of the given post-processors applicable to the given bean class.
+     * @param beanPostProcessors all post-processors of the factory
+     * @param beanClass the bean class, or {@code null} to include all post-processors
+     */
+    public BeanPostProcessorChain(List<BeanPostProcessor> beanPostProcessors, Class<?> beanClass) {
+        List<BeanPostProcessor> all = new ArrayList<BeanPostProcessor>(beanPostProcessors.size());
+        List<InstantiationAwareBeanPostProcessor> instantiationAware = new ArrayList<InstantiationAwareBeanPostProcessor>();
+        List<SmartInstantiationAwareBeanPostProcessor> smartInstantiationAware =
+                new ArrayList<SmartInstantiationAwareBeanPostProcessor>();
+        List<MergedBeanDefinitionPostProcessor> mergedBeanDefinition = new ArrayList<MergedBeanDefinitionPostProcessor>();
+        for (BeanPostProcessor bp : beanPostProcessors) {
+            if (beanClass != null && bp instanceof SelectiveBeanPostProcessor &&
+                    !((SelectiveBeanPostProcessor) bp).isApplicableTo(beanClass)) {
+                continue;
+            }
+            all.add(bp);
+            if (bp instanceof InstantiationAwareBeanPostProcessor) {
+                instantiationAware.add((InstantiationAwareBeanPostProcessor) bp);
+            }
+            if (bp instanceof SmartInstantiationAwareBeanPostProcessor) {
+                smartInstantiationAware.add((SmartInstantiationAwareBeanPostProcessor) bp);
+            }
+            if (bp instanceof MergedBeanDefinitionPostProcessor) {
+                mergedBeanDefinition.add((MergedBeanDefinitionPostProcessor) bp);
+            }
+        }
+        this.beanPostProcessors = all.toArray(new BeanPostProcessor[all.size()]);
+        this.instantiationAwareBeanPostProcessors =
+                instantiationAware.toArray(new InstantiationAwareBeanPostProcessor[instantiationAware.size()]);
+        this.smartInstantiationAwareBeanPostProcessors = smartInstantiationAware.toArray(
+                new SmartInstantiationAwareBeanPostProcessor[smartInstantiationAware.size()]);
+        this.mergedBeanDefinitionPostProcessors =
+                mergedBeanDefinition.toArray(new MergedBeanDefinitionPostProcessor[mergedBeanDefinition.size()]);
+    }
+
+
+    public BeanPostProcessor[] getBeanPostProcessors() {
+        return this.beanPostProcessors;
+    }
+
+    public InstantiationAwareBeanPostProcessor[] getInstantiationAwareBeanPostProcessors() {
+        return this.instantiationAwareBeanPostProcessors;
+    }
+
+    public SmartInstantiationAwareBeanPostProcessor[] getSmartInstantiationAwareBeanPostProcessors() {
+        return this.smartInstantiationAwareBeanPostProcessors;
+    }
+
+    public MergedBeanDefinitionPostProcessor[] getMergedBeanDefinitionPostProcessors() {
+        return this.mergedBeanDefinitionPostProcessors;
+    }
+
+    public boolean hasInstantiationAwareBeanPostProcessors() {
+        return (this.instantiationAwareBeanPostProcessors.length > 0);
+    }
+
+}
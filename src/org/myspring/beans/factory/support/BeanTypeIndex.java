@@ -0,0 +1,213 @@
+package org.myspring.beans.factory.support;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Inverted index from bean types to bean names, used by {@link DefaultListableBeanFactory}
+ * to narrow down the candidates for a by-type lookup before performing actual type matches.
+ *
+ * <p>Each bean is either indexed under a statically known class, in which case it is
+ * registered under that class as well as all of its superclasses and interfaces, or
+ * kept as "unindexed" if its type cannot be determined without further resolution
+ * (e.g. for factory methods, FactoryBeans or class names that have not been loaded).
+ * Unindexed beans are returned as candidates for every type. The index therefore only
+ * ever yields a superset of the matching beans; the factory still checks each candidate.
+ *
+ * <p>Updates are applied incrementally and are expected to be rare compared to lookups:
+ * mutations are synchronized, whereas lookups are lock-free.
+ */
+class BeanTypeIndex {
+
+    /** Map from indexed type to the names of the beans assignable to it */
+    private final Map<Class<?>, Set<String>> beanNamesByType = new ConcurrentHashMap<Class<?>, Set<String>>(256);
+
+    /** Map from bean name to the types it has been indexed under */
+    private final Map<String, Set<Class<?>>> typesByBeanName = new ConcurrentHashMap<String, Set<Class<?>>>(256);
+
+    /** Names of beans without statically known type, candidates for any type */
+    private final Set<String> unindexedBeanNames =
+            Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>(64));
+
+    /** Registration sequence per bean name, for returning candidates in registration order */
+    private final Map<String, Long> registrationOrder = new ConcurrentHashMap<String, Long>(256);
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    private final Comparator<String> registrationOrderComparator = new Comparator<String>() {
+        @Override
+        public int compare(String name1, String name2) {
+            Long order1 = registrationOrder.get(name1);
+            Long order2 = registrationOrder.get(name2);
+            long value1 = (order1 != null ? order1 : Long.MAX_VALUE);
+            long value2 = (order2 != null ? order2 : Long.MAX_VALUE);
+            return (value1 < value2 ? -1 : (value1 == value2 ? 0 : 1));
+        }
+    };
+
+
+    /**
+     * Register the given bean, replacing any previous index entries for it
+     * but retaining its original registration order.
+     * @param beanName the name of the bean
+     * @param beanType the statically known type of the bean,
+     * or {@code null} to keep the bean as candidate for any type
+     */
+    public synchronized void register(String beanName, Class<?> beanType) {
+        if (!this.registrationOrder.containsKey(beanName)) {
+            this.registrationOrder.put(beanName, this.sequence.getAndIncrement());
+        }
+        Set<Class<?>> previousTypes = this.typesByBeanName.remove(beanName);
+        if (beanType != null) {
+            // Add new entries before removing stale ones: lock-free readers must never miss the bean.
+            Set<Class<?>> types = collectTypes(beanType);
+            addEntries(beanName, types);
+            this.typesByBeanName.put(beanName, types);
+            this.unindexedBeanNames.remove(beanName);
+            if (previousTypes != null) {
+                previousTypes.removeAll(types);
+                removeEntries(beanName, previousTypes);
+            }
+        }
+        else {
+            this.unindexedBeanNames.add(beanName);
+            if (previousTypes != null) {
+                removeEntries(beanName, previousTypes);
+            }
+        }
+    }
+
+    /**
+     * Additionally index the given bean under the given type, e.g. for a bean
+     * instance that turned out to be of a different type than predicted.
+     * Does not have any effect for an unindexed bean.
+     * @param beanName the name of the bean
+     * @param type the additional type of the bean
+     */
+    public synchronized void addType(String beanName, Class<?> type) {
+        Set<Class<?>> types = this.typesByBeanName.get(beanName);
+        if (types != null && !types.contains(type)) {
+            Set<Class<?>> additionalTypes = collectTypes(type);
+            additionalTypes.removeAll(types);
+            addEntries(beanName, additionalTypes);
+            Set<Class<?>> updatedTypes = new LinkedHashSet<Class<?>>(types);
+            updatedTypes.addAll(additionalTypes);
+            this.typesByBeanName.put(beanName, updatedTypes);
+        }
+    }
+
+    /**
+     * Remove the given bean from the index.
+     * @param beanName the name of the bean
+     */
+    public synchronized void remove(String beanName) {
+        this.registrationOrder.remove(beanName);
+        this.unindexedBeanNames.remove(beanName);
+        Set<Class<?>> types = this.typesByBeanName.remove(beanName);
+        if (types != null) {
+            removeEntries(beanName, types);
+        }
+    }
+
+    /**
+     * Check whether the given bean is known to this index.
+     */
+    public boolean contains(String beanName) {
+        return this.registrationOrder.containsKey(beanName);
+    }
+
+    /**
+     * Check whether the given bean is indexed under a specific type,
+     * as opposed to being a candidate for any type.
+     */
+    public boolean isIndexed(String beanName) {
+        return this.typesByBeanName.containsKey(beanName);
+    }
+
+    /**
+     * Remove all entries from the index.
+     */
+    public synchronized void clear() {
+        this.beanNamesByType.clear();
+        this.typesByBeanName.clear();
+        this.unindexedBeanNames.clear();
+        this.registrationOrder.clear();
+    }
+
+    /**
+     * Return the names of all beans that may be assignable to the given type,
+     * in registration order.
+     * @param type the raw type to look up
+     * @return the candidate bean names (never {@code null})
+     */
+    public List<String> getCandidateNames(Class<?> type) {
+        Set<String> indexed = this.beanNamesByType.get(type);
+        List<String> result = new ArrayList<String>(
+                (indexed != null ? indexed.size() : 0) + this.unindexedBeanNames.size());
+        if (indexed != null) {
+            result.addAll(indexed);
+        }
+        for (String beanName : this.unindexedBeanNames) {
+            if (indexed == null || !indexed.contains(beanName)) {
+                result.add(beanName);
+            }
+        }
+        if (result.size() > 1) {
+            Collections.sort(result, this.registrationOrderComparator);
+        }
+        return result;
+    }
+
+
+    private void addEntries(String beanName, Set<Class<?>> types) {
+        for (Class<?> type : types) {
+            Set<String> beanNames = this.beanNamesByType.get(type);
+            if (beanNames == null) {
+                beanNames = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>(4));
+                this.beanNamesByType.put(type, beanNames);
+            }
+            beanNames.add(beanName);
+        }
+    }
+
+    private void removeEntries(String beanName, Set<Class<?>> types) {
+        for (Class<?> type : types) {
+            Set<String> beanNames = this.beanNamesByType.get(type);
+            if (beanNames != null) {
+                beanNames.remove(beanName);
+                if (beanNames.isEmpty()) {
+                    this.beanNamesByType.remove(type);
+                }
+            }
+        }
+    }
+
+    /**
+     * Collect the given type along with all of its superclasses and interfaces,
+     * except for {@code Object} which every lookup needs to scan fully anyway.
+     */
+    private static Set<Class<?>> collectTypes(Class<?> type) {
+        Set<Class<?>> types = new LinkedHashSet<Class<?>>();
+        Class<?> current = type;
+        while (current != null && current != Object.class) {
+            types.add(current);
+            current = current.getSuperclass();
+        }
+        current = type;
+        while (current != null) {
+            collectInterfaces(current, types);
+            current = current.getSuperclass();
+        }
+        return types;
+    }
+
+    private static void collectInterfaces(Class<?> type, Set<Class<?>> types) {
+        for (Class<?> ifc : type.getInterfaces()) {
+            if (types.add(ifc)) {
+                collectInterfaces(ifc, types);
+            }
+        }
+    }
+
+}
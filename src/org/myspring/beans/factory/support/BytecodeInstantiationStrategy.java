@@ -0,0 +1,386 @@
+package org.myspring.beans.factory.support;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.myspring.beans.BeanInstantiationException;
+import org.myspring.beans.factory.BeanFactory;
+import org.myspring.core.asm.ClassWriter;
+import org.myspring.core.asm.MethodVisitor;
+import org.myspring.core.asm.Opcodes;
+import org.myspring.core.asm.Type;
+import org.myspring.core.util.ClassUtils;
+import org.myspring.core.util.ConcurrentReferenceHashMap;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Instantiation strategy that invokes constructors and factory methods through
+ * generated bytecode instead of reflection, for containers creating large numbers
+ * of prototype beans.
+ *
+ * <p>An invoker class gets generated with ASM on first use of a constructor or
+ * factory method. It is cached per member as well as on the merged
+ * {@link RootBeanDefinition}, so subsequent instantiations skip any lookup.
+ *
+ * <p>Falls back to reflection for non-public members, members of non-public
+ * classes, members with non-public parameter types, and arguments that would
+ * require a widening conversion. Bean definitions with method overrides are
+ * handled through a CGLIB subclass as in {@link CglibSubclassingInstantiationStrategy}.
+ *
+ * @see AbstractAutowireCapableBeanFactory#setInstantiationStrategy
+ */
+public class BytecodeInstantiationStrategy extends CglibSubclassingInstantiationStrategy {
+
+    private static final Log logger = LogFactory.getLog(BytecodeInstantiationStrategy.class);
+
+    private static final String INVOKER_CLASS_NAME_PREFIX =
+            BytecodeInstantiationStrategy.class.getPackage().getName() + ".InstantiationInvoker$$";
+
+    /** Marker for members that need to be invoked through reflection */
+    private static final Invoker REFLECTIVE_INVOKER = new Invoker() {
+        @Override
+        public Object invoke(Object target, Object[] args) {
+            throw new UnsupportedOperationException("Reflective invocation required");
+        }
+    };
+
+    private static final Object[] EMPTY_ARGS = new Object[0];
+
+    private static final Map<ClassLoader, InvokerClassLoader> invokerClassLoaders =
+            new ConcurrentReferenceHashMap<ClassLoader, InvokerClassLoader>(16);
+
+    private static final AtomicInteger invokerClassCount = new AtomicInteger();
+
+
+    /** Cache of generated invokers: constructor or factory method --> Invoker */
+    private final Map<Member, Invoker> invokerCache = new ConcurrentReferenceHashMap<Member, Invoker>(256);
+
+
+    @Override
+    public Object instantiate(RootBeanDefinition bd, String beanName, BeanFactory owner) {
+        if (!bd.hasMethodOverrides()) {
+            Object constructorToUse;
+            synchronized (bd.constructorArgumentLock) {
+                constructorToUse = bd.resolvedConstructorOrFactoryMethod;
+            }
+            // The default constructor gets resolved on first instantiation through reflection.
+            if (constructorToUse instanceof Constructor) {
+                Constructor<?> ctor = (Constructor<?>) constructorToUse;
+                Invoker invoker = getInvoker(bd, ctor);
+                if (invoker != null) {
+                    return invokeConstructor(invoker, ctor, EMPTY_ARGS);
+                }
+            }
+        }
+        return super.instantiate(bd, beanName, owner);
+    }
+
+    @Override
+    public Object instantiate(RootBeanDefinition bd, String beanName, BeanFactory owner,
+                              Constructor<?> ctor, Object... args) {
+
+        if (!bd.hasMethodOverrides() && isApplicable(ctor.getParameterTypes(), args)) {
+            Invoker invoker = getInvoker(bd, ctor);
+            if (invoker != null) {
+                return invokeConstructor(invoker, ctor, args);
+            }
+        }
+        return super.instantiate(bd, beanName, owner, ctor, args);
+    }
+
+    @Override
+    protected Object invokeFactoryMethod(RootBeanDefinition bd, Object factoryBean, Method factoryMethod,
+                                         Object... args) throws IllegalAccessException, InvocationTargetException {
+
+        boolean isStatic = Modifier.isStatic(factoryMethod.getModifiers());
+        if ((isStatic || factoryMethod.getDeclaringClass().isInstance(factoryBean)) &&
+                isApplicable(factoryMethod.getParameterTypes(), args)) {
+            Invoker invoker = getInvoker(bd, factoryMethod);
+            if (invoker != null) {
+                try {
+                    return invoker.invoke(factoryBean, (args != null ? args : EMPTY_ARGS));
+                }
+                catch (Throwable ex) {
+                    throw new InvocationTargetException(ex);
+                }
+            }
+        }
+        return super.invokeFactoryMethod(bd, factoryBean, factoryMethod, args);
+    }
+
+    private Object invokeConstructor(Invoker invoker, Constructor<?> ctor, Object[] args) {
+        try {
+            return invoker.invoke(null, (args != null ? args : EMPTY_ARGS));
+        }
+        catch (Throwable ex) {
+            throw new BeanInstantiationException(ctor, "Constructor threw exception", ex);
+        }
+    }
+
+    /**
+     * Check whether the given arguments can be passed to generated bytecode as-is,
+     * i.e. without the widening conversions that reflection would apply.
+     */
+    private static boolean isApplicable(Class<?>[] paramTypes, Object[] args) {
+        int argCount = (args != null ? args.length : 0);
+        if (paramTypes.length != argCount) {
+            return false;
+        }
+        for (int i = 0; i < argCount; i++) {
+            if (!ClassUtils.isAssignableValue(paramTypes[i], args[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    /**
+     * Obtain the invoker for the given constructor or factory method of the given
+     * bean definition, generating it on first use.
+     * @return the invoker, or {@code null} if reflection needs to be used
+     */
+    private Invoker getInvoker(RootBeanDefinition bd, Member member) {
+        CachedInvoker cached = bd.cachedInstantiationInvoker;
+        if (cached != null && cached.member.equals(member)) {
+            return cached.invoker;
+        }
+        Invoker invoker = this.invokerCache.get(member);
+        if (invoker == null) {
+            invoker = generateInvoker(member);
+            this.invokerCache.put(member, invoker);
+        }
+        if (invoker == REFLECTIVE_INVOKER) {
+            invoker = null;
+        }
+        bd.cachedInstantiationInvoker = new CachedInvoker(member, invoker);
+        return invoker;
+    }
+
+    private static Invoker generateInvoker(Member member) {
+        if (!isInvokableFromGeneratedCode(member)) {
+            return REFLECTIVE_INVOKER;
+        }
+        try {
+            ClassLoader classLoader = member.getDeclaringClass().getClassLoader();
+            if (classLoader == null) {
+                classLoader = ClassUtils.getDefaultClassLoader();
+            }
+            InvokerClassLoader icl = invokerClassLoaders.get(classLoader);
+            if (icl == null) {
+                icl = new InvokerClassLoader(classLoader);
+                invokerClassLoaders.put(classLoader, icl);
+            }
+            String className = INVOKER_CLASS_NAME_PREFIX + invokerClassCount.incrementAndGet();
+            Class<?> invokerClass = icl.defineClass(className, generateInvokerClass(className, member));
+            if (logger.isDebugEnabled()) {
+                logger.debug("Generated instantiation invoker for " + member);
+            }
+            return (Invoker) invokerClass.getDeclaredConstructor().newInstance();
+        }
+        catch (Throwable ex) {
+            if (logger.isDebugEnabled()) {
+                logger.debug("Failed to generate instantiation invoker for " + member +
+                        " - falling back to reflection", ex);
+            }
+            return REFLECTIVE_INVOKER;
+        }
+    }
+
+    /**
+     * Determine whether generated code in another class loader may link against the
+     * given member, which requires the member, its class and its parameter types to
+     * be public.
+     */
+    private static boolean isInvokableFromGeneratedCode(Member member) {
+        if (System.getSecurityManager() != null) {
+            return false;
+        }
+        Class<?> declaringClass = member.getDeclaringClass();
+        if (!Modifier.isPublic(member.getModifiers()) || !isPublic(declaringClass)) {
+            return false;
+        }
+        Class<?>[] paramTypes;
+        if (member instanceof Constructor) {
+            if (Modifier.isAbstract(declaringClass.getModifiers())) {
+                return false;
+            }
+            paramTypes = ((Constructor<?>) member).getParameterTypes();
+        }
+        else {
+            if (declaringClass.isInterface() && Modifier.isStatic(member.getModifiers())) {
+                return false;
+            }
+            paramTypes = ((Method) member).getParameterTypes();
+        }
+        for (Class<?> paramType : paramTypes) {
+            if (!isPublic(paramType)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isPublic(Class<?> clazz) {
+        while (clazz.isArray()) {
+            clazz = clazz.getComponentType();
+        }
+        for (Class<?> current = clazz; current != null; current = current.getDeclaringClass()) {
+            if (!Modifier.isPublic(current.getModifiers())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static byte[] generateInvokerClass(String className, Member member) {
+        String internalName = className.replace('.', '/');
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        cw.visit(Opcodes.V1_6, Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER | Opcodes.ACC_SYNTHETIC, internalName, null,
+                "java/lang/Object", new String[] {Type.getInternalName(Invoker.class)});
+
+        MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+        mv.visitCode();
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+        mv.visitInsn(Opcodes.RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+
+        mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "invoke",
+                "(Ljava/lang/Object;[Ljava/lang/Object;)Ljava/lang/Object;", null, null);
+        mv.visitCode();
+        String owner = Type.getInternalName(member.getDeclaringClass());
+        if (member instanceof Constructor) {
+            Constructor<?> ctor = (Constructor<?>) member;
+            mv.visitTypeInsn(Opcodes.NEW, owner);
+            mv.visitInsn(Opcodes.DUP);
+            loadArguments(mv, ctor.getParameterTypes());
+            mv.visitMethodInsn(Opcodes.INVOKESPECIAL, owner, "<init>", Type.getConstructorDescriptor(ctor), false);
+        }
+        else {
+            Method method = (Method) member;
+            boolean isInterface = method.getDeclaringClass().isInterface();
+            int opcode;
+            if (Modifier.isStatic(method.getModifiers())) {
+                opcode = Opcodes.INVOKESTATIC;
+            }
+            else {
+                mv.visitVarInsn(Opcodes.ALOAD, 1);
+                mv.visitTypeInsn(Opcodes.CHECKCAST, owner);
+                opcode = (isInterface ? Opcodes.INVOKEINTERFACE : Opcodes.INVOKEVIRTUAL);
+            }
+            loadArguments(mv, method.getParameterTypes());
+            mv.visitMethodInsn(opcode, owner, method.getName(), Type.getMethodDescriptor(method), isInterface);
+            Class<?> returnType = method.getReturnType();
+            if (returnType == void.class) {
+                mv.visitInsn(Opcodes.ACONST_NULL);
+            }
+            else if (returnType.isPrimitive()) {
+                Class<?> wrapperType = ClassUtils.resolvePrimitiveIfNecessary(returnType);
+                mv.visitMethodInsn(Opcodes.INVOKESTATIC, Type.getInternalName(wrapperType), "valueOf",
+                        "(" + Type.getDescriptor(returnType) + ")" + Type.getDescriptor(wrapperType), false);
+            }
+        }
+        mv.visitInsn(Opcodes.ARETURN);
+        mv.visitMaxs(0, 0);  // computed through COMPUTE_MAXS
+        mv.visitEnd();
+
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    /**
+     * Push the elements of the argument array onto the stack, cast or unboxed
+     * to the given parameter types.
+     */
+    private static void loadArguments(MethodVisitor mv, Class<?>[] paramTypes) {
+        for (int i = 0; i < paramTypes.length; i++) {
+            mv.visitVarInsn(Opcodes.ALOAD, 2);
+            if (i <= 5) {
+                mv.visitInsn(Opcodes.ICONST_0 + i);
+            }
+            else if (i <= Byte.MAX_VALUE) {
+                mv.visitIntInsn(Opcodes.BIPUSH, i);
+            }
+            else {
+                mv.visitIntInsn(Opcodes.SIPUSH, i);
+            }
+            mv.visitInsn(Opcodes.AALOAD);
+            Class<?> paramType = paramTypes[i];
+            if (paramType.isPrimitive()) {
+                String wrapperName = Type.getInternalName(ClassUtils.resolvePrimitiveIfNecessary(paramType));
+                mv.visitTypeInsn(Opcodes.CHECKCAST, wrapperName);
+                mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, wrapperName, paramType.getName() + "Value",
+                        "()" + Type.getDescriptor(paramType), false);
+            }
+            else if (paramType != Object.class) {
+                mv.visitTypeInsn(Opcodes.CHECKCAST, Type.getInternalName(paramType));
+            }
+        }
+    }
+
+
+    /**
+     * Callback implemented by generated invoker classes.
+     * Public for access from generated code only; not intended for external use.
+     */
+    public interface Invoker {
+
+        /**
+         * Invoke the constructor or method that this invoker has been generated for.
+         * @param target the target instance (ignored for constructors and static methods)
+         * @param args the arguments, already matching the parameter types
+         * @return the new instance or the method's return value
+         * @throws Throwable any exception thrown by the constructor or method
+         */
+        Object invoke(Object target, Object[] args) throws Throwable;
+    }
+
+
+    /**
+     * Invoker cached on a RootBeanDefinition, along with the member it applies to.
+     */
+    static class CachedInvoker {
+
+        final Member member;
+
+        final Invoker invoker;
+
+        CachedInvoker(Member member, Invoker invoker) {
+            this.member = member;
+            this.invoker = invoker;
+        }
+    }
+
+
+    /**
+     * Child class loader for generated invoker classes, exposing the
+     * {@link Invoker} interface even if not visible from the parent.
+     */
+    private static class InvokerClassLoader extends ClassLoader {
+
+        public InvokerClassLoader(ClassLoader parent) {
+            super(parent);
+        }
+
+        @Override
+        protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            if (Invoker.class.getName().equals(name)) {
+                return Invoker.class;
+            }
+            return super.loadClass(name, resolve);
+        }
+
+        public Class<?> defineClass(String name, byte[] bytes) {
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+
+}
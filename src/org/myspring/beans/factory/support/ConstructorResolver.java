@@ -107,7 +107,8 @@ class ConstructorResolver {
                 minNrOfArgs = explicitArgs.length;
             }
             else {
-                ConstructorArgumentValues cargs = mbd.getConstructorArgumentValues();
+                ConstructorArgumentValues cargs = (mbd.hasConstructorArgumentValues() ?
+                        mbd.getConstructorArgumentValues() : new ConstructorArgumentValues());
                 resolvedValues = new ConstructorArgumentValues();
                 minNrOfArgs = resolveConstructorArguments(beanName, mbd, bw, cargs, resolvedValues);
             }
@@ -458,7 +459,8 @@ class ConstructorResolver {
             else {
                 // We don't have arguments passed in programmatically, so we need to resolve the
                 // arguments specified in the constructor arguments held in the bean definition.
-                ConstructorArgumentValues cargs = mbd.getConstructorArgumentValues();
+                ConstructorArgumentValues cargs = (mbd.hasConstructorArgumentValues() ?
+                        mbd.getConstructorArgumentValues() : new ConstructorArgumentValues());
                 resolvedValues = new ConstructorArgumentValues();
                 minNrOfArgs = resolveConstructorArguments(beanName, mbd, bw, cargs, resolvedValues);
             }
@@ -748,7 +750,7 @@ class ConstructorResolver {
 
     //====================================================
 
-    private static class AutowiredArgumentMarker {
+    static class AutowiredArgumentMarker {
     }
 
     private static class ConstructorPropertiesChecker {
@@ -16,11 +16,15 @@ import java.io.*;
 import java.lang.annotation.Annotation;
 import java.lang.ref.Reference;
 import java.lang.ref.WeakReference;
+import java.lang.reflect.Array;
 import java.lang.reflect.Method;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class DefaultListableBeanFactory extends AbstractAutowireCapableBeanFactory
         implements ConfigurableListableBeanFactory, BeanDefinitionRegistry, Serializable {
@@ -77,18 +81,41 @@ public class DefaultListableBeanFactory extends AbstractAutowireCapableBeanFacto
     /** Map of singleton-only bean names, keyed by dependency type */
     private final Map<Class<?>, String[]> singletonBeanNamesByType = new ConcurrentHashMap<Class<?>, String[]>(64);
 
+    /** Map of resolved autowire candidate names, keyed by injection point (for frozen configurations only) */
+    private final Map<AutowireCandidateCacheKey, String> autowireCandidateCache =
+            new ConcurrentHashMap<AutowireCandidateCacheKey, String>(64);
+
+    /** Map of ordered autowire candidate names for collection, array and map injection points */
+    private final Map<AutowireCandidateCacheKey, MultipleCandidates> multipleCandidateCache =
+            new ConcurrentHashMap<AutowireCandidateCacheKey, MultipleCandidates>(64);
+
+    /** Incremented whenever resolved autowire candidates may have become invalid */
+    private final AtomicLong autowireCandidateGeneration = new AtomicLong();
+
     /** List of bean definition names, in registration order */
     private volatile List<String> beanDefinitionNames = new ArrayList<String>(256);
 
     /** List of names of manually registered singletons, in registration order */
     private volatile Set<String> manualSingletonNames = new LinkedHashSet<String>(16);
 
+    /** Index of bean definition names by statically known type */
+    private final BeanTypeIndex beanDefinitionTypeIndex = new BeanTypeIndex();
+
+    /** Index of manually registered singleton names by instance type */
+    private final BeanTypeIndex manualSingletonTypeIndex = new BeanTypeIndex();
+
     /** Cached array of bean definition names in case of frozen configuration */
     private volatile String[] frozenBeanDefinitionNames;
 
     /** Whether bean definition metadata may be cached for all beans */
     private volatile boolean configurationFrozen = false;
 
+    /** Whether to pre-instantiate independent singletons concurrently */
+    private boolean parallelPreInstantiation = false;
+
+    /** Number of threads for concurrent pre-instantiation, or 0 for the number of processors */
+    private int preInstantiationParallelism = 0;
+
     public DefaultListableBeanFactory() {
         super();
     }
@@ -168,9 +195,48 @@ public class DefaultListableBeanFactory extends AbstractAutowireCapableBeanFacto
         return this.allowEagerClassLoading;
     }
 
+    /**
+     * Set whether {@link #preInstantiateSingletons()} should create independent
+     * singletons concurrently, following the dependency graph derived from the
+     * bean definitions. Beans taking part in a dependency cycle are still created
+     * serially, and {@link SmartInitializingSingleton} callbacks are only triggered
+     * once all singletons exist.
+     * <p>Default is "false": singletons are created one by one, in registration order.
+     * @see #setPreInstantiationParallelism
+     */
+    public void setParallelPreInstantiation(boolean parallelPreInstantiation) {
+        this.parallelPreInstantiation = parallelPreInstantiation;
+    }
+
+    /**
+     * Return whether independent singletons get pre-instantiated concurrently.
+     */
+    public boolean isParallelPreInstantiation() {
+        return this.parallelPreInstantiation;
+    }
+
+    /**
+     * Set the number of threads to use for concurrent pre-instantiation.
+     * <p>Default is 0, indicating the number of available processors.
+     * @see #setParallelPreInstantiation
+     */
+    public void setPreInstantiationParallelism(int preInstantiationParallelism) {
+        Assert.isTrue(preInstantiationParallelism >= 0, "Parallelism must not be negative");
+        this.preInstantiationParallelism = preInstantiationParallelism;
+    }
+
+    /**
+     * Return the number of threads to use for concurrent pre-instantiation
+     * (0 indicating the number of available processors).
+     */
+    public int getPreInstantiationParallelism() {
+        return this.preInstantiationParallelism;
+    }
+
 
     public void setDependencyComparator(Comparator<Object> dependencyComparator) {
         this.dependencyComparator = dependencyComparator;
+        clearAutowireCandidateCache();
     }
 
     /**
@@ -203,6 +269,7 @@ public class DefaultListableBeanFactory extends AbstractAutowireCapableBeanFacto
             }
         }
         this.autowireCandidateResolver = autowireCandidateResolver;
+        clearAutowireCandidateCache();
     }
 
     /**
@@ -221,6 +288,8 @@ public class DefaultListableBeanFactory extends AbstractAutowireCapableBeanFacto
             this.allowBeanDefinitionOverriding = otherListableFactory.allowBeanDefinitionOverriding;
             this.allowEagerClassLoading = otherListableFactory.allowEagerClassLoading;
             this.dependencyComparator = otherListableFactory.dependencyComparator;
+            this.parallelPreInstantiation = otherListableFactory.parallelPreInstantiation;
+            this.preInstantiationParallelism = otherListableFactory.preInstantiationParallelism;
             // A clone of the AutowireCandidateResolver since it is potentially BeanFactoryAware...
             setAutowireCandidateResolver(BeanUtils.instantiateClass(getAutowireCandidateResolver().getClass()));
             // Make resolvable dependencies (e.g. ResourceLoader) available here as well...
@@ -251,6 +320,24 @@ public class DefaultListableBeanFactory extends AbstractAutowireCapableBeanFacto
         throw new NoSuchBeanDefinitionException(requiredType);
     }
 
+    /**
+     * Obtain a handle for repeatedly retrieving the unique local bean matching the
+     * given type. The bean is determined once, just like for {@link #getBean(Class)};
+     * the handle keeps referring to that bean by name afterwards.
+     * @param requiredType the type the bean must match
+     * @return the handle for the bean
+     * @throws NoSuchBeanDefinitionException if no bean of the given type was found
+     * @throws NoUniqueBeanDefinitionException if more than one bean of the given type was found
+     * @see #getBeanHandle(String, Class)
+     */
+    public <T> BeanHandle<T> getBeanHandle(Class<T> requiredType) throws BeansException {
+        NamedBeanHolder<T> namedBean = resolveNamedBean(requiredType, (Object[]) null);
+        if (namedBean == null) {
+            throw new NoSuchBeanDefinitionException(requiredType);
+        }
+        return getBeanHandle(namedBean.getBeanName(), requiredType);
+    }
+
 
     //---------------------------------------------------------------------
     // Implementation of ListableBeanFactory interface
@@ -309,8 +396,16 @@ public class DefaultListableBeanFactory extends AbstractAutowireCapableBeanFacto
     private String[] doGetBeanNamesForType(ResolvableType type, boolean includeNonSingletons, boolean allowEagerInit) {
         List<String> result = new ArrayList<String>();
 
+        // Narrow down the candidates through the type index, if possible.
+        Class<?> rawType = type.resolve();
+        boolean useTypeIndex = (rawType != null && rawType != Object.class && !hasTypePredictingPostProcessors());
+        List<String> beanDefinitionCandidates = (useTypeIndex ?
+                this.beanDefinitionTypeIndex.getCandidateNames(rawType) : this.beanDefinitionNames);
+        Collection<String> manualSingletonCandidates = (useTypeIndex ?
+                this.manualSingletonTypeIndex.getCandidateNames(rawType) : this.manualSingletonNames);
+
         // Check all bean definitions.
-        for (String beanName : this.beanDefinitionNames) {
+        for (String beanName : beanDefinitionCandidates) {
             // Only consider bean as eligible if the bean name
             // is not defined as alias for some other bean.
             if (!isAlias(beanName)) {
@@ -323,9 +418,12 @@ public class DefaultListableBeanFactory extends AbstractAutowireCapableBeanFacto
                         // In case of FactoryBean, match object created by FactoryBean.
                         boolean isFactoryBean = isFactoryBean(beanName, mbd);
                         BeanDefinitionHolder dbd = mbd.getDecoratedDefinition();
+                        // A FactoryBean with a predictable object type can be checked without
+                        // initialization, unless it needs to be asked whether it is a singleton.
                         boolean matchFound =
                                 (allowEagerInit || !isFactoryBean ||
-                                        (dbd != null && !mbd.isLazyInit()) || containsSingleton(beanName)) &&
+                                        (dbd != null && !mbd.isLazyInit()) || containsSingleton(beanName) ||
+                                        (includeNonSingletons && predictFactoryBeanObjectType(beanName, mbd) != null)) &&
                                         (includeNonSingletons ||
                                                 (dbd != null ? mbd.isSingleton() : isSingleton(beanName))) &&
                                         isTypeMatch(beanName, type);
@@ -363,7 +461,7 @@ public class DefaultListableBeanFactory extends AbstractAutowireCapableBeanFacto
         }
 
         // Check manually registered singletons too.
-        for (String beanName : this.manualSingletonNames) {
+        for (String beanName : manualSingletonCandidates) {
             try {
                 // In case of FactoryBean, match object created by FactoryBean.
                 if (isFactoryBean(beanName)) {
@@ -391,6 +489,23 @@ public class DefaultListableBeanFactory extends AbstractAutowireCapableBeanFacto
         return StringUtils.toStringArray(result);
     }
 
+    /**
+     * Determine whether any registered post-processor may predict a bean type
+     * other than the one derivable from the bean definition, in which case the
+     * type index cannot be used to narrow down the candidates for a type match.
+     * @see SmartInstantiationAwareBeanPostProcessor#predictBeanType
+     */
+    private boolean hasTypePredictingPostProcessors() {
+        if (hasInstantiationAwareBeanPostProcessors()) {
+            for (BeanPostProcessor bp : getBeanPostProcessors()) {
+                if (bp instanceof SmartInstantiationAwareBeanPostProcessor) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
     /**
      * Check whether the specified bean would need to be eagerly initialized
      * in order to determine its type.
@@ -506,6 +621,7 @@ public class DefaultListableBeanFactory extends AbstractAutowireCapableBeanFacto
                         "] does not implement specified dependency type [" + dependencyType.getName() + "]");
             }
             this.resolvableDependencies.put(dependencyType, autowiredValue);
+            clearAutowireCandidateCache();
         }
     }
 
@@ -590,6 +706,16 @@ public class DefaultListableBeanFactory extends AbstractAutowireCapableBeanFacto
     @Override
     public void clearMetadataCache() {
         super.clearMetadataCache();
+        // Bean definitions may have been modified by post-processors in the meantime.
+        for (String beanName : this.beanDefinitionNames) {
+            indexBeanDefinition(beanName);
+        }
+        clearByTypeCache();
+    }
+
+    @Override
+    public void trimMetadataCaches() {
+        super.trimMetadataCaches();
         clearByTypeCache();
     }
 
@@ -604,6 +730,38 @@ public class DefaultListableBeanFactory extends AbstractAutowireCapableBeanFacto
         return this.configurationFrozen;
     }
 
+    /**
+     * Write the metadata that this factory has resolved for its bean definitions
+     * (predicted target types, resolved constructors and factory methods, prepared
+     * constructor arguments and by-type lookup results) to the given stream, in a
+     * compact binary format to be read by {@link #restoreMetadataSnapshot}.
+     * <p>Only available once the configuration has been frozen. The snapshot is
+     * typically taken after {@link #preInstantiateSingletons()}.
+     * @param out the stream to write to (not closed)
+     * @throws IOException in case of I/O errors
+     * @see #freezeConfiguration()
+     */
+    public void writeMetadataSnapshot(OutputStream out) throws IOException {
+        Assert.state(this.configurationFrozen, "Configuration must be frozen for writing a metadata snapshot");
+        new BeanFactoryMetadataSnapshot(this).write(out);
+    }
+
+    /**
+     * Restore metadata previously written by {@link #writeMetadataSnapshot}, sparing
+     * this factory the resolution work for bean definitions that are unchanged.
+     * <p>Entries are validated against the current bean definitions as well as against
+     * checksums of all class files they refer to; stale entries are simply skipped.
+     * Only available once the configuration has been frozen.
+     * @param in the stream to read from (not closed)
+     * @return the number of bean definitions that metadata has been restored for
+     * @throws IOException in case of I/O errors or an invalid snapshot format
+     * @see #freezeConfiguration()
+     */
+    public int restoreMetadataSnapshot(InputStream in) throws IOException {
+        Assert.state(this.configurationFrozen, "Configuration must be frozen for restoring a metadata snapshot");
+        return new BeanFactoryMetadataSnapshot(this).restore(in);
+    }
+
     /**
      * Considers all beans as eligible for metadata caching
      * if the factory's configuration has been marked as frozen.
@@ -625,34 +783,20 @@ public class DefaultListableBeanFactory extends AbstractAutowireCapableBeanFacto
         List<String> beanNames = new ArrayList<String>(this.beanDefinitionNames);
 
         // Trigger initialization of all non-lazy singleton beans...
-        for (String beanName : beanNames) {
-            RootBeanDefinition bd = getMergedLocalBeanDefinition(beanName);
-            if (!bd.isAbstract() && bd.isSingleton() && !bd.isLazyInit()) {
-                if (isFactoryBean(beanName)) {
-                    final FactoryBean<?> factory = (FactoryBean<?>) getBean(FACTORY_BEAN_PREFIX + beanName);
-                    boolean isEagerInit;
-                    if (System.getSecurityManager() != null && factory instanceof SmartFactoryBean) {
-                        isEagerInit = AccessController.doPrivileged(new PrivilegedAction<Boolean>() {
-                            @Override
-                            public Boolean run() {
-                                return ((SmartFactoryBean<?>) factory).isEagerInit();
-                            }
-                        }, getAccessControlContext());
-                    }
-                    else {
-                        isEagerInit = (factory instanceof SmartFactoryBean &&
-                                ((SmartFactoryBean<?>) factory).isEagerInit());
-                    }
-                    if (isEagerInit) {
-                        getBean(beanName);
-                    }
-                }
-                else {
-                    getBean(beanName);
+        if (isParallelPreInstantiation() && beanNames.size() > 1) {
+            new ParallelSingletonPreInstantiator(this, getPreInstantiationParallelism()).preInstantiate(beanNames);
+        }
+        else {
+            for (String beanName : beanNames) {
+                if (requiresPreInstantiation(beanName)) {
+                    preInstantiateSingleton(beanName);
                 }
             }
         }
 
+        // Wait for singletons initializing in the background...
+        awaitBackgroundInitializations();
+
         // Trigger post-initialization callback for all applicable beans...
         for (String beanName : beanNames) {
             Object singletonInstance = getSingleton(beanName);
@@ -674,6 +818,50 @@ public class DefaultListableBeanFactory extends AbstractAutowireCapableBeanFacto
         }
     }
 
+    /**
+     * Determine whether the given bean needs to be created on pre-instantiation,
+     * i.e. whether it is a non-abstract, non-lazy singleton.
+     * @param beanName the name of the bean definition
+     */
+    boolean requiresPreInstantiation(String beanName) {
+        RootBeanDefinition bd = getMergedLocalBeanDefinition(beanName);
+        return (!bd.isAbstract() && bd.isSingleton() && !bd.isLazyInit());
+    }
+
+    /**
+     * Pre-instantiate the given singleton, only creating the exposed object of a
+     * FactoryBean if the factory asks for eager initialization. The init phase of
+     * a regular bean may be handed off to the background if requested.
+     * @param beanName the name of the bean definition
+     */
+    void preInstantiateSingleton(String beanName) {
+        if (isFactoryBean(beanName)) {
+            final FactoryBean<?> factory = (FactoryBean<?>) getBean(FACTORY_BEAN_PREFIX + beanName);
+            boolean isEagerInit;
+            if (System.getSecurityManager() != null && factory instanceof SmartFactoryBean) {
+                isEagerInit = AccessController.doPrivileged(new PrivilegedAction<Boolean>() {
+                    @Override
+                    public Boolean run() {
+                        return ((SmartFactoryBean<?>) factory).isEagerInit();
+                    }
+                }, getAccessControlContext());
+            }
+            else {
+                isEagerInit = (factory instanceof SmartFactoryBean &&
+                        ((SmartFactoryBean<?>) factory).isEagerInit());
+            }
+            if (isEagerInit) {
+                getBean(beanName);
+            }
+        }
+        else if (getMergedLocalBeanDefinition(beanName).isBackgroundInit()) {
+            createSingletonWithBackgroundInit(beanName);
+        }
+        else {
+            getBean(beanName);
+        }
+    }
+
 
     //---------------------------------------------------------------------
     // Implementation of BeanDefinitionRegistry interface
@@ -685,47 +873,13 @@ public class DefaultListableBeanFactory extends AbstractAutowireCapableBeanFacto
 
         Assert.hasText(beanName, "Bean name must not be empty");
         Assert.notNull(beanDefinition, "BeanDefinition must not be null");
-
-        if (beanDefinition instanceof AbstractBeanDefinition) {
-            try {
-                ((AbstractBeanDefinition) beanDefinition).validate();
-            }
-            catch (BeanDefinitionValidationException ex) {
-                throw new BeanDefinitionStoreException(beanDefinition.getResourceDescription(), beanName,
-                        "Validation of bean definition failed", ex);
-            }
-        }
+        validateBeanDefinition(beanName, beanDefinition);
 
         BeanDefinition existingDefinition = this.beanDefinitionMap.get(beanName);
         if (existingDefinition != null) {
-            if (!isAllowBeanDefinitionOverriding()) {
-                throw new BeanDefinitionStoreException(beanDefinition.getResourceDescription(), beanName,
-                        "Cannot register bean definition [" + beanDefinition + "] for bean '" + beanName +
-                                "': There is already [" + existingDefinition + "] bound.");
-            }
-            else if (existingDefinition.getRole() < beanDefinition.getRole()) {
-                // e.g. was ROLE_APPLICATION, now overriding with ROLE_SUPPORT or ROLE_INFRASTRUCTURE
-                if (logger.isWarnEnabled()) {
-                    logger.warn("Overriding user-defined bean definition for bean '" + beanName +
-                            "' with a framework-generated bean definition: replacing [" +
-                            existingDefinition + "] with [" + beanDefinition + "]");
-                }
-            }
-            else if (!beanDefinition.equals(existingDefinition)) {
-                if (logger.isInfoEnabled()) {
-                    logger.info("Overriding bean definition for bean '" + beanName +
-                            "' with a different definition: replacing [" + existingDefinition +
-                            "] with [" + beanDefinition + "]");
-                }
-            }
-            else {
-                if (logger.isDebugEnabled()) {
-                    logger.debug("Overriding bean definition for bean '" + beanName +
-                            "' with an equivalent definition: replacing [" + existingDefinition +
-                            "] with [" + beanDefinition + "]");
-                }
-            }
+            checkBeanDefinitionOverride(beanName, beanDefinition, existingDefinition);
             this.beanDefinitionMap.put(beanName, beanDefinition);
+            indexBeanDefinition(beanName);
         }
         else {
             if (hasBeanCreationStarted()) {
@@ -749,6 +903,8 @@ public class DefaultListableBeanFactory extends AbstractAutowireCapableBeanFacto
                 this.beanDefinitionNames.add(beanName);
                 this.manualSingletonNames.remove(beanName);
             }
+            this.manualSingletonTypeIndex.remove(beanName);
+            indexBeanDefinition(beanName);
             this.frozenBeanDefinitionNames = null;
         }
 
@@ -757,6 +913,135 @@ public class DefaultListableBeanFactory extends AbstractAutowireCapableBeanFacto
         }
     }
 
+    @Override
+    public void registerBeanDefinitions(Map<String, ? extends BeanDefinition> beanDefinitions)
+            throws BeanDefinitionStoreException {
+
+        Assert.notNull(beanDefinitions, "BeanDefinition map must not be null");
+        if (beanDefinitions.isEmpty()) {
+            return;
+        }
+
+        // Validate the entire batch before registering any of its definitions.
+        for (Map.Entry<String, ? extends BeanDefinition> entry : beanDefinitions.entrySet()) {
+            String beanName = entry.getKey();
+            BeanDefinition beanDefinition = entry.getValue();
+            Assert.hasText(beanName, "Bean name must not be empty");
+            Assert.notNull(beanDefinition, "BeanDefinition must not be null");
+            validateBeanDefinition(beanName, beanDefinition);
+            BeanDefinition existingDefinition = this.beanDefinitionMap.get(beanName);
+            if (existingDefinition != null) {
+                checkBeanDefinitionOverride(beanName, beanDefinition, existingDefinition);
+            }
+        }
+
+        List<String> newBeanNames = new ArrayList<String>(beanDefinitions.size());
+        List<String> namesToReset = new ArrayList<String>();
+        synchronized (this.beanDefinitionMap) {
+            for (Map.Entry<String, ? extends BeanDefinition> entry : beanDefinitions.entrySet()) {
+                String beanName = entry.getKey();
+                if (this.beanDefinitionMap.put(beanName, entry.getValue()) != null) {
+                    namesToReset.add(beanName);
+                }
+                else {
+                    newBeanNames.add(beanName);
+                    if (containsSingleton(beanName)) {
+                        namesToReset.add(beanName);
+                    }
+                }
+            }
+            if (!newBeanNames.isEmpty()) {
+                if (hasBeanCreationStarted()) {
+                    // Cannot modify startup-time collection elements anymore (for stable iteration):
+                    // publish a single copy for the entire batch.
+                    List<String> updatedDefinitions =
+                            new ArrayList<String>(this.beanDefinitionNames.size() + newBeanNames.size());
+                    updatedDefinitions.addAll(this.beanDefinitionNames);
+                    updatedDefinitions.addAll(newBeanNames);
+                    Set<String> updatedSingletons = null;
+                    for (String beanName : newBeanNames) {
+                        if (this.manualSingletonNames.contains(beanName)) {
+                            if (updatedSingletons == null) {
+                                updatedSingletons = new LinkedHashSet<String>(this.manualSingletonNames);
+                            }
+                            updatedSingletons.remove(beanName);
+                        }
+                    }
+                    this.beanDefinitionNames = updatedDefinitions;
+                    if (updatedSingletons != null) {
+                        this.manualSingletonNames = updatedSingletons;
+                    }
+                }
+                else {
+                    // Still in startup registration phase
+                    this.beanDefinitionNames.addAll(newBeanNames);
+                    this.manualSingletonNames.removeAll(newBeanNames);
+                }
+                this.frozenBeanDefinitionNames = null;
+            }
+        }
+
+        for (String beanName : beanDefinitions.keySet()) {
+            this.manualSingletonTypeIndex.remove(beanName);
+            indexBeanDefinition(beanName);
+        }
+        for (String beanName : namesToReset) {
+            resetBeanDefinition(beanName);
+        }
+        clearByTypeCache();
+    }
+
+    /**
+     * Validate the given bean definition before registering it.
+     */
+    private void validateBeanDefinition(String beanName, BeanDefinition beanDefinition) {
+        if (beanDefinition instanceof AbstractBeanDefinition) {
+            try {
+                ((AbstractBeanDefinition) beanDefinition).validate();
+            }
+            catch (BeanDefinitionValidationException ex) {
+                throw new BeanDefinitionStoreException(beanDefinition.getResourceDescription(), beanName,
+                        "Validation of bean definition failed", ex);
+            }
+        }
+    }
+
+    /**
+     * Check whether the given bean definition may override the existing one,
+     * logging the override if allowed.
+     */
+    private void checkBeanDefinitionOverride(String beanName, BeanDefinition beanDefinition,
+                                             BeanDefinition existingDefinition) {
+
+        if (!isAllowBeanDefinitionOverriding()) {
+            throw new BeanDefinitionStoreException(beanDefinition.getResourceDescription(), beanName,
+                    "Cannot register bean definition [" + beanDefinition + "] for bean '" + beanName +
+                            "': There is already [" + existingDefinition + "] bound.");
+        }
+        else if (existingDefinition.getRole() < beanDefinition.getRole()) {
+            // e.g. was ROLE_APPLICATION, now overriding with ROLE_SUPPORT or ROLE_INFRASTRUCTURE
+            if (logger.isWarnEnabled()) {
+                logger.warn("Overriding user-defined bean definition for bean '" + beanName +
+                        "' with a framework-generated bean definition: replacing [" +
+                        existingDefinition + "] with [" + beanDefinition + "]");
+            }
+        }
+        else if (!beanDefinition.equals(existingDefinition)) {
+            if (logger.isInfoEnabled()) {
+                logger.info("Overriding bean definition for bean '" + beanName +
+                        "' with a different definition: replacing [" + existingDefinition +
+                        "] with [" + beanDefinition + "]");
+            }
+        }
+        else {
+            if (logger.isDebugEnabled()) {
+                logger.debug("Overriding bean definition for bean '" + beanName +
+                        "' with an equivalent definition: replacing [" + existingDefinition +
+                        "] with [" + beanDefinition + "]");
+            }
+        }
+    }
+
     @Override
     public void removeBeanDefinition(String beanName) throws NoSuchBeanDefinitionException {
         Assert.hasText(beanName, "'beanName' must not be empty");
@@ -781,6 +1066,7 @@ public class DefaultListableBeanFactory extends AbstractAutowireCapableBeanFacto
             // Still in startup registration phase
             this.beanDefinitionNames.remove(beanName);
         }
+        this.beanDefinitionTypeIndex.remove(beanName);
         this.frozenBeanDefinitionNames = null;
 
         resetBeanDefinition(beanName);
@@ -831,6 +1117,7 @@ public class DefaultListableBeanFactory extends AbstractAutowireCapableBeanFacto
                     updatedSingletons.addAll(this.manualSingletonNames);
                     updatedSingletons.add(beanName);
                     this.manualSingletonNames = updatedSingletons;
+                    this.manualSingletonTypeIndex.register(beanName, indexableType(singletonObject));
                 }
             }
         }
@@ -838,6 +1125,7 @@ public class DefaultListableBeanFactory extends AbstractAutowireCapableBeanFacto
             // Still in startup registration phase
             if (!this.beanDefinitionMap.containsKey(beanName)) {
                 this.manualSingletonNames.add(beanName);
+                this.manualSingletonTypeIndex.register(beanName, indexableType(singletonObject));
             }
         }
 
@@ -848,6 +1136,7 @@ public class DefaultListableBeanFactory extends AbstractAutowireCapableBeanFacto
     public void destroySingleton(String beanName) {
         super.destroySingleton(beanName);
         this.manualSingletonNames.remove(beanName);
+        this.manualSingletonTypeIndex.remove(beanName);
         clearByTypeCache();
     }
 
@@ -855,15 +1144,120 @@ public class DefaultListableBeanFactory extends AbstractAutowireCapableBeanFacto
     public void destroySingletons() {
         super.destroySingletons();
         this.manualSingletonNames.clear();
+        this.manualSingletonTypeIndex.clear();
         clearByTypeCache();
     }
 
     /**
-     * Remove any assumptions about by-type mappings.
+     * Additionally index a newly created singleton under its actual instance type,
+     * which may differ from the type derived from its bean definition (e.g. for
+     * a proxy returned by a post-processor or a factory method's actual result).
+     */
+    @Override
+    protected void addSingleton(String beanName, Object singletonObject) {
+        super.addSingleton(beanName, singletonObject);
+        if (singletonObject != null && this.beanDefinitionTypeIndex.contains(beanName)) {
+            Class<?> instanceType = indexableType(singletonObject);
+            if (instanceType == null) {
+                this.beanDefinitionTypeIndex.register(beanName, null);
+            }
+            else if (!this.beanDefinitionTypeIndex.isIndexed(beanName)) {
+                this.beanDefinitionTypeIndex.register(beanName, instanceType);
+            }
+            else {
+                this.beanDefinitionTypeIndex.addType(beanName, instanceType);
+            }
+        }
+    }
+
+    /**
+     * Fall back to the type derived from the bean definition once a singleton is gone.
+     */
+    @Override
+    protected void removeSingleton(String beanName) {
+        super.removeSingleton(beanName);
+        if (this.beanDefinitionTypeIndex.contains(beanName)) {
+            indexBeanDefinition(beanName);
+        }
+    }
+
+    @Override
+    protected void clearSingletonCache() {
+        super.clearSingletonCache();
+        for (String beanName : this.beanDefinitionNames) {
+            indexBeanDefinition(beanName);
+        }
+    }
+
+    /**
+     * (Re-)index the given bean definition under its statically known bean class.
+     * <p>Only plain bean definitions get indexed: definitions with a parent,
+     * a factory method, a target type, a decorated definition or a bean class
+     * that has not been resolved yet, as well as FactoryBean definitions, need
+     * to be resolved by the regular type matching algorithm for every lookup.
+     * @param beanName the name of the bean
+     */
+    private void indexBeanDefinition(String beanName) {
+        BeanDefinition bd = this.beanDefinitionMap.get(beanName);
+        if (bd == null) {
+            return;
+        }
+        Class<?> beanType = null;
+        if (bd instanceof AbstractBeanDefinition) {
+            AbstractBeanDefinition abd = (AbstractBeanDefinition) bd;
+            if (abd.hasBeanClass() && abd.getParentName() == null && abd.getFactoryMethodName() == null &&
+                    !abd.isAbstract() && !FactoryBean.class.isAssignableFrom(abd.getBeanClass())) {
+                beanType = abd.getBeanClass();
+            }
+            if (abd instanceof RootBeanDefinition) {
+                RootBeanDefinition rbd = (RootBeanDefinition) abd;
+                if (rbd.getTargetType() != null || rbd.getDecoratedDefinition() != null) {
+                    beanType = null;
+                }
+            }
+        }
+        this.beanDefinitionTypeIndex.register(beanName, beanType);
+    }
+
+    /**
+     * Determine the type to index the given singleton instance under,
+     * or {@code null} if it needs to be checked for any type (i.e. for a FactoryBean).
+     */
+    private static Class<?> indexableType(Object singletonObject) {
+        if (singletonObject == null || singletonObject instanceof FactoryBean) {
+            return null;
+        }
+        return singletonObject.getClass();
+    }
+
+    /**
+     * Return the cache of by-type lookup results, for metadata snapshots.
+     */
+    Map<Class<?>, String[]> getBeanNamesByTypeCache(boolean includeNonSingletons) {
+        return (includeNonSingletons ? this.allBeanNamesByType : this.singletonBeanNamesByType);
+    }
+
+    /**
+     * Return the names of manually registered singletons, for metadata snapshots.
+     */
+    Set<String> getManualSingletonNames() {
+        return this.manualSingletonNames;
+    }
+
+    /**
+     * Remove any assumptions about by-type mappings,
+     * including the autowire candidates resolved from them.
      */
     private void clearByTypeCache() {
         this.allBeanNamesByType.clear();
         this.singletonBeanNamesByType.clear();
+        clearAutowireCandidateCache();
+    }
+
+    private void clearAutowireCandidateCache() {
+        this.autowireCandidateGeneration.incrementAndGet();
+        this.autowireCandidateCache.clear();
+        this.multipleCandidateCache.clear();
     }
 
 
@@ -968,6 +1362,20 @@ public class DefaultListableBeanFactory extends AbstractAutowireCapableBeanFacto
             }
 
             Class<?> type = descriptor.getDependencyType();
+            AutowireCandidateCacheKey cacheKey = null;
+            if (this.configurationFrozen) {
+                // Candidate discovery yields the same result for every resolution of this
+                // injection point as long as the configuration does not change.
+                cacheKey = new AutowireCandidateCacheKey(descriptor, beanName);
+                String cachedBeanName = this.autowireCandidateCache.get(cacheKey);
+                if (cachedBeanName != null) {
+                    if (autowiredBeanNames != null) {
+                        autowiredBeanNames.add(cachedBeanName);
+                    }
+                    return descriptor.resolveCandidate(cachedBeanName, type, this);
+                }
+            }
+
             Object value = getAutowireCandidateResolver().getSuggestedValue(descriptor);
             if (value != null) {
                 if (value instanceof String) {
@@ -1022,6 +1430,10 @@ public class DefaultListableBeanFactory extends AbstractAutowireCapableBeanFacto
             if (autowiredBeanNames != null) {
                 autowiredBeanNames.add(autowiredBeanName);
             }
+            if (cacheKey != null && containsBean(autowiredBeanName)) {
+                // Not for resolvable dependencies, which are registered under their identity string.
+                this.autowireCandidateCache.put(cacheKey, autowiredBeanName);
+            }
             return (instanceCandidate instanceof Class ?
                     descriptor.resolveCandidate(autowiredBeanName, type, this) : instanceCandidate);
         }
@@ -1045,6 +1457,9 @@ public class DefaultListableBeanFactory extends AbstractAutowireCapableBeanFacto
             if (componentType == null) {
                 return null;
             }
+            if (this.configurationFrozen && !componentType.isPrimitive()) {
+                return resolveFrozenMultipleBeans(descriptor, beanName, autowiredBeanNames, type, componentType);
+            }
             Map<String, Object> matchingBeans = findAutowireCandidates(beanName, componentType,
                     new MultiElementDescriptor(descriptor));
             if (matchingBeans.isEmpty()) {
@@ -1065,6 +1480,9 @@ public class DefaultListableBeanFactory extends AbstractAutowireCapableBeanFacto
             if (elementType == null) {
                 return null;
             }
+            if (this.configurationFrozen && (type == Collection.class || type == List.class || type == Set.class)) {
+                return resolveFrozenMultipleBeans(descriptor, beanName, autowiredBeanNames, type, elementType);
+            }
             Map<String, Object> matchingBeans = findAutowireCandidates(beanName, elementType,
                     new MultiElementDescriptor(descriptor));
             if (matchingBeans.isEmpty()) {
@@ -1090,6 +1508,9 @@ public class DefaultListableBeanFactory extends AbstractAutowireCapableBeanFacto
             if (valueType == null) {
                 return null;
             }
+            if (this.configurationFrozen) {
+                return resolveFrozenMultipleBeans(descriptor, beanName, autowiredBeanNames, type, valueType);
+            }
             Map<String, Object> matchingBeans = findAutowireCandidates(beanName, valueType,
                     new MultiElementDescriptor(descriptor));
             if (matchingBeans.isEmpty()) {
@@ -1105,6 +1526,99 @@ public class DefaultListableBeanFactory extends AbstractAutowireCapableBeanFacto
         }
     }
 
+    /**
+     * Resolve a collection, array or map of beans for a frozen configuration, based on
+     * the ordered candidate names cached for the given injection point. The result
+     * is an unmodifiable collection or map (or a new array) holding the candidate
+     * instances, without going through type conversion; if all candidates are
+     * singletons, the result itself is cached and shared between injections.
+     */
+    private Object resolveFrozenMultipleBeans(DependencyDescriptor descriptor, String beanName,
+                                              Set<String> autowiredBeanNames, Class<?> type, Class<?> elementType) {
+
+        AutowireCandidateCacheKey cacheKey = new AutowireCandidateCacheKey(descriptor, beanName);
+        MultipleCandidates cached = this.multipleCandidateCache.get(cacheKey);
+        String[] candidateNames;
+        Object result;
+        if (cached != null) {
+            candidateNames = cached.candidateNames;
+            result = cached.sharedResult;
+            if (result == null) {
+                DependencyDescriptor elementDescriptor = new MultiElementDescriptor(descriptor);
+                Object[] candidates = new Object[candidateNames.length];
+                for (int i = 0; i < candidateNames.length; i++) {
+                    candidates[i] = elementDescriptor.resolveCandidate(candidateNames[i], elementType, this);
+                }
+                result = createMultipleBeansResult(type, elementType, candidateNames, candidates);
+            }
+            else if (type.isArray()) {
+                result = ((Object[]) result).clone();
+            }
+        }
+        else {
+            final Map<String, Object> matchingBeans =
+                    findAutowireCandidates(beanName, elementType, new MultiElementDescriptor(descriptor));
+            if (matchingBeans.isEmpty()) {
+                return null;
+            }
+            List<String> orderedNames = new ArrayList<String>(matchingBeans.keySet());
+            if (getDependencyComparator() != null && Map.class != type) {
+                final Comparator<Object> comparator = adaptDependencyComparator(matchingBeans);
+                Collections.sort(orderedNames, new Comparator<String>() {
+                    @Override
+                    public int compare(String name1, String name2) {
+                        return comparator.compare(matchingBeans.get(name1), matchingBeans.get(name2));
+                    }
+                });
+            }
+            candidateNames = StringUtils.toStringArray(orderedNames);
+            Object[] candidates = new Object[candidateNames.length];
+            boolean cacheable = true;
+            boolean shareable = true;
+            for (int i = 0; i < candidateNames.length; i++) {
+                String candidateName = candidateNames[i];
+                candidates[i] = matchingBeans.get(candidateName);
+                // Resolvable dependencies are not registered under a bean name.
+                cacheable = (cacheable && containsBean(candidateName));
+                shareable = (shareable && cacheable && isSingleton(candidateName) &&
+                        !isSingletonCurrentlyInCreation(transformedBeanName(candidateName)));
+            }
+            result = createMultipleBeansResult(type, elementType, candidateNames, candidates);
+            if (cacheable) {
+                this.multipleCandidateCache.put(cacheKey, new MultipleCandidates(candidateNames,
+                        (shareable ? (type.isArray() ? ((Object[]) result).clone() : result) : null)));
+            }
+        }
+
+        if (autowiredBeanNames != null) {
+            Collections.addAll(autowiredBeanNames, candidateNames);
+        }
+        return result;
+    }
+
+    private Object createMultipleBeansResult(Class<?> type, Class<?> elementType,
+                                             String[] candidateNames, Object[] candidates) {
+
+        if (type.isArray()) {
+            Object array = Array.newInstance(elementType, candidates.length);
+            System.arraycopy(candidates, 0, array, 0, candidates.length);
+            return array;
+        }
+        else if (Map.class == type) {
+            Map<String, Object> map = new LinkedHashMap<String, Object>((int) (candidates.length / 0.75f) + 1);
+            for (int i = 0; i < candidates.length; i++) {
+                map.put(candidateNames[i], candidates[i]);
+            }
+            return Collections.unmodifiableMap(map);
+        }
+        else if (Set.class == type) {
+            return Collections.unmodifiableSet(new LinkedHashSet<Object>(Arrays.asList(candidates)));
+        }
+        else {
+            return Collections.unmodifiableList(Arrays.asList(candidates));
+        }
+    }
+
     private boolean isRequired(DependencyDescriptor descriptor) {
         AutowireCandidateResolver resolver = getAutowireCandidateResolver();
         return (resolver instanceof SimpleAutowireCandidateResolver ?
@@ -1421,6 +1935,63 @@ public class DefaultListableBeanFactory extends AbstractAutowireCapableBeanFacto
     }
 
 
+    /**
+     * Cache key for a resolved autowire candidate: the injection point,
+     * as described by the dependency descriptor, plus the requesting bean.
+     * <p>Holds a copy of the descriptor, since the caller's descriptor may
+     * subsequently be modified (e.g. through its nesting level).
+     */
+    private static final class AutowireCandidateCacheKey {
+
+        private final Class<?> descriptorClass;
+
+        private final DependencyDescriptor descriptor;
+
+        private final String beanName;
+
+        public AutowireCandidateCacheKey(DependencyDescriptor descriptor, String beanName) {
+            this.descriptorClass = descriptor.getClass();
+            this.descriptor = new DependencyDescriptor(descriptor);
+            this.beanName = beanName;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) {
+                return true;
+            }
+            if (!(other instanceof AutowireCandidateCacheKey)) {
+                return false;
+            }
+            AutowireCandidateCacheKey otherKey = (AutowireCandidateCacheKey) other;
+            return (this.descriptorClass == otherKey.descriptorClass && this.descriptor.equals(otherKey.descriptor) &&
+                    ObjectUtils.nullSafeEquals(this.beanName, otherKey.beanName));
+        }
+
+        @Override
+        public int hashCode() {
+            return (this.descriptor.hashCode() * 29 + ObjectUtils.nullSafeHashCode(this.beanName));
+        }
+    }
+
+
+    /**
+     * Cached resolution of a collection, array or map injection point: the ordered
+     * candidate names plus the shared result in case of singleton candidates only.
+     */
+    private static final class MultipleCandidates {
+
+        final String[] candidateNames;
+
+        final Object sharedResult;
+
+        MultipleCandidates(String[] candidateNames, Object sharedResult) {
+            this.candidateNames = candidateNames;
+            this.sharedResult = sharedResult;
+        }
+    }
+
+
     /**
      * A dependency descriptor marker for nested elements.
      */
@@ -1478,6 +2049,8 @@ public class DefaultListableBeanFactory extends AbstractAutowireCapableBeanFacto
 
         private final String beanName;
 
+        private transient volatile ResolvedTarget resolvedTarget;
+
         public DependencyObjectProvider(DependencyDescriptor descriptor, String beanName) {
             this.descriptor = new NestedDependencyDescriptor(descriptor);
             this.optional = (this.descriptor.getDependencyType() == javaUtilOptionalClass);
@@ -1490,7 +2063,7 @@ public class DefaultListableBeanFactory extends AbstractAutowireCapableBeanFacto
                 return new OptionalDependencyFactory().createOptionalDependency(this.descriptor, this.beanName);
             }
             else {
-                return doResolveDependency(this.descriptor, this.beanName, null, null);
+                return resolveTarget(this.descriptor);
             }
         }
 
@@ -1522,7 +2095,7 @@ public class DefaultListableBeanFactory extends AbstractAutowireCapableBeanFacto
                         return false;
                     }
                 };
-                return doResolveDependency(descriptorToUse, this.beanName, null, null);
+                return resolveTarget(descriptorToUse);
             }
         }
 
@@ -1542,8 +2115,177 @@ public class DefaultListableBeanFactory extends AbstractAutowireCapableBeanFacto
                 return new OptionalDependencyFactory().createOptionalDependency(descriptorToUse, this.beanName);
             }
             else {
+                return resolveTarget(descriptorToUse);
+            }
+        }
+
+        /**
+         * Resolve the target bean through the given descriptor. For a frozen configuration,
+         * the name of the target bean is memoized, with subsequent calls going straight
+         * to the bean until the factory's autowire candidates change.
+         */
+        private Object resolveTarget(DependencyDescriptor descriptorToUse) {
+            ResolvedTarget resolvedTarget = this.resolvedTarget;
+            if (resolvedTarget != null && resolvedTarget.generation == autowireCandidateGeneration.get()) {
+                InjectionPoint previousInjectionPoint = ConstructorResolver.setCurrentInjectionPoint(descriptorToUse);
+                try {
+                    return descriptorToUse.resolveCandidate(resolvedTarget.beanName, resolvedTarget.requiredType,
+                            DefaultListableBeanFactory.this);
+                }
+                finally {
+                    ConstructorResolver.setCurrentInjectionPoint(previousInjectionPoint);
+                }
+            }
+            Class<?> requiredType = descriptorToUse.getDependencyType();
+            if (!configurationFrozen || indicatesMultipleBeans(requiredType)) {
                 return doResolveDependency(descriptorToUse, this.beanName, null, null);
             }
+            long generation = autowireCandidateGeneration.get();
+            Set<String> autowiredBeanNames = new LinkedHashSet<String>(2);
+            Object result = doResolveDependency(descriptorToUse, this.beanName, autowiredBeanNames, null);
+            if (result != null && autowiredBeanNames.size() == 1) {
+                String autowiredBeanName = autowiredBeanNames.iterator().next();
+                if (containsBean(autowiredBeanName)) {
+                    this.resolvedTarget = new ResolvedTarget(autowiredBeanName, requiredType, generation);
+                }
+            }
+            return result;
+        }
+
+        @Override
+        public Iterator<Object> iterator() {
+            return new CandidateIterator(this.descriptor, this.beanName);
+        }
+
+        @Override
+        @UsesJava8
+        public Stream<Object> stream() {
+            CandidateIterator iterator = new CandidateIterator(this.descriptor, this.beanName);
+            return StreamSupport.stream(Spliterators.spliterator(
+                    iterator, iterator.size(), Spliterator.ORDERED | Spliterator.NONNULL), false);
+        }
+
+        @Override
+        @UsesJava8
+        public Stream<Object> orderedStream() {
+            CandidateIterator iterator = new CandidateIterator(this.descriptor, this.beanName);
+            Map<String, Object> matchingBeans = new LinkedHashMap<String, Object>(iterator.size() * 2);
+            while (iterator.hasNext()) {
+                Object candidate = iterator.next();
+                matchingBeans.put(iterator.currentName(), candidate);
+            }
+            List<Object> result = new ArrayList<Object>(matchingBeans.values());
+            if (getDependencyComparator() != null && result.size() > 1) {
+                Collections.sort(result, adaptDependencyComparator(matchingBeans));
+            }
+            return result.stream();
+        }
+    }
+
+
+    /**
+     * Target bean memoized by a DependencyObjectProvider, valid for a specific
+     * generation of the factory's autowire candidates.
+     */
+    private static final class ResolvedTarget {
+
+        final String beanName;
+
+        final Class<?> requiredType;
+
+        final long generation;
+
+        ResolvedTarget(String beanName, Class<?> requiredType, long generation) {
+            this.beanName = beanName;
+            this.requiredType = requiredType;
+            this.generation = generation;
+        }
+    }
+
+
+    /**
+     * Iterator over the autowire candidates for a dependency descriptor's type: the
+     * candidate names get determined upfront from the type index, whereas the beans
+     * themselves only get obtained on {@link #next()}.
+     */
+    private class CandidateIterator implements Iterator<Object> {
+
+        private final DependencyDescriptor descriptor;
+
+        private final Class<?> requiredType;
+
+        private final List<Object> resolvableValues = new ArrayList<Object>(1);
+
+        private final List<String> candidateNames;
+
+        private int index = 0;
+
+        private String currentName;
+
+        public CandidateIterator(DependencyDescriptor descriptor, String beanName) {
+            this.descriptor = descriptor;
+            this.requiredType = descriptor.getDependencyType();
+            for (Class<?> autowiringType : resolvableDependencies.keySet()) {
+                if (autowiringType.isAssignableFrom(this.requiredType)) {
+                    Object autowiringValue = AutowireUtils.resolveAutowiringValue(
+                            resolvableDependencies.get(autowiringType), this.requiredType);
+                    if (this.requiredType.isInstance(autowiringValue)) {
+                        this.resolvableValues.add(autowiringValue);
+                        break;
+                    }
+                }
+            }
+            String[] names = BeanFactoryUtils.beanNamesForTypeIncludingAncestors(
+                    DefaultListableBeanFactory.this, this.requiredType, true, descriptor.isEager());
+            this.candidateNames = new ArrayList<String>(names.length);
+            for (String candidate : names) {
+                if (!isSelfReference(beanName, candidate) && isAutowireCandidate(candidate, this.descriptor)) {
+                    this.candidateNames.add(candidate);
+                }
+            }
+        }
+
+        public int size() {
+            return this.resolvableValues.size() + this.candidateNames.size();
+        }
+
+        /**
+         * Return the name under which the last returned candidate is registered.
+         */
+        public String currentName() {
+            return this.currentName;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return (this.index < size());
+        }
+
+        @Override
+        public Object next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            int current = this.index++;
+            if (current < this.resolvableValues.size()) {
+                Object value = this.resolvableValues.get(current);
+                this.currentName = ObjectUtils.identityToString(value);
+                return value;
+            }
+            this.currentName = this.candidateNames.get(current - this.resolvableValues.size());
+            InjectionPoint previousInjectionPoint = ConstructorResolver.setCurrentInjectionPoint(this.descriptor);
+            try {
+                return this.descriptor.resolveCandidate(this.currentName, this.requiredType,
+                        DefaultListableBeanFactory.this);
+            }
+            finally {
+                ConstructorResolver.setCurrentInjectionPoint(previousInjectionPoint);
+            }
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("remove");
         }
     }
 
@@ -4,24 +4,51 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.myspring.beans.factory.*;
 import org.myspring.beans.factory.config.SingletonBeanRegistry;
+import org.myspring.core.NamedThreadLocal;
 import org.myspring.core.SimpleAliasRegistry;
 import org.myspring.core.util.Assert;
 import org.myspring.core.util.StringUtils;
 
 import java.util.*;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
 
 public class DefaultSingletonBeanRegistry  extends SimpleAliasRegistry implements SingletonBeanRegistry {
 
     protected static final Object NULL_OBJECT = new Object();
+
+    /** Interval for re-checking a blocked singleton creation for a cross-thread deadlock */
+    private static final long DEADLOCK_CHECK_INTERVAL_MILLIS = 50;
+
     protected final Log logger = LogFactory.getLog(getClass());
     private final Map<String, Object> singletonObjects = new ConcurrentHashMap<String, Object>(256);
 
     /** Cache of singleton factories: bean name --> ObjectFactory */
-    private final Map<String, ObjectFactory<?>> singletonFactories = new HashMap<String, ObjectFactory<?>>(16);
+    private final Map<String, ObjectFactory<?>> singletonFactories = new ConcurrentHashMap<String, ObjectFactory<?>>(16);
 
     /** Cache of early singleton objects: bean name --> bean instance */
-    private final Map<String, Object> earlySingletonObjects = new HashMap<String, Object>(16);
+    private final Map<String, Object> earlySingletonObjects = new ConcurrentHashMap<String, Object>(16);
+
+    /** Creation locks for singletons: bean name --> lock held while creating the bean */
+    private final ConcurrentMap<String, SingletonLock> singletonLocks = new ConcurrentHashMap<String, SingletonLock>(256);
+
+    /** Threads blocked on a singleton creation lock: thread --> awaited bean */
+    private final Map<Thread, SingletonLockWait> singletonLockWaits = new ConcurrentHashMap<Thread, SingletonLockWait>(16);
+
+    /** Singletons whose initialization has been handed off to the background: bean name --> initialization */
+    private final Map<String, BackgroundInitialization> singletonsInBackgroundInitialization =
+            new ConcurrentHashMap<String, BackgroundInitialization>(16);
+
+    /** Background initializations that nobody has awaited the outcome of yet */
+    private final List<BackgroundInitialization> unawaitedBackgroundInitializations =
+            new LinkedList<BackgroundInitialization>();
 
     /** Set of registered singletons, containing the bean names in registration order */
     private final Set<String> registeredSingletons = new LinkedHashSet<String>(256);
@@ -35,9 +62,20 @@ public class DefaultSingletonBeanRegistry  extends SimpleAliasRegistry implement
             Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>(16));
 
     /** List of suppressed Exceptions, available for associating related causes */
-    private Set<Exception> suppressedExceptions;
+    private final ThreadLocal<Set<Exception>> suppressedExceptions =
+            new NamedThreadLocal<Set<Exception>>("Suppressed exceptions during singleton creation");
+
     /** Flag that indicates whether we're currently within destroySingletons */
-    private boolean singletonsCurrentlyInDestruction = false;
+    private volatile boolean singletonsCurrentlyInDestruction = false;
+
+    /** Whether to destroy independent singletons concurrently */
+    private volatile boolean parallelDestruction = false;
+
+    /** Number of threads for concurrent destruction, 0 for the number of processors */
+    private volatile int destructionParallelism = 0;
+
+    /** Deadline for concurrent destruction in milliseconds, 0 for none */
+    private volatile long destructionTimeout = 0;
 
     /** Disposable bean instances: bean name --> disposable instance */
     private final Map<String, Object> disposableBeans = new LinkedHashMap<String, Object>();
@@ -50,6 +88,65 @@ public class DefaultSingletonBeanRegistry  extends SimpleAliasRegistry implement
 
     /** Map between depending bean names: bean name --> Set of bean names for the bean's dependencies */
     private final Map<String, Set<String>> dependenciesForBeanMap = new ConcurrentHashMap<String, Set<String>>(64);
+    /**
+     * Set whether {@link #destroySingletons()} should destroy independent singletons
+     * concurrently, following the dependent and contained bean relationships: a bean
+     * still only gets destroyed after all beans depending on it. Beans taking part in
+     * a dependency cycle are still destroyed serially.
+     * <p>Default is "false": singletons are destroyed one by one, in reverse
+     * registration order.
+     * @see #setDestructionParallelism
+     * @see #setDestructionTimeout
+     */
+    public void setParallelDestruction(boolean parallelDestruction) {
+        this.parallelDestruction = parallelDestruction;
+    }
+
+    /**
+     * Return whether independent singletons get destroyed concurrently.
+     */
+    public boolean isParallelDestruction() {
+        return this.parallelDestruction;
+    }
+
+    /**
+     * Set the number of threads to use for concurrent destruction.
+     * <p>Default is 0, indicating the number of available processors.
+     * @see #setParallelDestruction
+     */
+    public void setDestructionParallelism(int destructionParallelism) {
+        Assert.isTrue(destructionParallelism >= 0, "Parallelism must not be negative");
+        this.destructionParallelism = destructionParallelism;
+    }
+
+    /**
+     * Return the number of threads to use for concurrent destruction
+     * (0 indicating the number of available processors).
+     */
+    public int getDestructionParallelism() {
+        return this.destructionParallelism;
+    }
+
+    /**
+     * Set the overall time that concurrent destruction may take, in milliseconds.
+     * Once it has passed, {@link #destroySingletons()} stops waiting for beans still
+     * being destroyed, skips the remaining ones and logs a report listing both.
+     * <p>Default is 0, indicating no deadline. Only applies to concurrent destruction.
+     * @see #setParallelDestruction
+     */
+    public void setDestructionTimeout(long destructionTimeout) {
+        Assert.isTrue(destructionTimeout >= 0, "Timeout must not be negative");
+        this.destructionTimeout = destructionTimeout;
+    }
+
+    /**
+     * Return the overall time that concurrent destruction may take
+     * (0 indicating no deadline).
+     */
+    public long getDestructionTimeout() {
+        return this.destructionTimeout;
+    }
+
     @Override
     public void registerSingleton(String beanName, Object singletonObject) throws IllegalStateException {
         Assert.notNull(beanName, "'beanName' must not be null");
@@ -87,27 +184,95 @@ public class DefaultSingletonBeanRegistry  extends SimpleAliasRegistry implement
         return getSingleton(beanName, true);
     }
 
+    /**
+     * Return the (raw) singleton object registered under the given name.
+     * <p>Checks already instantiated singletons and also allows for an early
+     * reference to a currently created singleton (resolving a circular reference).
+     * Early references only get exposed to the thread that is creating the bean;
+     * other threads will wait for the fully initialized singleton instead.
+     * @param beanName the name of the bean to look for
+     * @param allowEarlyReference whether early references should be created or not
+     * @return the registered singleton object, or {@code null} if none found
+     */
     protected Object getSingleton(String beanName, boolean allowEarlyReference) {
         Object singletonObject = this.singletonObjects.get(beanName);
-        if (singletonObject == null && isSingletonCurrentlyInCreation(beanName)) {
-            synchronized (this.singletonObjects) {
-                singletonObject = this.earlySingletonObjects.get(beanName);
-                if (singletonObject == null && allowEarlyReference) {
-                    ObjectFactory<?> singletonFactory = this.singletonFactories.get(beanName);
-                    if (singletonFactory != null) {
+        if (singletonObject == null) {
+            if (isSingletonCurrentlyInCreation(beanName)) {
+                if (allowEarlyReference && !isSingletonLockHeldByCurrentThread(beanName)) {
+                    return null;
+                }
+                singletonObject = getEarlySingletonReference(beanName, allowEarlyReference);
+            }
+            else if (!this.singletonsInBackgroundInitialization.isEmpty()) {
+                BackgroundInitialization backgroundInit = this.singletonsInBackgroundInitialization.get(beanName);
+                if (backgroundInit != null) {
+                    if (backgroundInit.isInitializingThread()) {
+                        singletonObject = getEarlySingletonReference(beanName, allowEarlyReference);
+                    }
+                    else if (allowEarlyReference) {
+                        // A regular request for the bean: wait for the fully initialized singleton.
+                        singletonObject = backgroundInit.await();
+                    }
+                }
+            }
+        }
+        return (singletonObject != NULL_OBJECT ? singletonObject : null);
+    }
+
+    private Object getEarlySingletonReference(String beanName, boolean allowEarlyReference) {
+        Object singletonObject = this.earlySingletonObjects.get(beanName);
+        if (singletonObject == null && allowEarlyReference) {
+            ObjectFactory<?> singletonFactory = this.singletonFactories.get(beanName);
+            if (singletonFactory != null) {
+                // Make sure that the early reference is only obtained once.
+                synchronized (singletonFactory) {
+                    singletonObject = this.earlySingletonObjects.get(beanName);
+                    if (singletonObject == null) {
                         singletonObject = singletonFactory.getObject();
                         this.earlySingletonObjects.put(beanName, singletonObject);
-                        this.singletonFactories.remove(beanName);
                     }
+                    this.singletonFactories.remove(beanName);
                 }
             }
         }
-        return (singletonObject != NULL_OBJECT ? singletonObject : null);
+        return singletonObject;
     }
+
+    /**
+     * Return the (raw) singleton object registered under the given name,
+     * creating and registering a new one if none registered yet.
+     * <p>Creation of a singleton is guarded by a lock specific to the bean, so
+     * singletons may be created concurrently by different threads. A thread asking
+     * for a singleton that is currently created by another thread waits for it.
+     * @param beanName the name of the bean
+     * @param singletonFactory the ObjectFactory to lazily create the singleton
+     * with, if necessary
+     * @return the registered singleton object
+     */
     public Object getSingleton(String beanName, ObjectFactory<?> singletonFactory) {
         Assert.notNull(beanName, "'beanName' must not be null");
-        synchronized (this.singletonObjects) {
-            Object singletonObject = this.singletonObjects.get(beanName);
+        Object singletonObject = this.singletonObjects.get(beanName);
+        if (singletonObject == null) {
+            singletonObject = getSingletonFromBackgroundInitialization(beanName);
+        }
+        if (singletonObject != null) {
+            return (singletonObject != NULL_OBJECT ? singletonObject : null);
+        }
+        SingletonLock lock = getSingletonLock(beanName);
+        if (!acquireSingletonLock(beanName, lock, true)) {
+            // Deadlock with another thread creating this bean: resolve it like a circular reference.
+            if (logger.isDebugEnabled()) {
+                logger.debug("Returning early reference to singleton bean '" + beanName +
+                        "' in order to resolve a circular reference across threads");
+            }
+            singletonObject = getEarlySingletonReference(beanName, true);
+            return (singletonObject != NULL_OBJECT ? singletonObject : null);
+        }
+        try {
+            singletonObject = this.singletonObjects.get(beanName);
+            if (singletonObject == null) {
+                singletonObject = getSingletonFromBackgroundInitialization(beanName);
+            }
             if (singletonObject == null) {
                 if (this.singletonsCurrentlyInDestruction) {
                     throw new BeanCreationNotAllowedException(beanName,
@@ -119,9 +284,9 @@ public class DefaultSingletonBeanRegistry  extends SimpleAliasRegistry implement
                 }
                 beforeSingletonCreation(beanName);
                 boolean newSingleton = false;
-                boolean recordSuppressedExceptions = (this.suppressedExceptions == null);
+                boolean recordSuppressedExceptions = (this.suppressedExceptions.get() == null);
                 if (recordSuppressedExceptions) {
-                    this.suppressedExceptions = new LinkedHashSet<Exception>();
+                    this.suppressedExceptions.set(new LinkedHashSet<Exception>());
                 }
                 try {
                     singletonObject = singletonFactory.getObject();
@@ -137,7 +302,7 @@ public class DefaultSingletonBeanRegistry  extends SimpleAliasRegistry implement
                 }
                 catch (BeanCreationException ex) {
                     if (recordSuppressedExceptions) {
-                        for (Exception suppressedException : this.suppressedExceptions) {
+                        for (Exception suppressedException : this.suppressedExceptions.get()) {
                             ex.addRelatedCause(suppressedException);
                         }
                     }
@@ -145,23 +310,280 @@ public class DefaultSingletonBeanRegistry  extends SimpleAliasRegistry implement
                 }
                 finally {
                     if (recordSuppressedExceptions) {
-                        this.suppressedExceptions = null;
+                        this.suppressedExceptions.remove();
                     }
                     afterSingletonCreation(beanName);
+                    if (!newSingleton) {
+                        abandonBackgroundInitialization(beanName);
+                    }
                 }
                 if (newSingleton) {
-                    addSingleton(beanName, singletonObject);
+                    BackgroundInitialization backgroundInit = this.singletonsInBackgroundInitialization.get(beanName);
+                    if (backgroundInit != null && !backgroundInit.isStarted()) {
+                        // Initialization handed off during creation: to be published by the background task.
+                        backgroundInit.start();
+                    }
+                    else {
+                        addSingleton(beanName, singletonObject);
+                    }
                 }
             }
             return (singletonObject != NULL_OBJECT ? singletonObject : null);
         }
+        finally {
+            lock.unlock();
+        }
     }
 
-    protected void onSuppressedException(Exception ex) {
-        synchronized (this.singletonObjects) {
-            if (this.suppressedExceptions != null) {
-                this.suppressedExceptions.add(ex);
+    /**
+     * Return the given singleton once its background initialization has completed,
+     * or its early reference if called by the initializing thread itself.
+     * @return the singleton object, or {@code null} if the bean is not in background initialization
+     */
+    private Object getSingletonFromBackgroundInitialization(String beanName) {
+        if (this.singletonsInBackgroundInitialization.isEmpty()) {
+            return null;
+        }
+        BackgroundInitialization backgroundInit = this.singletonsInBackgroundInitialization.get(beanName);
+        if (backgroundInit == null) {
+            return null;
+        }
+        if (backgroundInit.isInitializingThread()) {
+            Object singletonObject = getEarlySingletonReference(beanName, true);
+            if (singletonObject == null) {
+                throw new BeanCurrentlyInCreationException(beanName);
+            }
+            return singletonObject;
+        }
+        return backgroundInit.await();
+    }
+
+    /**
+     * Hand off the initialization of the given singleton, which is currently
+     * being created, to the given Executor.
+     * <p>The initializer gets executed once the current creation of the singleton
+     * returns. The object it returns is only registered as the singleton when it
+     * completes: until then, threads asking for the singleton wait for it, with the
+     * initializing thread itself receiving the early reference to the bean, if any.
+     * If the initializer fails, the singleton gets destroyed.
+     * @param beanName the name of the singleton
+     * @param initializer the callback returning the fully initialized singleton
+     * @param executor the Executor to run the initializer on
+     * @see #awaitBackgroundInitializations()
+     */
+    protected void initializeSingletonInBackground(String beanName, Callable<?> initializer, Executor executor) {
+        Assert.notNull(initializer, "Initializer must not be null");
+        Assert.notNull(executor, "Executor must not be null");
+        Assert.state(isSingletonCurrentlyInCreation(beanName),
+                "Singleton '" + beanName + "' isn't currently in creation");
+        BackgroundInitialization backgroundInit = new BackgroundInitialization(beanName, initializer, executor);
+        this.singletonsInBackgroundInitialization.put(beanName, backgroundInit);
+        synchronized (this.unawaitedBackgroundInitializations) {
+            this.unawaitedBackgroundInitializations.add(backgroundInit);
+        }
+    }
+
+    /**
+     * Discard a background initialization that has been handed off during a failed creation.
+     */
+    private void abandonBackgroundInitialization(String beanName) {
+        BackgroundInitialization backgroundInit = this.singletonsInBackgroundInitialization.get(beanName);
+        if (backgroundInit != null && !backgroundInit.isStarted()) {
+            this.singletonsInBackgroundInitialization.remove(beanName);
+            backgroundInit.abandon();
+        }
+    }
+
+    /**
+     * Return whether the given singleton's initialization is currently running in the background.
+     * @param beanName the name of the singleton
+     * @see #initializeSingletonInBackground
+     */
+    public boolean isSingletonInBackgroundInitialization(String beanName) {
+        return this.singletonsInBackgroundInitialization.containsKey(beanName);
+    }
+
+    /**
+     * Wait for all background initializations handed off so far to complete.
+     * @throws BeanCreationException if any of them failed
+     * @see #initializeSingletonInBackground
+     */
+    protected void awaitBackgroundInitializations() throws BeanCreationException {
+        BeanCreationException failure = null;
+        while (true) {
+            BackgroundInitialization backgroundInit;
+            synchronized (this.unawaitedBackgroundInitializations) {
+                if (this.unawaitedBackgroundInitializations.isEmpty()) {
+                    break;
+                }
+                backgroundInit = this.unawaitedBackgroundInitializations.remove(0);
+            }
+            try {
+                backgroundInit.await();
+            }
+            catch (BeanCreationException ex) {
+                if (failure == null) {
+                    failure = ex;
+                }
+                else {
+                    failure.addRelatedCause(ex);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Acquire the creation lock for the given singleton, waiting for any other
+     * thread that is currently creating it.
+     * <p>Needs to be followed by a call to {@link #unlockSingleton} in a finally block.
+     * @param beanName the name of the bean
+     * @throws BeanCurrentlyInCreationException if waiting for the lock would
+     * result in a deadlock that cannot be resolved through early references
+     */
+    protected void lockSingleton(String beanName) {
+        acquireSingletonLock(beanName, getSingletonLock(beanName), false);
+    }
+
+    /**
+     * Acquire the creation lock for the given singleton only if it is not held
+     * by another thread at the time of invocation.
+     * @param beanName the name of the bean
+     * @return {@code true} if the lock has been acquired (to be released through
+     * {@link #unlockSingleton}), {@code false} if another thread holds it
+     */
+    protected boolean tryLockSingleton(String beanName) {
+        return getSingletonLock(beanName).tryLock();
+    }
+
+    /**
+     * Release the creation lock for the given singleton.
+     * @param beanName the name of the bean
+     * @see #lockSingleton
+     * @see #tryLockSingleton
+     */
+    protected void unlockSingleton(String beanName) {
+        getSingletonLock(beanName).unlock();
+    }
+
+    private SingletonLock getSingletonLock(String beanName) {
+        SingletonLock lock = this.singletonLocks.get(beanName);
+        if (lock == null) {
+            lock = new SingletonLock();
+            SingletonLock existingLock = this.singletonLocks.putIfAbsent(beanName, lock);
+            if (existingLock != null) {
+                lock = existingLock;
+            }
+        }
+        return lock;
+    }
+
+    private boolean isSingletonLockHeldByCurrentThread(String beanName) {
+        SingletonLock lock = this.singletonLocks.get(beanName);
+        return (lock != null && lock.isHeldByCurrentThread());
+    }
+
+    /**
+     * Acquire the given singleton creation lock, periodically checking whether the
+     * current thread takes part in a cycle of threads waiting for each other's beans.
+     * <p>Such a cycle is the multi-threaded equivalent of a circular reference: it
+     * gets resolved by handing out the early reference to one of the beans involved.
+     * If none of them has exposed an early reference, the deadlock is unresolvable.
+     * @param beanName the name of the bean
+     * @param lock the creation lock for the bean
+     * @param allowEarlyReference whether the caller is able to proceed with an
+     * early reference to the bean instead of acquiring its lock
+     * @return {@code true} if the lock has been acquired, or {@code false} if the
+     * caller is supposed to proceed with the bean's early reference instead
+     */
+    private boolean acquireSingletonLock(String beanName, SingletonLock lock, boolean allowEarlyReference) {
+        if (lock.tryLock()) {
+            return true;
+        }
+        long waitStart = System.nanoTime();
+        Thread currentThread = Thread.currentThread();
+        SingletonLockWait wait = new SingletonLockWait(beanName, allowEarlyReference);
+        this.singletonLockWaits.put(currentThread, wait);
+        try {
+            while (!lock.tryLock(DEADLOCK_CHECK_INTERVAL_MILLIS, TimeUnit.MILLISECONDS)) {
+                List<SingletonLockWait> cycle = findSingletonLockCycle(wait, currentThread);
+                if (cycle != null) {
+                    if (wait.isResolvable()) {
+                        return false;
+                    }
+                    if (!isSingletonLockCycleResolvable(cycle)) {
+                        throw new BeanCurrentlyInCreationException(beanName,
+                                "Deadlock between threads concurrently creating singletons " + cycle +
+                                        ": Is there an unresolvable circular reference?");
+                    }
+                }
+            }
+            return true;
+        }
+        catch (InterruptedException ex) {
+            currentThread.interrupt();
+            throw new BeanCreationException(beanName,
+                    "Interrupted while waiting for singleton creation in another thread", ex);
+        }
+        finally {
+            this.singletonLockWaits.remove(currentThread);
+            afterSingletonLockWait(beanName, System.nanoTime() - waitStart);
+        }
+    }
+
+    /**
+     * Callback after the current thread had to wait for another thread
+     * to release the creation lock of the given singleton.
+     * <p>The default implementation is empty.
+     * @param beanName the name of the singleton
+     * @param waitNanos the time spent waiting, in nanoseconds
+     */
+    protected void afterSingletonLockWait(String beanName, long waitNanos) {
+    }
+
+    /**
+     * Follow the chain of lock owners (or initializing threads, for background
+     * initializations) and the beans they are waiting for, starting at the given
+     * wait of the current thread.
+     * @return the waits in the chain if it leads back to the current thread,
+     * or {@code null} if there is no such cycle
+     */
+    private List<SingletonLockWait> findSingletonLockCycle(SingletonLockWait wait, Thread currentThread) {
+        List<SingletonLockWait> cycle = new ArrayList<SingletonLockWait>(4);
+        Set<Thread> visitedThreads = new HashSet<Thread>(4);
+        while (wait != null) {
+            cycle.add(wait);
+            Thread owner = wait.getOwnerThread();
+            if (owner == null || !visitedThreads.add(owner)) {
+                return null;
+            }
+            if (owner == currentThread) {
+                return cycle;
             }
+            wait = this.singletonLockWaits.get(owner);
+        }
+        return null;
+    }
+
+    /**
+     * Determine whether any thread in the given cycle is going to proceed
+     * with an early reference, breaking the cycle.
+     */
+    private boolean isSingletonLockCycleResolvable(List<SingletonLockWait> cycle) {
+        for (SingletonLockWait waitInCycle : cycle) {
+            if (waitInCycle.isResolvable()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    protected void onSuppressedException(Exception ex) {
+        Set<Exception> suppressedExceptions = this.suppressedExceptions.get();
+        if (suppressedExceptions != null) {
+            suppressedExceptions.add(ex);
         }
     }
 
@@ -324,12 +746,28 @@ public class DefaultSingletonBeanRegistry  extends SimpleAliasRegistry implement
             this.singletonsCurrentlyInDestruction = true;
         }
 
+        // Let pending background initializations settle before destroying their beans.
+        try {
+            awaitBackgroundInitializations();
+        }
+        catch (BeanCreationException ex) {
+            if (logger.isDebugEnabled()) {
+                logger.debug("Background initialization failed before destruction of singletons", ex);
+            }
+        }
+
         String[] disposableBeanNames;
         synchronized (this.disposableBeans) {
             disposableBeanNames = StringUtils.toStringArray(this.disposableBeans.keySet());
         }
-        for (int i = disposableBeanNames.length - 1; i >= 0; i--) {
-            destroySingleton(disposableBeanNames[i]);
+        if (this.parallelDestruction && disposableBeanNames.length > 1) {
+            new ParallelSingletonDestroyer(this, this.destructionParallelism, this.destructionTimeout)
+                    .destroy(disposableBeanNames);
+        }
+        else {
+            for (int i = disposableBeanNames.length - 1; i >= 0; i--) {
+                destroySingleton(disposableBeanNames[i]);
+            }
         }
 
         this.containedBeanMap.clear();
@@ -360,6 +798,33 @@ public class DefaultSingletonBeanRegistry  extends SimpleAliasRegistry implement
         destroyBean(beanName, disposableBean);
     }
 
+    /**
+     * Remove the given singleton along with its DisposableBean instance, leaving
+     * the destruction of the latter and of related beans to the caller.
+     * @param beanName the name of the bean
+     * @return the DisposableBean instance to destroy, or {@code null} if none
+     */
+    DisposableBean removeDisposableSingleton(String beanName) {
+        removeSingleton(beanName);
+        synchronized (this.disposableBeans) {
+            return (DisposableBean) this.disposableBeans.remove(beanName);
+        }
+    }
+
+    /**
+     * Return the names of all beans contained in the given bean, if any.
+     * @param beanName the name of the containing bean
+     */
+    String[] getContainedBeans(String beanName) {
+        Set<String> containedBeans = this.containedBeanMap.get(beanName);
+        if (containedBeans == null) {
+            return new String[0];
+        }
+        synchronized (this.containedBeanMap) {
+            return StringUtils.toStringArray(containedBeans);
+        }
+    }
+
     protected void destroyBean(String beanName, DisposableBean bean) {
         // Trigger destruction of dependent beans first...
         Set<String> dependencies;
@@ -414,8 +879,203 @@ public class DefaultSingletonBeanRegistry  extends SimpleAliasRegistry implement
         this.dependenciesForBeanMap.remove(beanName);
     }
 
+    /**
+     * Exposes the singleton mutex to subclasses and external collaborators.
+     * <p>Note that singleton creation does not synchronize on this mutex but uses
+     * a lock per bean; the mutex just guards registration bookkeeping.
+     */
     public final Object getSingletonMutex() {
         return this.singletonObjects;
     }
 
+
+    /**
+     * A thread waiting for the creation lock of a singleton,
+     * or for the completion of its background initialization.
+     */
+    private class SingletonLockWait {
+
+        private final String beanName;
+
+        private final boolean allowEarlyReference;
+
+        private final BackgroundInitialization backgroundInit;
+
+        public SingletonLockWait(String beanName, boolean allowEarlyReference) {
+            this(beanName, allowEarlyReference, null);
+        }
+
+        public SingletonLockWait(String beanName, boolean allowEarlyReference, BackgroundInitialization backgroundInit) {
+            this.beanName = beanName;
+            this.allowEarlyReference = allowEarlyReference;
+            this.backgroundInit = backgroundInit;
+        }
+
+        /**
+         * Return the thread that the waiting thread depends on, if any.
+         */
+        public Thread getOwnerThread() {
+            if (this.backgroundInit != null) {
+                return this.backgroundInit.initializingThread;
+            }
+            SingletonLock lock = singletonLocks.get(this.beanName);
+            return (lock != null ? lock.getOwnerThread() : null);
+        }
+
+        /**
+         * Whether the waiting thread is able to proceed with an early reference.
+         */
+        public boolean isResolvable() {
+            return (this.allowEarlyReference && (earlySingletonObjects.containsKey(this.beanName) ||
+                    singletonFactories.containsKey(this.beanName)));
+        }
+
+        @Override
+        public String toString() {
+            return this.beanName;
+        }
+    }
+
+
+    /**
+     * The initialization of a singleton running in the background,
+     * publishing the singleton on completion.
+     */
+    private class BackgroundInitialization implements Runnable {
+
+        private final String beanName;
+
+        private final Callable<?> initializer;
+
+        private final Executor executor;
+
+        private final AtomicBoolean started = new AtomicBoolean();
+
+        private final CountDownLatch completion = new CountDownLatch(1);
+
+        private volatile Thread initializingThread;
+
+        private volatile Object singletonObject;
+
+        private volatile Throwable failure;
+
+        public BackgroundInitialization(String beanName, Callable<?> initializer, Executor executor) {
+            this.beanName = beanName;
+            this.initializer = initializer;
+            this.executor = executor;
+        }
+
+        public boolean isStarted() {
+            return this.started.get();
+        }
+
+        public boolean isInitializingThread() {
+            return (this.initializingThread == Thread.currentThread());
+        }
+
+        /**
+         * Submit the initialization to the executor, or run it right away
+         * if the executor does not accept it.
+         */
+        public void start() {
+            if (this.started.compareAndSet(false, true)) {
+                try {
+                    this.executor.execute(this);
+                }
+                catch (RejectedExecutionException ex) {
+                    if (logger.isDebugEnabled()) {
+                        logger.debug("Executor rejected background initialization of singleton '" +
+                                this.beanName + "' - initializing it in the calling thread", ex);
+                    }
+                    run();
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            this.initializingThread = Thread.currentThread();
+            try {
+                Object singletonObject = this.initializer.call();
+                addSingleton(this.beanName, singletonObject);
+                this.singletonObject = (singletonObject != null ? singletonObject : NULL_OBJECT);
+            }
+            catch (Throwable ex) {
+                this.failure = ex;
+            }
+            finally {
+                this.initializingThread = null;
+                singletonsInBackgroundInitialization.remove(this.beanName);
+                if (this.failure != null) {
+                    destroySingleton(this.beanName);
+                }
+                this.completion.countDown();
+            }
+        }
+
+        /**
+         * Complete the initialization as failed without running it.
+         */
+        public void abandon() {
+            if (this.started.compareAndSet(false, true)) {
+                this.failure = new IllegalStateException("Creation of singleton failed");
+                this.completion.countDown();
+            }
+        }
+
+        /**
+         * Wait for the initialization to complete, periodically checking whether
+         * the initializing thread in turn waits for the current thread.
+         * @return the singleton object (possibly {@code NULL_OBJECT})
+         * @throws BeanCreationException if the initialization failed or got interrupted
+         * @throws BeanCurrentlyInCreationException if waiting would result in a deadlock
+         * that cannot be resolved through early references
+         */
+        public Object await() throws BeanCreationException {
+            if (this.completion.getCount() > 0) {
+                long waitStart = System.nanoTime();
+                Thread currentThread = Thread.currentThread();
+                SingletonLockWait wait = new SingletonLockWait(this.beanName, false, this);
+                singletonLockWaits.put(currentThread, wait);
+                try {
+                    while (!this.completion.await(DEADLOCK_CHECK_INTERVAL_MILLIS, TimeUnit.MILLISECONDS)) {
+                        List<SingletonLockWait> cycle = findSingletonLockCycle(wait, currentThread);
+                        if (cycle != null && !isSingletonLockCycleResolvable(cycle)) {
+                            throw new BeanCurrentlyInCreationException(this.beanName,
+                                    "Deadlock between threads waiting for each other's singletons " + cycle +
+                                            " during background initialization: Is there an unresolvable circular reference?");
+                        }
+                    }
+                }
+                catch (InterruptedException ex) {
+                    currentThread.interrupt();
+                    throw new BeanCreationException(this.beanName,
+                            "Interrupted while waiting for background initialization of singleton", ex);
+                }
+                finally {
+                    singletonLockWaits.remove(currentThread);
+                    afterSingletonLockWait(this.beanName, System.nanoTime() - waitStart);
+                }
+            }
+            Throwable failure = this.failure;
+            if (failure != null) {
+                throw new BeanCreationException(this.beanName, "Background initialization of singleton failed",
+                        failure);
+            }
+            return this.singletonObject;
+        }
+    }
+
+
+    /**
+     * Creation lock for a singleton, exposing its owner for deadlock detection.
+     */
+    @SuppressWarnings("serial")
+    private static class SingletonLock extends ReentrantLock {
+
+        public Thread getOwnerThread() {
+            return getOwner();
+        }
+    }
+
 }
@@ -40,8 +40,13 @@ public abstract class FactoryBeanRegistrySupport extends DefaultSingletonBeanReg
     }
     protected Object getObjectFromFactoryBean(FactoryBean<?> factory, String beanName, boolean shouldPostProcess) {
         if (factory.isSingleton() && containsSingleton(beanName)) {
-            synchronized (getSingletonMutex()) {
-                Object object = this.factoryBeanObjectCache.get(beanName);
+            Object object = this.factoryBeanObjectCache.get(beanName);
+            if (object != null) {
+                return (object != NULL_OBJECT ? object : null);
+            }
+            lockSingleton(beanName);
+            try {
+                object = this.factoryBeanObjectCache.get(beanName);
                 if (object == null) {
                     object = doGetObjectFromFactoryBean(factory, beanName);
                     // Only post-process and store if not put there already during getObject() call above
@@ -75,6 +80,9 @@ public abstract class FactoryBeanRegistrySupport extends DefaultSingletonBeanReg
                 }
                 return (object != NULL_OBJECT ? object : null);
             }
+            finally {
+                unlockSingleton(beanName);
+            }
         }
         else {
             Object object = doGetObjectFromFactoryBean(factory, beanName);
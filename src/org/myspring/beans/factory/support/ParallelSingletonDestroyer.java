@@ -0,0 +1,336 @@
+package org.myspring.beans.factory.support;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.myspring.beans.factory.DisposableBean;
+
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Helper for {@link DefaultSingletonBeanRegistry#destroySingletons()} that destroys
+ * independent singletons concurrently on a fork-join pool.
+ *
+ * <p>The destruction order is derived from the registry's dependent bean and contained
+ * bean relationships, just like for serial destruction: a bean only gets destroyed once
+ * all beans depending on it have been destroyed, and beans contained in another bean
+ * only after their containing bean. Beans that are part of a dependency cycle (or have
+ * to wait for one) get destroyed serially once the concurrent phase has completed.
+ *
+ * <p>If a timeout is specified, destruction stops waiting once the deadline has passed:
+ * the beans still being destroyed at that point as well as the beans that have not been
+ * destroyed at all get reported in the log, and the registry is cleared regardless.
+ *
+ * @see DefaultSingletonBeanRegistry#setParallelDestruction
+ */
+class ParallelSingletonDestroyer {
+
+    private static final Log logger = LogFactory.getLog(ParallelSingletonDestroyer.class);
+
+    private final DefaultSingletonBeanRegistry registry;
+
+    private final int parallelism;
+
+    private final long timeoutMillis;
+
+
+    public ParallelSingletonDestroyer(DefaultSingletonBeanRegistry registry, int parallelism, long timeoutMillis) {
+        this.registry = registry;
+        this.parallelism = (parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+        this.timeoutMillis = timeoutMillis;
+    }
+
+
+    /**
+     * Destroy the given disposable singletons along with all beans related to them,
+     * returning once all of them have been destroyed or the deadline has passed.
+     * @param disposableBeanNames the names of the disposable beans, in registration order
+     * @return {@code true} if all beans have been destroyed in time,
+     * {@code false} if the deadline has passed before
+     */
+    public boolean destroy(String[] disposableBeanNames) {
+        long deadline = (this.timeoutMillis > 0 ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(this.timeoutMillis) : 0);
+        Map<String, Node> nodes = buildGraph(disposableBeanNames);
+
+        List<Node> roots = new ArrayList<Node>();
+        for (Node node : nodes.values()) {
+            node.pendingPredecessors.set(node.predecessors.size());
+            if (node.predecessors.isEmpty()) {
+                roots.add(node);
+            }
+        }
+        int schedulable = countSchedulable(nodes, roots);
+        if (logger.isDebugEnabled()) {
+            logger.debug("Destroying " + schedulable + " of " + nodes.size() +
+                    " singletons concurrently with parallelism " + this.parallelism);
+        }
+
+        boolean completed = true;
+        if (schedulable > 0) {
+            completed = runConcurrently(roots, schedulable, deadline);
+        }
+
+        // Fall back to serial destruction for beans in (or waiting for) a dependency cycle.
+        List<Node> remaining = new ArrayList<Node>();
+        for (Node node : nodes.values()) {
+            if (!node.scheduled) {
+                remaining.add(node);
+            }
+        }
+        for (int i = remaining.size() - 1; i >= 0 && completed; i--) {
+            Node node = remaining.get(i);
+            if (deadline != 0 && System.nanoTime() - deadline > 0) {
+                completed = false;
+            }
+            else {
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Destroying singleton '" + node.beanName +
+                            "' serially since it takes part in a dependency cycle");
+                }
+                node.startNanos = System.nanoTime();
+                this.registry.destroySingleton(node.beanName);
+                node.endNanos = System.nanoTime();
+            }
+        }
+
+        if (!completed) {
+            reportTimeout(nodes.values());
+        }
+        return completed;
+    }
+
+    /**
+     * Build the graph of all beans to destroy, linking each bean to the beans
+     * that have to be destroyed before it.
+     */
+    private Map<String, Node> buildGraph(String[] disposableBeanNames) {
+        Map<String, Node> nodes = new LinkedHashMap<String, Node>(disposableBeanNames.length * 2);
+        Deque<Node> queue = new ArrayDeque<Node>();
+        for (String beanName : disposableBeanNames) {
+            queue.add(getNode(nodes, beanName));
+        }
+        while (!queue.isEmpty()) {
+            Node node = queue.poll();
+            if (node.linked) {
+                continue;
+            }
+            node.linked = true;
+            // Dependent beans go first...
+            for (String dependentBeanName : this.registry.getDependentBeans(node.beanName)) {
+                Node dependent = getNode(nodes, dependentBeanName);
+                if (dependent != node && node.predecessors.add(dependent)) {
+                    dependent.successors.add(node);
+                }
+                queue.add(dependent);
+            }
+            // ... contained beans go after their containing bean.
+            for (String containedBeanName : this.registry.getContainedBeans(node.beanName)) {
+                Node contained = getNode(nodes, containedBeanName);
+                if (contained != node && contained.predecessors.add(node)) {
+                    node.successors.add(contained);
+                }
+                queue.add(contained);
+            }
+        }
+        return nodes;
+    }
+
+    private Node getNode(Map<String, Node> nodes, String beanName) {
+        Node node = nodes.get(beanName);
+        if (node == null) {
+            node = new Node(beanName);
+            nodes.put(beanName, node);
+        }
+        return node;
+    }
+
+    /**
+     * Mark all nodes reachable from the given roots without passing through a cycle
+     * as scheduled, returning their number.
+     */
+    private int countSchedulable(Map<String, Node> nodes, List<Node> roots) {
+        Map<Node, Integer> remaining = new HashMap<Node, Integer>(nodes.size());
+        for (Node node : nodes.values()) {
+            remaining.put(node, node.predecessors.size());
+        }
+        Deque<Node> queue = new ArrayDeque<Node>(roots);
+        int count = 0;
+        while (!queue.isEmpty()) {
+            Node node = queue.poll();
+            node.scheduled = true;
+            count++;
+            for (Node successor : node.successors) {
+                int left = remaining.get(successor) - 1;
+                remaining.put(successor, left);
+                if (left == 0) {
+                    queue.add(successor);
+                }
+            }
+        }
+        return count;
+    }
+
+    private boolean runConcurrently(List<Node> roots, int schedulable, long deadline) {
+        final ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+        final AtomicInteger threadCount = new AtomicInteger();
+        ForkJoinPool pool = new ForkJoinPool(this.parallelism, new ForkJoinPool.ForkJoinWorkerThreadFactory() {
+            @Override
+            public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+                ForkJoinWorkerThread thread = new ForkJoinWorkerThread(pool) {};
+                thread.setName("singleton-destruction-" + threadCount.incrementAndGet());
+                thread.setContextClassLoader(contextClassLoader);
+                return thread;
+            }
+        }, null, false);
+
+        Execution execution = new Execution(pool, schedulable);
+        boolean completed = false;
+        try {
+            // Start with the most recently registered beans, as serial destruction would.
+            for (int i = roots.size() - 1; i >= 0; i--) {
+                execution.submit(roots.get(i));
+            }
+            completed = execution.await(deadline);
+        }
+        finally {
+            if (completed) {
+                pool.shutdown();
+            }
+            else {
+                execution.abandoned = true;
+                pool.shutdownNow();
+            }
+        }
+        return completed;
+    }
+
+    private void reportTimeout(Collection<Node> nodes) {
+        long now = System.nanoTime();
+        StringBuilder inProgress = new StringBuilder();
+        List<String> notDestroyed = new ArrayList<String>();
+        for (Node node : nodes) {
+            if (node.endNanos != 0) {
+                continue;
+            }
+            if (node.startNanos != 0) {
+                if (inProgress.length() > 0) {
+                    inProgress.append(", ");
+                }
+                inProgress.append(node.beanName).append(" (")
+                        .append(TimeUnit.NANOSECONDS.toMillis(now - node.startNanos)).append(" ms)");
+            }
+            else {
+                notDestroyed.add(node.beanName);
+            }
+        }
+        logger.warn("Destruction of singletons did not complete within " + this.timeoutMillis +
+                " ms - still destroying: [" + inProgress + "]; not destroyed: " + notDestroyed);
+    }
+
+
+    /**
+     * A singleton to destroy, together with the in-graph beans to destroy before and after it.
+     */
+    private static class Node {
+
+        final String beanName;
+
+        final Set<Node> predecessors = new LinkedHashSet<Node>(4);
+
+        final List<Node> successors = new ArrayList<Node>(4);
+
+        final AtomicInteger pendingPredecessors = new AtomicInteger();
+
+        boolean linked;
+
+        boolean scheduled;
+
+        volatile long startNanos;
+
+        volatile long endNanos;
+
+        Node(String beanName) {
+            this.beanName = beanName;
+        }
+    }
+
+
+    /**
+     * State of one concurrent destruction run.
+     */
+    private class Execution {
+
+        private final ForkJoinPool pool;
+
+        private final CountDownLatch completion;
+
+        volatile boolean abandoned;
+
+        Execution(ForkJoinPool pool, int schedulable) {
+            this.pool = pool;
+            this.completion = new CountDownLatch(schedulable);
+        }
+
+        void submit(final Node node) {
+            try {
+                this.pool.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        process(node);
+                    }
+                });
+            }
+            catch (RejectedExecutionException ex) {
+                // Pool shut down after the deadline has passed: nothing left to do.
+            }
+        }
+
+        private void process(Node node) {
+            try {
+                // Once the deadline has passed, leave the remaining beans alone.
+                if (!this.abandoned) {
+                    node.startNanos = System.nanoTime();
+                    DisposableBean disposableBean = registry.removeDisposableSingleton(node.beanName);
+                    if (disposableBean != null) {
+                        try {
+                            disposableBean.destroy();
+                        }
+                        catch (Throwable ex) {
+                            logger.error("Destroy method on bean with name '" + node.beanName +
+                                    "' threw an exception", ex);
+                        }
+                    }
+                    node.endNanos = System.nanoTime();
+                }
+            }
+            finally {
+                for (Node successor : node.successors) {
+                    if (successor.pendingPredecessors.decrementAndGet() == 0) {
+                        submit(successor);
+                    }
+                }
+                this.completion.countDown();
+            }
+        }
+
+        boolean await(long deadline) {
+            try {
+                if (deadline == 0) {
+                    this.completion.await();
+                    return true;
+                }
+                return this.completion.await(Math.max(deadline - System.nanoTime(), 0), TimeUnit.NANOSECONDS);
+            }
+            catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,332 @@
+package org.myspring.beans.factory.support;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.myspring.beans.FatalBeanException;
+import org.myspring.beans.PropertyValue;
+import org.myspring.beans.factory.BeanFactoryUtils;
+import org.myspring.beans.factory.config.BeanDefinition;
+import org.myspring.beans.factory.config.BeanDefinitionHolder;
+import org.myspring.beans.factory.config.ConstructorArgumentValues;
+import org.myspring.beans.factory.config.RuntimeBeanReference;
+
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Helper for {@link DefaultListableBeanFactory#preInstantiateSingletons()} that creates
+ * independent non-lazy singletons concurrently on a fork-join pool.
+ *
+ * <p>The dependency graph is derived from {@code depends-on} declarations, factory-bean
+ * references, {@link RuntimeBeanReference} constructor arguments and property values
+ * (including those nested in managed collections and inner beans), as well as from
+ * the dependencies already registered with the factory. A bean only gets scheduled
+ * once all of its known dependencies have been created. Beans that are part of a
+ * dependency cycle (or depend on one) are never scheduled concurrently; they get
+ * created serially in registration order once the parallel phase has completed.
+ *
+ * <p>Dependencies that are not visible in the bean definition metadata (e.g. ones
+ * resolved through autowiring) are still created on demand by the regular
+ * {@code getBean} algorithm, so the graph only needs to be a best-effort ordering.
+ *
+ * @see DefaultListableBeanFactory#setParallelPreInstantiation
+ */
+class ParallelSingletonPreInstantiator {
+
+    private static final Log logger = LogFactory.getLog(ParallelSingletonPreInstantiator.class);
+
+    private final DefaultListableBeanFactory beanFactory;
+
+    private final int parallelism;
+
+
+    public ParallelSingletonPreInstantiator(DefaultListableBeanFactory beanFactory, int parallelism) {
+        this.beanFactory = beanFactory;
+        this.parallelism = (parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+    }
+
+
+    /**
+     * Pre-instantiate all eligible singletons among the given bean names,
+     * returning once every one of them has been created.
+     * @param beanNames the bean definition names, in registration order
+     */
+    public void preInstantiate(List<String> beanNames) {
+        Map<String, Node> nodes = buildGraph(beanNames);
+        if (nodes.isEmpty()) {
+            return;
+        }
+
+        List<Node> roots = new ArrayList<Node>();
+        for (Node node : nodes.values()) {
+            if (node.pendingDependencies.get() == 0) {
+                roots.add(node);
+            }
+        }
+        int schedulable = countSchedulable(nodes, roots);
+        if (logger.isDebugEnabled()) {
+            logger.debug("Pre-instantiating " + schedulable + " of " + nodes.size() +
+                    " singletons concurrently with parallelism " + this.parallelism);
+        }
+
+        if (schedulable > 0) {
+            runConcurrently(roots, schedulable);
+        }
+
+        // Fall back to serial creation for beans in (or depending on) a dependency cycle.
+        for (Node node : nodes.values()) {
+            if (!node.scheduled) {
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Pre-instantiating singleton '" + node.beanName +
+                            "' serially since it takes part in a dependency cycle");
+                }
+                this.beanFactory.preInstantiateSingleton(node.beanName);
+            }
+        }
+    }
+
+    private Map<String, Node> buildGraph(List<String> beanNames) {
+        Map<String, Node> nodes = new LinkedHashMap<String, Node>(beanNames.size());
+        for (String beanName : beanNames) {
+            if (this.beanFactory.requiresPreInstantiation(beanName)) {
+                nodes.put(beanName, new Node(beanName));
+            }
+        }
+        for (Node node : nodes.values()) {
+            for (String dependency : collectDependencies(node.beanName)) {
+                Node dependencyNode = nodes.get(dependency);
+                if (dependencyNode != null && dependencyNode != node && node.dependencies.add(dependencyNode)) {
+                    dependencyNode.dependents.add(node);
+                }
+            }
+            node.pendingDependencies.set(node.dependencies.size());
+        }
+        return nodes;
+    }
+
+    /**
+     * Collect the canonical names of all beans that the given bean is known to depend on.
+     */
+    private Set<String> collectDependencies(String beanName) {
+        Set<String> result = new LinkedHashSet<String>();
+        RootBeanDefinition mbd = this.beanFactory.getMergedLocalBeanDefinition(beanName);
+        String[] dependsOn = mbd.getDependsOn();
+        if (dependsOn != null) {
+            for (String dep : dependsOn) {
+                addDependency(result, dep);
+            }
+        }
+        if (mbd.getFactoryBeanName() != null) {
+            addDependency(result, mbd.getFactoryBeanName());
+        }
+        if (mbd.hasConstructorArgumentValues()) {
+            ConstructorArgumentValues cav = mbd.getConstructorArgumentValues();
+            for (ConstructorArgumentValues.ValueHolder valueHolder : cav.getIndexedArgumentValues().values()) {
+                collectReferences(result, valueHolder.getValue());
+            }
+            for (ConstructorArgumentValues.ValueHolder valueHolder : cav.getGenericArgumentValues()) {
+                collectReferences(result, valueHolder.getValue());
+            }
+        }
+        if (mbd.hasPropertyValues()) {
+            for (PropertyValue pv : mbd.getPropertyValues().getPropertyValues()) {
+                collectReferences(result, pv.getValue());
+            }
+        }
+        for (String dep : this.beanFactory.getDependenciesForBean(beanName)) {
+            addDependency(result, dep);
+        }
+        return result;
+    }
+
+    private void collectReferences(Set<String> result, Object value) {
+        if (value instanceof RuntimeBeanReference) {
+            RuntimeBeanReference ref = (RuntimeBeanReference) value;
+            if (!ref.isToParent()) {
+                addDependency(result, ref.getBeanName());
+            }
+        }
+        else if (value instanceof BeanDefinitionHolder) {
+            collectReferences(result, ((BeanDefinitionHolder) value).getBeanDefinition());
+        }
+        else if (value instanceof BeanDefinition) {
+            BeanDefinition innerBd = (BeanDefinition) value;
+            for (ConstructorArgumentValues.ValueHolder valueHolder :
+                    innerBd.getConstructorArgumentValues().getIndexedArgumentValues().values()) {
+                collectReferences(result, valueHolder.getValue());
+            }
+            for (ConstructorArgumentValues.ValueHolder valueHolder :
+                    innerBd.getConstructorArgumentValues().getGenericArgumentValues()) {
+                collectReferences(result, valueHolder.getValue());
+            }
+            for (PropertyValue pv : innerBd.getPropertyValues().getPropertyValues()) {
+                collectReferences(result, pv.getValue());
+            }
+        }
+        else if (value instanceof Collection) {
+            for (Object element : (Collection<?>) value) {
+                collectReferences(result, element);
+            }
+        }
+        else if (value instanceof Map) {
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                collectReferences(result, entry.getKey());
+                collectReferences(result, entry.getValue());
+            }
+        }
+        else if (value instanceof Object[]) {
+            for (Object element : (Object[]) value) {
+                collectReferences(result, element);
+            }
+        }
+    }
+
+    private void addDependency(Set<String> result, String name) {
+        result.add(this.beanFactory.canonicalName(BeanFactoryUtils.transformedBeanName(name)));
+    }
+
+    /**
+     * Mark all nodes reachable from the given roots without passing through a cycle
+     * as scheduled, returning their number.
+     */
+    private int countSchedulable(Map<String, Node> nodes, List<Node> roots) {
+        Map<Node, Integer> remaining = new HashMap<Node, Integer>(nodes.size());
+        for (Node node : nodes.values()) {
+            remaining.put(node, node.dependencies.size());
+        }
+        Deque<Node> queue = new ArrayDeque<Node>(roots);
+        int count = 0;
+        while (!queue.isEmpty()) {
+            Node node = queue.poll();
+            node.scheduled = true;
+            count++;
+            for (Node dependent : node.dependents) {
+                int left = remaining.get(dependent) - 1;
+                remaining.put(dependent, left);
+                if (left == 0) {
+                    queue.add(dependent);
+                }
+            }
+        }
+        return count;
+    }
+
+    private void runConcurrently(List<Node> roots, int schedulable) {
+        final ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+        final AtomicInteger threadCount = new AtomicInteger();
+        ForkJoinPool pool = new ForkJoinPool(this.parallelism, new ForkJoinPool.ForkJoinWorkerThreadFactory() {
+            @Override
+            public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+                ForkJoinWorkerThread thread = new ForkJoinWorkerThread(pool) {};
+                thread.setName("singleton-preinstantiation-" + threadCount.incrementAndGet());
+                thread.setContextClassLoader(contextClassLoader);
+                return thread;
+            }
+        }, null, false);
+
+        Execution execution = new Execution(pool, schedulable);
+        try {
+            for (Node root : roots) {
+                execution.submit(root);
+            }
+            execution.await();
+        }
+        finally {
+            pool.shutdown();
+        }
+
+        Throwable failure = execution.failure.get();
+        if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        }
+        if (failure instanceof Error) {
+            throw (Error) failure;
+        }
+        if (failure != null) {
+            throw new FatalBeanException("Concurrent singleton pre-instantiation failed", failure);
+        }
+    }
+
+
+    /**
+     * A singleton to pre-instantiate, together with its in-graph dependencies and dependents.
+     */
+    private static class Node {
+
+        final String beanName;
+
+        final Set<Node> dependencies = new LinkedHashSet<Node>(4);
+
+        final List<Node> dependents = new ArrayList<Node>(4);
+
+        final AtomicInteger pendingDependencies = new AtomicInteger();
+
+        boolean scheduled;
+
+        Node(String beanName) {
+            this.beanName = beanName;
+        }
+    }
+
+
+    /**
+     * State of one concurrent pre-instantiation run.
+     */
+    private class Execution {
+
+        private final ForkJoinPool pool;
+
+        private final CountDownLatch completion;
+
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+
+        Execution(ForkJoinPool pool, int schedulable) {
+            this.pool = pool;
+            this.completion = new CountDownLatch(schedulable);
+        }
+
+        void submit(final Node node) {
+            this.pool.execute(new Runnable() {
+                @Override
+                public void run() {
+                    process(node);
+                }
+            });
+        }
+
+        private void process(Node node) {
+            try {
+                // Once a creation failed, just drain the graph without creating further beans.
+                if (this.failure.get() == null) {
+                    beanFactory.preInstantiateSingleton(node.beanName);
+                }
+            }
+            catch (Throwable ex) {
+                this.failure.compareAndSet(null, ex);
+            }
+            finally {
+                for (Node dependent : node.dependents) {
+                    if (dependent.pendingDependencies.decrementAndGet() == 0) {
+                        submit(dependent);
+                    }
+                }
+                this.completion.countDown();
+            }
+        }
+
+        void await() {
+            try {
+                this.completion.await();
+            }
+            catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new FatalBeanException("Interrupted during concurrent singleton pre-instantiation", ex);
+            }
+        }
+    }
+
+}
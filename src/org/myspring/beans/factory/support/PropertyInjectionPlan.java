@@ -0,0 +1,191 @@
+package org.myspring.beans.factory.support;
+
+import org.myspring.beans.BeanWrapper;
+import org.myspring.beans.MethodInvocationException;
+import org.myspring.beans.PropertyAccessException;
+import org.myspring.beans.PropertyAccessorUtils;
+import org.myspring.beans.PropertyValue;
+import org.myspring.beans.TypeMismatchException;
+import org.myspring.core.util.ClassUtils;
+import org.myspring.core.util.ReflectionUtils;
+
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Precompiled plan for applying the property values of a non-singleton bean definition,
+ * built after the first instance has been populated through the regular algorithm.
+ *
+ * <p>The plan consists of one step per property value, in declaration order, each
+ * holding the resolved setter method along with either the pre-converted constant
+ * value or the original value to be resolved for every instance (e.g. a bean
+ * reference or an inner bean). Subsequent instances just execute those steps,
+ * skipping property path parsing, property handler lookups and conversion of
+ * constant values.
+ *
+ * <p>Only bean definitions with plain writable properties get a plan; nested or
+ * indexed property paths and optional values for unknown properties are left
+ * to the regular {@link BeanWrapper} algorithm.
+ *
+ * @see AbstractAutowireCapableBeanFactory#applyPropertyValues
+ */
+final class PropertyInjectionPlan {
+
+    /** Marker for bean definitions that are not eligible for a plan */
+    static final PropertyInjectionPlan NOT_APPLICABLE = new PropertyInjectionPlan(null, new Step[0]);
+
+
+    private final Class<?> beanClass;
+
+    private final Step[] steps;
+
+
+    private PropertyInjectionPlan(Class<?> beanClass, Step[] steps) {
+        this.beanClass = beanClass;
+        this.steps = steps;
+    }
+
+
+    /**
+     * Determine whether this plan may be executed against the given BeanWrapper.
+     */
+    public boolean isApplicableTo(BeanWrapper bw) {
+        return (this.beanClass != null && this.beanClass == bw.getWrappedClass());
+    }
+
+    public Step[] getSteps() {
+        return this.steps;
+    }
+
+
+    /**
+     * Build a plan from the given property values, which have just been applied
+     * to the given BeanWrapper: constant values are expected to be marked as
+     * converted at this point.
+     * @param bw the BeanWrapper of the first instance
+     * @param propertyValues the property values of the merged bean definition
+     * @return the plan, or {@link #NOT_APPLICABLE} if not all of the property
+     * values can be applied through a simple setter
+     */
+    public static PropertyInjectionPlan build(BeanWrapper bw, List<PropertyValue> propertyValues) {
+        Step[] steps = new Step[propertyValues.size()];
+        for (int i = 0; i < steps.length; i++) {
+            PropertyValue pv = propertyValues.get(i);
+            String propertyName = pv.getName();
+            if (PropertyAccessorUtils.isNestedOrIndexedProperty(propertyName) || !bw.isWritableProperty(propertyName)) {
+                return NOT_APPLICABLE;
+            }
+            PropertyDescriptor pd = bw.getPropertyDescriptor(propertyName);
+            Method writeMethod = pd.getWriteMethod();
+            if (writeMethod == null) {
+                return NOT_APPLICABLE;
+            }
+            ReflectionUtils.makeAccessible(writeMethod);
+            Class<?> propertyType = pd.getPropertyType();
+            if (pv.isConverted()) {
+                steps[i] = new Step(propertyName, writeMethod, propertyType, null, pv.getConvertedValue(), false);
+            }
+            else {
+                boolean conversionNeededIfAssignable = (Collection.class.isAssignableFrom(propertyType) ||
+                        Map.class.isAssignableFrom(propertyType) || propertyType.isArray() ||
+                        bw.findCustomEditor(propertyType, propertyName) != null);
+                steps[i] = new Step(propertyName, writeMethod, propertyType, pv, null, conversionNeededIfAssignable);
+            }
+        }
+        return new PropertyInjectionPlan(bw.getWrappedClass(), steps);
+    }
+
+
+    /**
+     * A single property to set.
+     */
+    static final class Step {
+
+        private final String propertyName;
+
+        private final Method writeMethod;
+
+        private final Class<?> propertyType;
+
+        private final PropertyValue propertyValue;
+
+        private final Object constantValue;
+
+        private final boolean conversionNeededIfAssignable;
+
+        private Step(String propertyName, Method writeMethod, Class<?> propertyType,
+                     PropertyValue propertyValue, Object constantValue, boolean conversionNeededIfAssignable) {
+
+            this.propertyName = propertyName;
+            this.writeMethod = writeMethod;
+            this.propertyType = propertyType;
+            this.propertyValue = propertyValue;
+            this.constantValue = constantValue;
+            this.conversionNeededIfAssignable = conversionNeededIfAssignable;
+        }
+
+        public String getPropertyName() {
+            return this.propertyName;
+        }
+
+        /**
+         * Return whether the value is the same for every instance.
+         */
+        public boolean isConstant() {
+            return (this.propertyValue == null);
+        }
+
+        /**
+         * Return the pre-converted value to apply, for a constant step.
+         */
+        public Object getConstantValue() {
+            return this.constantValue;
+        }
+
+        /**
+         * Return the original property value to resolve, for a non-constant step.
+         */
+        public PropertyValue getPropertyValue() {
+            return this.propertyValue;
+        }
+
+        /**
+         * Determine whether the given resolved value needs to go through type conversion.
+         */
+        public boolean requiresConversion(Object resolvedValue) {
+            return (this.conversionNeededIfAssignable || !ClassUtils.isAssignableValue(this.propertyType, resolvedValue));
+        }
+
+        /**
+         * Set the given value on the given bean instance.
+         * @throws PropertyAccessException in case of a failing setter invocation
+         */
+        public void inject(Object bean, Object value) throws PropertyAccessException {
+            try {
+                this.writeMethod.invoke(bean, value);
+            }
+            catch (InvocationTargetException ex) {
+                PropertyChangeEvent pce = new PropertyChangeEvent(bean, this.propertyName, null, value);
+                Throwable cause = ex.getTargetException();
+                if (cause instanceof ClassCastException) {
+                    throw new TypeMismatchException(pce, this.propertyType, cause);
+                }
+                if (cause instanceof UndeclaredThrowableException) {
+                    cause = cause.getCause();
+                }
+                throw new MethodInvocationException(pce, cause);
+            }
+            catch (Exception ex) {
+                PropertyChangeEvent pce = new PropertyChangeEvent(bean, this.propertyName, null, value);
+                throw new MethodInvocationException(pce, ex);
+            }
+        }
+    }
+
+}
@@ -23,6 +23,9 @@ public class RootBeanDefinition  extends AbstractBeanDefinition  {
 
     boolean isFactoryMethodUnique = false;
 
+    /** Package-visible field that marks a cached merged definition as to be re-merged */
+    volatile boolean stale;
+
     volatile ResolvableType targetType;
 
     /** Package-visible field for caching the determined Class of a given bean definition */
@@ -31,6 +34,12 @@ public class RootBeanDefinition  extends AbstractBeanDefinition  {
     /** Package-visible field for caching the return type of a generically typed factory method */
     volatile ResolvableType factoryMethodReturnType;
 
+    /** Package-visible field for caching the predicted object type of a FactoryBean definition */
+    volatile Class<?> predictedFactoryBeanObjectType;
+
+    /** Package-visible field that marks the FactoryBean object type as predicted (possibly as null) */
+    volatile boolean factoryBeanObjectTypePredicted = false;
+
     /** Common lock for the four constructor fields below */
     final Object constructorArgumentLock = new Object();
 
@@ -46,6 +55,12 @@ public class RootBeanDefinition  extends AbstractBeanDefinition  {
     /** Package-visible field for caching partly prepared constructor arguments */
     Object[] preparedConstructorArguments;
 
+    /** Package-visible field for caching a generated invoker for the resolved constructor or factory method */
+    volatile BytecodeInstantiationStrategy.CachedInvoker cachedInstantiationInvoker;
+
+    /** Package-visible field for caching the property injection plan of a non-singleton bean */
+    volatile PropertyInjectionPlan propertyInjectionPlan;
+
     /** Common lock for the two post-processing fields below */
     final Object postProcessingLock = new Object();
 
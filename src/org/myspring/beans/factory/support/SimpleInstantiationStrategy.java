@@ -26,7 +26,7 @@ public class SimpleInstantiationStrategy implements InstantiationStrategy  {
     @Override
     public Object instantiate(RootBeanDefinition bd, String beanName, BeanFactory owner) {
         // Don't override the class with CGLIB if no overrides.
-        if (bd.getMethodOverrides().isEmpty()) {
+        if (!bd.hasMethodOverrides()) {
             Constructor<?> constructorToUse;
             synchronized (bd.constructorArgumentLock) {
                 constructorToUse = (Constructor<?>) bd.resolvedConstructorOrFactoryMethod;
@@ -76,7 +76,7 @@ public class SimpleInstantiationStrategy implements InstantiationStrategy  {
     public Object instantiate(RootBeanDefinition bd, String beanName, BeanFactory owner,
                               final Constructor<?> ctor, Object... args) {
 
-        if (bd.getMethodOverrides().isEmpty()) {
+        if (!bd.hasMethodOverrides()) {
             if (System.getSecurityManager() != null) {
                 // use own privileged to change accessibility (when security is on)
                 AccessController.doPrivileged(new PrivilegedAction<Object>() {
@@ -127,7 +127,7 @@ public class SimpleInstantiationStrategy implements InstantiationStrategy  {
             Method priorInvokedFactoryMethod = currentlyInvokedFactoryMethod.get();
             try {
                 currentlyInvokedFactoryMethod.set(factoryMethod);
-                return factoryMethod.invoke(factoryBean, args);
+                return invokeFactoryMethod(bd, factoryBean, factoryMethod, args);
             }
             finally {
                 if (priorInvokedFactoryMethod != null) {
@@ -158,4 +158,20 @@ public class SimpleInstantiationStrategy implements InstantiationStrategy  {
         }
     }
 
+    /**
+     * Invoke the given factory method. The default implementation uses reflection;
+     * subclasses may override this for a different invocation mechanism.
+     * @param bd the bean definition
+     * @param factoryBean the factory bean instance to call the factory method on,
+     * or {@code null} in case of a static factory method
+     * @param factoryMethod the factory method to invoke (already made accessible)
+     * @param args the arguments to apply
+     * @return the factory method's return value
+     */
+    protected Object invokeFactoryMethod(RootBeanDefinition bd, Object factoryBean, Method factoryMethod,
+                                         Object... args) throws IllegalAccessException, InvocationTargetException {
+
+        return factoryMethod.invoke(factoryBean, args);
+    }
+
 }
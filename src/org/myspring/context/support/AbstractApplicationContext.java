@@ -17,6 +17,7 @@ import org.myspring.context.expression.StandardBeanExpressionResolver;
 import org.myspring.context.weaving.LoadTimeWeaverAware;
 import org.myspring.context.weaving.LoadTimeWeaverAwareProcessor;
 import org.myspring.core.ResolvableType;
+import org.myspring.core.annotation.AnnotationUtils;
 import org.myspring.core.convert.ConversionService;
 import org.myspring.core.env.ConfigurableEnvironment;
 import org.myspring.core.env.Environment;
@@ -86,6 +87,10 @@ public abstract class AbstractApplicationContext extends DefaultResourceLoader
 
     private Set<ApplicationEvent> earlyApplicationEvents;
 
+    private boolean trimMetadataAfterRefresh = false;
+
+    private boolean reportReclaimedHeap = false;
+
     public AbstractApplicationContext() {
         this.resourcePatternResolver = getResourcePatternResolver();
     }
@@ -115,6 +120,43 @@ public abstract class AbstractApplicationContext extends DefaultResourceLoader
         this.displayName = displayName;
     }
 
+    /**
+     * Set whether to release all metadata that can be recomputed on demand once
+     * this context has been refreshed, e.g. merged bean definitions of created
+     * singletons as well as the common introspection caches. Default is "false".
+     * <p>Worth switching on for singleton-only applications that are not expected
+     * to create further beans after startup, in order to reclaim heap space.
+     * @see #trimMetadataCaches()
+     */
+    public void setTrimMetadataAfterRefresh(boolean trimMetadataAfterRefresh) {
+        this.trimMetadataAfterRefresh = trimMetadataAfterRefresh;
+    }
+
+    /**
+     * Return whether to release recomputable metadata once this context has been refreshed.
+     */
+    public boolean isTrimMetadataAfterRefresh() {
+        return this.trimMetadataAfterRefresh;
+    }
+
+    /**
+     * Set whether to measure and log the amount of heap reclaimed when trimming
+     * metadata caches. Default is "false".
+     * <p>The measurement requests a garbage collection before and after trimming,
+     * so only switch this on when analyzing the footprint of an application.
+     * @see #trimMetadataCaches()
+     */
+    public void setReportReclaimedHeap(boolean reportReclaimedHeap) {
+        this.reportReclaimedHeap = reportReclaimedHeap;
+    }
+
+    /**
+     * Return whether to measure and log the amount of heap reclaimed when trimming metadata caches.
+     */
+    public boolean isReportReclaimedHeap() {
+        return this.reportReclaimedHeap;
+    }
+
     protected ResourcePatternResolver getResourcePatternResolver() {
         return new PathMatchingResourcePatternResolver(this);
     }
@@ -560,6 +602,11 @@ public abstract class AbstractApplicationContext extends DefaultResourceLoader
 
         // Participate in LiveBeansView MBean, if active.
         LiveBeansView.registerApplicationContext(this);
+
+        // Release metadata that we don't expect to need anymore, if demanded.
+        if (this.trimMetadataAfterRefresh) {
+            trimMetadataCaches();
+        }
     }
 
     protected void cancelRefresh(BeansException ex) {
@@ -571,6 +618,46 @@ public abstract class AbstractApplicationContext extends DefaultResourceLoader
         ResolvableType.clearCache();
         CachedIntrospectionResults.clearClassLoader(getClassLoader());
     }
+
+    /**
+     * Release the bean factory's recomputable metadata as well as the common
+     * introspection and annotation caches.
+     * <p>If {@link #setReportReclaimedHeap "reportReclaimedHeap"} is switched on, the
+     * amount of heap reclaimed gets measured as the difference in used heap after a
+     * garbage collection request before and after trimming, so it is an estimate only.
+     * Otherwise no garbage collection is requested at all. Note that generated CGLIB
+     * classes are retained: their class names are registered with the ClassLoader
+     * and need to remain reserved.
+     * @return the estimated number of bytes reclaimed, or -1 if not measured
+     * @see #setTrimMetadataAfterRefresh
+     * @see #setReportReclaimedHeap
+     * @see ConfigurableListableBeanFactory#trimMetadataCaches()
+     */
+    protected long trimMetadataCaches() {
+        boolean measure = this.reportReclaimedHeap;
+        long usedBefore = (measure ? getUsedHeapAfterGc() : 0);
+        getBeanFactory().trimMetadataCaches();
+        resetCommonCaches();
+        AnnotationUtils.clearCache();
+        if (!measure) {
+            if (logger.isInfoEnabled()) {
+                logger.info("Trimmed metadata caches of " + getDisplayName());
+            }
+            return -1;
+        }
+        long reclaimed = Math.max(usedBefore - getUsedHeapAfterGc(), 0);
+        if (logger.isInfoEnabled()) {
+            logger.info("Trimmed metadata caches of " + getDisplayName() + ": reclaimed about " +
+                    reclaimed / 1024 + " KB of heap");
+        }
+        return reclaimed;
+    }
+
+    private static long getUsedHeapAfterGc() {
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
     @Override
     public void registerShutdownHook() {
         if (this.shutdownHook == null) {
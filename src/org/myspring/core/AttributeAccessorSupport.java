@@ -4,17 +4,22 @@ import org.myspring.core.util.Assert;
 import org.myspring.core.util.StringUtils;
 
 import java.io.Serializable;
+import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
 public abstract class AttributeAccessorSupport  implements AttributeAccessor, Serializable {
 
-    private final Map<String, Object> attributes = new LinkedHashMap<String, Object>(0);
+    /** Allocated on first attribute only: most accessors never carry any */
+    private Map<String, Object> attributes;
 
     @Override
     public void setAttribute(String name, Object value) {
         Assert.notNull(name, "Name must not be null");
         if (value != null) {
+            if (this.attributes == null) {
+                this.attributes = new LinkedHashMap<String, Object>(4);
+            }
             this.attributes.put(name, value);
         }
         else {
@@ -25,23 +30,26 @@ public abstract class AttributeAccessorSupport  implements AttributeAccessor, Se
     @Override
     public Object getAttribute(String name) {
         Assert.notNull(name, "Name must not be null");
-        return this.attributes.get(name);
+        return (this.attributes != null ? this.attributes.get(name) : null);
     }
 
     @Override
     public Object removeAttribute(String name) {
         Assert.notNull(name, "Name must not be null");
-        return this.attributes.remove(name);
+        return (this.attributes != null ? this.attributes.remove(name) : null);
     }
 
     @Override
     public boolean hasAttribute(String name) {
         Assert.notNull(name, "Name must not be null");
-        return this.attributes.containsKey(name);
+        return (this.attributes != null && this.attributes.containsKey(name));
     }
 
     @Override
     public String[] attributeNames() {
+        if (this.attributes == null) {
+            return new String[0];
+        }
         return StringUtils.toStringArray(this.attributes.keySet());
     }
 
@@ -62,12 +70,16 @@ public abstract class AttributeAccessorSupport  implements AttributeAccessor, Se
             return false;
         }
         AttributeAccessorSupport that = (AttributeAccessorSupport) other;
-        return this.attributes.equals(that.attributes);
+        return getAttributeMap().equals(that.getAttributeMap());
     }
 
     @Override
     public int hashCode() {
-        return this.attributes.hashCode();
+        return getAttributeMap().hashCode();
+    }
+
+    private Map<String, Object> getAttributeMap() {
+        return (this.attributes != null ? this.attributes : Collections.<String, Object>emptyMap());
     }
 
 }
@@ -55,6 +55,13 @@ public class LocalVariableTableParameterNameDiscoverer implements ParameterNameD
         return null;
     }
 
+    /**
+     * Clear the cache of parameter names, reading class files anew on demand.
+     */
+    public void clearCache() {
+        this.parameterNamesCache.clear();
+    }
+
     /**
      * Inspects the target class. Exceptions will be logged and a maker map returned
      * to indicate the lack of debug information.
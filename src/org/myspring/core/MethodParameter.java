@@ -1,6 +1,7 @@
 package org.myspring.core;
 
 import org.myspring.core.util.Assert;
+import org.myspring.core.util.ObjectUtils;
 
 import java.lang.annotation.Annotation;
 import java.lang.reflect.*;
@@ -275,4 +276,25 @@ public class MethodParameter {
     public void initParameterNameDiscovery(ParameterNameDiscoverer parameterNameDiscoverer) {
         this.parameterNameDiscoverer = parameterNameDiscoverer;
     }
+
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof MethodParameter)) {
+            return false;
+        }
+        MethodParameter otherParam = (MethodParameter) other;
+        return (getMember().equals(otherParam.getMember()) && this.parameterIndex == otherParam.parameterIndex &&
+                getContainingClass() == otherParam.getContainingClass() &&
+                this.nestingLevel == otherParam.nestingLevel &&
+                ObjectUtils.nullSafeEquals(this.typeIndexesPerLevel, otherParam.typeIndexesPerLevel));
+    }
+
+    @Override
+    public int hashCode() {
+        return (getMember().hashCode() * 31 + this.parameterIndex);
+    }
 }
@@ -41,4 +41,18 @@ public class PrioritizedParameterNameDiscoverer implements ParameterNameDiscover
         }
         return null;
     }
+
+    /**
+     * Clear the caches of all delegates that cache parameter names.
+     */
+    public void clearCache() {
+        for (ParameterNameDiscoverer pnd : this.parameterNameDiscoverers) {
+            if (pnd instanceof PrioritizedParameterNameDiscoverer) {
+                ((PrioritizedParameterNameDiscoverer) pnd).clearCache();
+            }
+            else if (pnd instanceof LocalVariableTableParameterNameDiscoverer) {
+                ((LocalVariableTableParameterNameDiscoverer) pnd).clearCache();
+            }
+        }
+    }
 }
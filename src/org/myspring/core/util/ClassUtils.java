@@ -33,6 +33,48 @@ public abstract class ClassUtils {
     private static final Map<Class<?>, Class<?>> primitiveWrapperTypeMap = new IdentityHashMap<Class<?>, Class<?>>(8);
     private static final Map<Class<?>, Class<?>> primitiveTypeToWrapperMap = new IdentityHashMap<Class<?>, Class<?>>(8);
 
+    static {
+        primitiveWrapperTypeMap.put(Boolean.class, boolean.class);
+        primitiveWrapperTypeMap.put(Byte.class, byte.class);
+        primitiveWrapperTypeMap.put(Character.class, char.class);
+        primitiveWrapperTypeMap.put(Double.class, double.class);
+        primitiveWrapperTypeMap.put(Float.class, float.class);
+        primitiveWrapperTypeMap.put(Integer.class, int.class);
+        primitiveWrapperTypeMap.put(Long.class, long.class);
+        primitiveWrapperTypeMap.put(Short.class, short.class);
+
+        for (Map.Entry<Class<?>, Class<?>> entry : primitiveWrapperTypeMap.entrySet()) {
+            primitiveTypeToWrapperMap.put(entry.getValue(), entry.getKey());
+            registerCommonClasses(entry.getKey());
+        }
+
+        Set<Class<?>> primitiveTypes = new HashSet<Class<?>>(32);
+        primitiveTypes.addAll(primitiveWrapperTypeMap.values());
+        primitiveTypes.addAll(Arrays.asList(new Class<?>[] {
+                boolean[].class, byte[].class, char[].class, double[].class,
+                float[].class, int[].class, long[].class, short[].class}));
+        primitiveTypes.add(void.class);
+        for (Class<?> primitiveType : primitiveTypes) {
+            primitiveTypeNameMap.put(primitiveType.getName(), primitiveType);
+        }
+
+        registerCommonClasses(Boolean[].class, Byte[].class, Character[].class, Double[].class,
+                Float[].class, Integer[].class, Long[].class, Short[].class);
+        registerCommonClasses(Number.class, Number[].class, String.class, String[].class,
+                Object.class, Object[].class, Class.class, Class[].class);
+        registerCommonClasses(Throwable.class, Exception.class, RuntimeException.class,
+                Error.class, StackTraceElement.class, StackTraceElement[].class);
+    }
+
+    /**
+     * Register the given common classes with the ClassUtils cache.
+     */
+    private static void registerCommonClasses(Class<?>... commonClasses) {
+        for (Class<?> clazz : commonClasses) {
+            commonClassCache.put(clazz.getName(), clazz);
+        }
+    }
+
 
     public static boolean hasConstructor(Class<?> clazz, Class<?>... paramTypes) {
         return (getConstructorIfAvailable(clazz, paramTypes) != null);
@@ -126,6 +168,16 @@ public abstract class ClassUtils {
         return getUserClass(instance.getClass());
     }
 
+    public static Class<?> getUserClass(Class<?> clazz) {
+        if (clazz != null && clazz.getName().contains(CGLIB_CLASS_SEPARATOR)) {
+            Class<?> superclass = clazz.getSuperclass();
+            if (superclass != null && Object.class != superclass) {
+                return superclass;
+            }
+        }
+        return clazz;
+    }
+
     public static boolean matchesTypeName(Class<?> clazz, String typeName) {
         return (typeName != null &&
                 (typeName.equals(clazz.getName()) || typeName.equals(clazz.getSimpleName()) ||